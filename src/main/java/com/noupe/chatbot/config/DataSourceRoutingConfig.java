@@ -0,0 +1,112 @@
+package com.noupe.chatbot.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Primary, read replica and shard data sources, active when a replica URL is
+ * configured or sharding is enabled.
+ *
+ * Without either, Spring Boot's single data source is used and every
+ * transaction runs on the primary. Connections are routed first by shard
+ * and then, on the primary, between primary and replica.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replica.jdbc-url:}'.isEmpty() or ${app.sharding.enabled:false}")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class DataSourceRoutingConfig {
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+    
+    @Bean
+    @ConditionalOnExpression("!'${app.datasource.replica.jdbc-url:}'.isEmpty()")
+    @ConfigurationProperties("app.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+    
+    @Bean
+    @ConditionalOnExpression("!'${app.datasource.replica.jdbc-url:}'.isEmpty()")
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            @Value("${app.datasource.replica-routing.lag-query}") String lagQuery,
+            @Value("${app.datasource.replica-routing.max-lag-seconds:5}") double maxLagSeconds) {
+        return new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLagSeconds);
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+    public ShardDataSources shardDataSources(ShardingProperties properties) {
+        return new ShardDataSources(properties);
+    }
+    
+    /**
+     * The data source used by JPA, JdbcTemplate and Flyway
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replicaDataSource,
+                                 ObjectProvider<ReplicaLagMonitor> replicaLagMonitor,
+                                 ObjectProvider<ShardDataSources> shardDataSources) {
+        DataSource primary = primaryDataSource;
+        ReplicaLagMonitor lagMonitor = replicaLagMonitor.getIfAvailable();
+        if (lagMonitor != null) {
+            ReadWriteRoutingDataSource readWriteDataSource = new ReadWriteRoutingDataSource(lagMonitor);
+            readWriteDataSource.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.Route.PRIMARY, primaryDataSource,
+                ReadWriteRoutingDataSource.Route.REPLICA, replicaDataSource.getObject()));
+            readWriteDataSource.setDefaultTargetDataSource(primaryDataSource);
+            readWriteDataSource.afterPropertiesSet();
+            primary = readWriteDataSource;
+        }
+        
+        DataSource routed = primary;
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        if (shards != null) {
+            Map<Object, Object> targets = new HashMap<>(shards.getDataSources());
+            targets.put(TenantShardRoutingDataSource.PRIMARY_SHARD, primary);
+            TenantShardRoutingDataSource shardDataSource = new TenantShardRoutingDataSource();
+            shardDataSource.setTargetDataSources(targets);
+            shardDataSource.setDefaultTargetDataSource(primary);
+            shardDataSource.setLenientFallback(false);
+            shardDataSource.afterPropertiesSet();
+            routed = shardDataSource;
+        }
+        return new LazyConnectionDataSourceProxy(routed);
+    }
+    
+    @Bean
+    public PlatformTransactionManager transactionManager(
+            ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+        ReplicaAwareJpaTransactionManager transactionManager = new ReplicaAwareJpaTransactionManager();
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+}
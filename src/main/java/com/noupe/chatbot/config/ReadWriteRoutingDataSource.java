@@ -0,0 +1,52 @@
+package com.noupe.chatbot.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes connections to the primary or the read replica.
+ *
+ * A connection goes to the replica only while a {@link ReplicaTransactional}
+ * transaction is being set up or running on the current thread and the
+ * replica is within its lag tolerance. It must be wrapped in a lazy
+ * connection proxy so that the connection is chosen at the first statement,
+ * once the transaction has been started.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    
+    /**
+     * Transaction label of {@link ReplicaTransactional}
+     */
+    public static final String REPLICA_LABEL = "replica";
+    
+    private static final ThreadLocal<Boolean> replicaPreferred = new ThreadLocal<>();
+    
+    private final ReplicaLagMonitor lagMonitor;
+    
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+    
+    static void setReplicaPreferred(boolean preferred) {
+        if (preferred) {
+            replicaPreferred.set(Boolean.TRUE);
+        } else {
+            replicaPreferred.remove();
+        }
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (Boolean.TRUE.equals(replicaPreferred.get()) && lagMonitor.isReplicaUsable()) {
+            return Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+    
+    /**
+     * Target data sources
+     */
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+}
@@ -0,0 +1,35 @@
+package com.noupe.chatbot.config;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+
+/**
+ * JPA transaction manager that lets new {@link ReplicaTransactional}
+ * transactions read from the replica. Transactions that join an existing one
+ * keep its connection.
+ */
+public class ReplicaAwareJpaTransactionManager extends JpaTransactionManager {
+    
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        ReadWriteRoutingDataSource.setReplicaPreferred(definition.isReadOnly() 
+            && definition instanceof TransactionAttribute attribute 
+            && attribute.getLabels().contains(ReadWriteRoutingDataSource.REPLICA_LABEL));
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            ReadWriteRoutingDataSource.setReplicaPreferred(false);
+            throw e;
+        }
+    }
+    
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            ReadWriteRoutingDataSource.setReplicaPreferred(false);
+        }
+    }
+}
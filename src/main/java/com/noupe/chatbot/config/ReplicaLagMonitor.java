@@ -0,0 +1,58 @@
+package com.noupe.chatbot.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Periodically measures how far the read replica lags behind the primary.
+ *
+ * The replica is usable only while the last measurement succeeded and was
+ * within the tolerance; until the first measurement, and whenever the
+ * replica cannot be reached, reads stay on the primary.
+ */
+public class ReplicaLagMonitor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+    
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    
+    private volatile boolean replicaUsable;
+    
+    public ReplicaLagMonitor(DataSource replicaDataSource, String lagQuery, double maxLagSeconds) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.replicaJdbcTemplate.setQueryTimeout(5);
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+    }
+    
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.datasource.replica-routing.lag-check-interval-ms:5000}")
+    public void check() {
+        boolean usable;
+        try {
+            Double lagSeconds = replicaJdbcTemplate.queryForObject(lagQuery, Double.class);
+            usable = lagSeconds != null && lagSeconds <= maxLagSeconds;
+            if (!usable && replicaUsable) {
+                logger.warn("Read replica lags {} s behind the primary, reading from the primary", lagSeconds);
+            }
+        } catch (RuntimeException e) {
+            usable = false;
+            if (replicaUsable) {
+                logger.warn("Read replica unavailable, reading from the primary: {}", e.getMessage());
+            }
+        }
+        if (usable && !replicaUsable) {
+            logger.info("Read replica within {} s of the primary, serving replica reads from it", maxLagSeconds);
+        }
+        replicaUsable = usable;
+    }
+}
@@ -0,0 +1,21 @@
+package com.noupe.chatbot.config;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.*;
+
+/**
+ * Read-only transaction that may be served by the read replica.
+ *
+ * When a replica is configured and within its lag tolerance, transactions
+ * started by methods with this annotation read from it; otherwise, and when
+ * the method joins a surrounding read-write transaction, they run on the
+ * primary like any other read-only transaction. Use it only for reads that
+ * tolerate data a few seconds old, such as analytics, listings and history.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true, label = ReadWriteRoutingDataSource.REPLICA_LABEL)
+public @interface ReplicaTransactional {
+}
@@ -0,0 +1,63 @@
+package com.noupe.chatbot.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connection pools of the configured shard databases. On creation, each
+ * shard is migrated to the conversation schema in {@code db/shard}.
+ */
+public class ShardDataSources implements DisposableBean {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardDataSources.class);
+    
+    private final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+    
+    public ShardDataSources(ShardingProperties properties) {
+        properties.getShards().forEach((name, shard) -> {
+            if (TenantShardRoutingDataSource.PRIMARY_SHARD.equals(name)) {
+                throw new IllegalStateException("Shard name '" + name + "' is reserved for the primary database");
+            }
+            if (shard.getIdBase() <= 0) {
+                throw new IllegalStateException("Shard '" + name + "' needs a positive id-base");
+            }
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("shard-" + name);
+            dataSource.setJdbcUrl(shard.getUrl());
+            dataSource.setUsername(shard.getUsername());
+            dataSource.setPassword(shard.getPassword());
+            dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+            dataSources.put(name, dataSource);
+            
+            Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/shard")
+                .placeholders(Map.of("idBase", Long.toString(shard.getIdBase())))
+                .load()
+                .migrate();
+            logger.info("Shard {} ready at {}", name, shard.getUrl());
+        });
+    }
+    
+    /**
+     * Pools by shard name, in configuration order
+     */
+    public Map<String, DataSource> getDataSources() {
+        return Collections.unmodifiableMap(dataSources);
+    }
+    
+    @Override
+    public void destroy() {
+        for (DataSource dataSource : dataSources.values()) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+}
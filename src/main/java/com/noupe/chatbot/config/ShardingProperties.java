@@ -0,0 +1,89 @@
+package com.noupe.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shard databases for conversation storage, keyed by shard name.
+ *
+ * The primary database is always available as shard {@value TenantShardRoutingDataSource#PRIMARY_SHARD}
+ * and is not listed here.
+ */
+@ConfigurationProperties("app.sharding")
+public class ShardingProperties {
+    
+    private boolean enabled;
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public Map<String, Shard> getShards() {
+        return shards;
+    }
+    
+    public void setShards(Map<String, Shard> shards) {
+        this.shards = shards;
+    }
+    
+    /**
+     * Connection settings and id range of one shard database
+     */
+    public static class Shard {
+        
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        
+        // First id of the shard's sequences; ranges of different databases must not overlap
+        private long idBase;
+        
+        public String getUrl() {
+            return url;
+        }
+        
+        public void setUrl(String url) {
+            this.url = url;
+        }
+        
+        public String getUsername() {
+            return username;
+        }
+        
+        public void setUsername(String username) {
+            this.username = username;
+        }
+        
+        public String getPassword() {
+            return password;
+        }
+        
+        public void setPassword(String password) {
+            this.password = password;
+        }
+        
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+        
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+        
+        public long getIdBase() {
+            return idBase;
+        }
+        
+        public void setIdBase(long idBase) {
+            this.idBase = idBase;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.noupe.chatbot.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes connections to the shard database selected for the current thread,
+ * or to the primary when none is selected.
+ *
+ * The shard is selected by the tenant shard service around work on a
+ * chatbot's conversations; like {@link ReadWriteRoutingDataSource}, this
+ * must sit behind a lazy connection proxy so that transactions take the
+ * connection of the shard selected when they run their first statement.
+ */
+public class TenantShardRoutingDataSource extends AbstractRoutingDataSource {
+    
+    /**
+     * Name of the primary database in the shard map
+     */
+    public static final String PRIMARY_SHARD = "primary";
+    
+    private static final ThreadLocal<String> currentShard = new ThreadLocal<>();
+    
+    /**
+     * Shard selected for the current thread, {@link #PRIMARY_SHARD} if none
+     */
+    public static String getCurrentShard() {
+        String shard = currentShard.get();
+        return shard != null ? shard : PRIMARY_SHARD;
+    }
+    
+    /**
+     * Select the shard for connections opened by the current thread; null selects the primary
+     */
+    public static void setCurrentShard(String shard) {
+        if (shard == null || PRIMARY_SHARD.equals(shard)) {
+            currentShard.remove();
+        } else {
+            currentShard.set(shard);
+        }
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return getCurrentShard();
+    }
+}
@@ -3,14 +3,17 @@ package com.noupe.chatbot.controller;
 import com.noupe.chatbot.model.Chatbot;
 import com.noupe.chatbot.repository.ChatbotRepository;
 import com.noupe.chatbot.service.AiChatbotService;
+import com.noupe.chatbot.service.ConversationHistoryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -27,11 +30,14 @@ public class ChatController {
     
     private final AiChatbotService aiChatbotService;
     private final ChatbotRepository chatbotRepository;
+    private final ConversationHistoryService conversationHistoryService;
     
     @Autowired
-    public ChatController(AiChatbotService aiChatbotService, ChatbotRepository chatbotRepository) {
+    public ChatController(AiChatbotService aiChatbotService, ChatbotRepository chatbotRepository,
+                          ConversationHistoryService conversationHistoryService) {
         this.aiChatbotService = aiChatbotService;
         this.chatbotRepository = chatbotRepository;
+        this.conversationHistoryService = conversationHistoryService;
     }
     
     /**
@@ -124,25 +130,38 @@ public class ChatController {
     }
     
     /**
-     * Get conversation history
+     * Get conversation history, newest messages first.
+     * Pass the returned nextCursor as {@code before} to page back through older messages.
+     * Responses carry an ETag, so polling with If-None-Match returns 304 until a new message arrives.
      */
     @GetMapping("/{chatbotId}/conversation/{sessionId}")
     public ResponseEntity<Map<String, Object>> getConversationHistory(
             @PathVariable Long chatbotId,
-            @PathVariable String sessionId) {
+            @PathVariable String sessionId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer limit) {
         
         try {
-            // This would typically return conversation history
-            // For now, return a simple response
-            Map<String, Object> response = Map.of(
-                "chatbotId", chatbotId,
-                "sessionId", sessionId,
-                "messages", "[]", // Would contain actual message history
-                "timestamp", System.currentTimeMillis()
-            );
+            ConversationHistoryService.HistoryPage page = 
+                conversationHistoryService.getHistory(chatbotId, sessionId, before, limit);
             
-            return ResponseEntity.ok(response);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("chatbotId", chatbotId);
+            response.put("sessionId", sessionId);
+            response.put("messages", page.getMessages());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("timestamp", System.currentTimeMillis());
+            
+            // A matching If-None-Match is answered with 304 by Spring
+            return ResponseEntity.ok()
+                .eTag(page.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(response);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", e.getMessage()
+            ));
         } catch (Exception e) {
             logger.error("Error retrieving conversation history for chatbot {} session {}", chatbotId, sessionId, e);
             return ResponseEntity.status(500).body(Map.of(
@@ -1,17 +1,35 @@
 package com.noupe.chatbot.controller;
 
+import com.noupe.chatbot.model.AnalyticsRollup;
 import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.WebsiteContent;
 import com.noupe.chatbot.service.AiChatbotService;
+import com.noupe.chatbot.service.AnalyticsRollupService;
+import com.noupe.chatbot.service.ConversationExportService;
+import com.noupe.chatbot.service.DocumentIngestionService;
+import com.noupe.chatbot.service.LatencyTrackingService;
+import com.noupe.chatbot.service.TenantRebalanceService;
+import com.noupe.chatbot.service.TenantShardService;
 import com.noupe.chatbot.service.WebsiteAnalysisService;
 import com.noupe.chatbot.repository.ChatbotRepository;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,27 +45,62 @@ public class ChatbotController {
     
     private static final Logger logger = LoggerFactory.getLogger(ChatbotController.class);
     
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    
     private final ChatbotRepository chatbotRepository;
     private final AiChatbotService aiChatbotService;
     private final WebsiteAnalysisService websiteAnalysisService;
+    private final DocumentIngestionService documentIngestionService;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final LatencyTrackingService latencyTrackingService;
+    private final ConversationExportService conversationExportService;
+    private final TenantShardService tenantShardService;
+    private final TenantRebalanceService tenantRebalanceService;
     
     @Autowired
     public ChatbotController(ChatbotRepository chatbotRepository, 
                            AiChatbotService aiChatbotService,
-                           WebsiteAnalysisService websiteAnalysisService) {
+                           WebsiteAnalysisService websiteAnalysisService,
+                           DocumentIngestionService documentIngestionService,
+                           AnalyticsRollupService analyticsRollupService,
+                           LatencyTrackingService latencyTrackingService,
+                           ConversationExportService conversationExportService,
+                           TenantShardService tenantShardService,
+                           TenantRebalanceService tenantRebalanceService) {
         this.chatbotRepository = chatbotRepository;
         this.aiChatbotService = aiChatbotService;
         this.websiteAnalysisService = websiteAnalysisService;
+        this.documentIngestionService = documentIngestionService;
+        this.analyticsRollupService = analyticsRollupService;
+        this.latencyTrackingService = latencyTrackingService;
+        this.conversationExportService = conversationExportService;
+        this.tenantShardService = tenantShardService;
+        this.tenantRebalanceService = tenantRebalanceService;
     }
     
     /**
-     * Get all chatbots
+     * List chatbots, one keyset page at a time.
+     * Pass the X-Next-Cursor header of a response as {@code after} to get the next page.
      */
     @GetMapping
-    public ResponseEntity<List<Chatbot>> getAllChatbots() {
+    public ResponseEntity<List<ChatbotRepository.ChatbotSummary>> getAllChatbots(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) String name) {
         try {
-            List<Chatbot> chatbots = chatbotRepository.findAll();
-            return ResponseEntity.ok(chatbots);
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            List<ChatbotRepository.ChatbotSummary> chatbots = chatbotRepository.findSummaries(
+                after != null ? after : 0L, active, name != null && !name.isBlank() ? name.trim() : null,
+                PageRequest.of(0, pageSize + 1));
+            
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (chatbots.size() > pageSize) {
+                chatbots = chatbots.subList(0, pageSize);
+                response.header(NEXT_CURSOR_HEADER, chatbots.get(pageSize - 1).getId().toString());
+            }
+            return response.body(chatbots);
         } catch (Exception e) {
             logger.error("Error retrieving chatbots", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -103,6 +156,15 @@ public class ChatbotController {
             chatbot.setCustomPrompt(chatbotDetails.getCustomPrompt());
             chatbot.setBrandingConfig(chatbotDetails.getBrandingConfig());
             chatbot.setIsActive(chatbotDetails.getIsActive());
+            if (chatbotDetails.getRecrawlEnabled() != null) {
+                chatbot.setRecrawlEnabled(chatbotDetails.getRecrawlEnabled());
+            }
+            if (chatbotDetails.getRecrawlIntervalHours() != null) {
+                chatbot.setRecrawlIntervalHours(chatbotDetails.getRecrawlIntervalHours());
+            }
+            if (chatbotDetails.getConversationRetentionDays() != null) {
+                chatbot.setConversationRetentionDays(chatbotDetails.getConversationRetentionDays());
+            }
             
             Chatbot updatedChatbot = chatbotRepository.save(chatbot);
             logger.info("Updated chatbot: {}", updatedChatbot.getName());
@@ -124,10 +186,14 @@ public class ChatbotController {
                 return ResponseEntity.notFound().build();
             }
             
+            tenantRebalanceService.removeTenant(id);
             chatbotRepository.deleteById(id);
             logger.info("Deleted chatbot: {}", id);
             return ResponseEntity.noContent().build();
             
+        } catch (IllegalStateException e) {
+            logger.warn("Cannot delete chatbot {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             logger.error("Error deleting chatbot {}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -135,10 +201,13 @@ public class ChatbotController {
     }
     
     /**
-     * Analyze website for a chatbot
+     * Analyze website for a chatbot, optionally within a smaller page, byte or time budget
      */
     @PostMapping("/{id}/analyze")
-    public ResponseEntity<Map<String, Object>> analyzeWebsite(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Object>> analyzeWebsite(@PathVariable Long id,
+                                                              @RequestParam(required = false) Integer maxPages,
+                                                              @RequestParam(required = false) Long maxBytes,
+                                                              @RequestParam(required = false) Integer maxMinutes) {
         try {
             Optional<Chatbot> chatbotOpt = chatbotRepository.findById(id);
             if (chatbotOpt.isEmpty()) {
@@ -147,16 +216,22 @@ public class ChatbotController {
             
             Chatbot chatbot = chatbotOpt.get();
             
-            // Start website analysis asynchronously
-            CompletableFuture<List<com.noupe.chatbot.model.WebsiteContent>> analysisFuture = 
-                websiteAnalysisService.analyzeWebsite(chatbot);
+            // Start website analysis asynchronously; only one crawl per chatbot runs at a time
+            CompletableFuture<List<WebsiteContent>> analysisFuture;
+            try {
+                analysisFuture = websiteAnalysisService.analyzeWebsite(chatbot, maxPages, maxBytes, maxMinutes);
+            } catch (IllegalStateException e) {
+                logger.info("Not starting website analysis for chatbot {}: {}", id, e.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(websiteAnalysisService.getCrawlStatus(chatbot).orElse(Map.of()));
+            }
             
             // Return analysis status
             Map<String, Object> response = Map.of(
                 "status", "analysis_started",
                 "chatbotId", id,
                 "websiteUrl", chatbot.getWebsiteUrl(),
-                "message", "Website analysis started. Check back later for results."
+                "message", "Website analysis started. Check /api/chatbots/" + id + "/crawl for progress."
             );
             
             logger.info("Started website analysis for chatbot: {}", chatbot.getName());
@@ -168,6 +243,54 @@ public class ChatbotController {
         }
     }
     
+    /**
+     * Get the status of the most recent website crawl
+     */
+    @GetMapping("/{id}/crawl")
+    public ResponseEntity<Map<String, Object>> getCrawlStatus(@PathVariable Long id) {
+        try {
+            Optional<Chatbot> chatbotOpt = chatbotRepository.findById(id);
+            if (chatbotOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            return websiteAnalysisService.getCrawlStatus(chatbotOpt.get())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+            
+        } catch (Exception e) {
+            logger.error("Error getting crawl status for chatbot {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Cancel the running website crawl, keeping the pages crawled so far
+     */
+    @PostMapping("/{id}/crawl/cancel")
+    public ResponseEntity<Map<String, Object>> cancelCrawl(@PathVariable Long id) {
+        try {
+            Optional<Chatbot> chatbotOpt = chatbotRepository.findById(id);
+            if (chatbotOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            if (!websiteAnalysisService.cancelCrawl(chatbotOpt.get())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "No crawl is running for this chatbot"));
+            }
+            
+            return ResponseEntity.accepted().body(Map.of(
+                "status", "cancellation_requested",
+                "chatbotId", id
+            ));
+            
+        } catch (Exception e) {
+            logger.error("Error cancelling crawl for chatbot {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     /**
      * Index website content for a chatbot
      */
@@ -199,6 +322,47 @@ public class ChatbotController {
         }
     }
     
+    /**
+     * Upload a PDF document to the chatbot knowledge base
+     */
+    @PostMapping("/{id}/documents")
+    public ResponseEntity<Map<String, Object>> uploadDocument(@PathVariable Long id, 
+                                                              @RequestParam("file") MultipartFile file) {
+        try {
+            Optional<Chatbot> chatbotOpt = chatbotRepository.findById(id);
+            if (chatbotOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            String fileName = file.getOriginalFilename();
+            boolean isPdf = "application/pdf".equalsIgnoreCase(file.getContentType()) ||
+                (fileName != null && fileName.toLowerCase().endsWith(".pdf"));
+            if (file.isEmpty() || !isPdf) {
+                return ResponseEntity.badRequest().body(Map.of("error", "A non-empty PDF file is required"));
+            }
+            if (file.getSize() > documentIngestionService.getMaxBytes()) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+            }
+            
+            WebsiteContent content = documentIngestionService.ingestUpload(
+                chatbotOpt.get(), fileName != null ? fileName : "document.pdf", file.getBytes());
+            
+            Map<String, Object> response = Map.of(
+                "status", "document_indexed",
+                "chatbotId", id,
+                "url", content.getUrl(),
+                "title", content.getTitle(),
+                "chunks", DocumentIngestionService.splitVectorIds(content.getVectorId()).size()
+            );
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("Error uploading document for chatbot {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     /**
      * Get chatbot analytics
      */
@@ -224,6 +388,7 @@ public class ChatbotController {
                 "chatbotName", chatbot.getName(),
                 "conversations", conversationAnalytics,
                 "websiteAnalysis", analysisStats,
+                "responseTimePercentiles", latencyTrackingService.getPercentiles(id),
                 "status", chatbot.getIsActive() ? "active" : "inactive"
             );
             
@@ -235,6 +400,134 @@ public class ChatbotController {
         }
     }
     
+    /**
+     * Get the chatbots with the slowest p95 response time over a sliding window
+     */
+    @GetMapping("/analytics/latency")
+    public ResponseEntity<List<Map<String, Object>>> getSlowestChatbots(@RequestParam(defaultValue = "1h") String window,
+                                                                        @RequestParam(defaultValue = "10") int limit) {
+        try {
+            Duration windowLength = LatencyTrackingService.WINDOWS.get(window);
+            if (windowLength == null || limit < 1) {
+                return ResponseEntity.badRequest().build();
+            }
+            
+            return ResponseEntity.ok(latencyTrackingService.getSlowestChatbots(windowLength, Math.min(limit, 100)));
+            
+        } catch (Exception e) {
+            logger.error("Error retrieving response time percentiles", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Get chatbot conversation analytics per hour or day.
+     * Defaults to the last 24 hours for HOUR and the last 30 days for DAY.
+     */
+    @GetMapping("/{id}/analytics/timeseries")
+    public ResponseEntity<List<Map<String, Object>>> getAnalyticsTimeSeries(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "HOUR") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            if (!chatbotRepository.existsById(id)) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            AnalyticsRollup.Granularity bucketSize;
+            try {
+                bucketSize = AnalyticsRollup.Granularity.valueOf(granularity.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (bucketSize == AnalyticsRollup.Granularity.ALL) {
+                return ResponseEntity.badRequest().build();
+            }
+            
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from :
+                bucketSize == AnalyticsRollup.Granularity.HOUR ? end.minusHours(24) : end.minusDays(30);
+            
+            return ResponseEntity.ok(analyticsRollupService.getTimeSeries(id, bucketSize, start, end));
+            
+        } catch (Exception e) {
+            logger.error("Error retrieving analytics time series for chatbot {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    /**
+     * Export all messages of a chatbot as NDJSON or CSV, optionally gzip-compressed.
+     * The dump is streamed from the database while it is written, so it may be arbitrarily large.
+     */
+    @GetMapping("/{id}/conversations/export")
+    public ResponseEntity<StreamingResponseBody> exportConversations(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        if (!chatbotRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        ConversationExportService.Format exportFormat;
+        try {
+            exportFormat = ConversationExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        String filename = "chatbot-" + id + "-conversations." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            try {
+                conversationExportService.export(id, from, to, exportFormat, gzip, out);
+            } catch (IOException e) {
+                logger.warn("Export of chatbot {} aborted: {}", id, e.getMessage());
+                throw e;
+            }
+        };
+        
+        return ResponseEntity.ok()
+            .contentType(gzip ? MediaType.parseMediaType("application/gzip") : exportFormat.getMediaType())
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+            .body(body);
+    }
+    
+    /**
+     * Get the shard holding a chatbot's conversations
+     */
+    @GetMapping("/{id}/shard")
+    public ResponseEntity<Map<String, Object>> getShard(@PathVariable Long id) {
+        if (!chatbotRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of(
+            "chatbotId", id,
+            "shard", tenantShardService.getShard(id),
+            "state", tenantShardService.getState(id).name(),
+            "shards", tenantShardService.getShardNames()));
+    }
+    
+    /**
+     * Move a chatbot's conversations to another shard in the background; the chatbot stays online
+     */
+    @PostMapping("/{id}/shard")
+    public ResponseEntity<Map<String, Object>> moveToShard(@PathVariable Long id, @RequestParam String target) {
+        if (!chatbotRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            String source = tenantRebalanceService.move(id, target);
+            return ResponseEntity.accepted().body(Map.of("chatbotId", id, "from", source, "to", target));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     /**
      * Get chatbot embed code
      */
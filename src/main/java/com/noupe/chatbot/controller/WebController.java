@@ -5,11 +5,13 @@ import com.noupe.chatbot.repository.ChatbotRepository;
 import com.noupe.chatbot.service.AiChatbotService;
 import com.noupe.chatbot.service.WebsiteAnalysisService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,6 +23,9 @@ import java.util.Optional;
 @RequestMapping("/")
 public class WebController {
     
+    private static final int DASHBOARD_CHATBOTS = 6;
+    private static final int PAGE_SIZE = 20;
+    
     private final ChatbotRepository chatbotRepository;
     private final AiChatbotService aiChatbotService;
     private final WebsiteAnalysisService websiteAnalysisService;
@@ -39,10 +44,9 @@ public class WebController {
      */
     @GetMapping
     public String home(Model model) {
-        List<Chatbot> chatbots = chatbotRepository.findAll();
-        model.addAttribute("chatbots", chatbots);
-        model.addAttribute("totalChatbots", chatbots.size());
-        model.addAttribute("activeChatbots", chatbots.stream().mapToInt(c -> c.getIsActive() ? 1 : 0).sum());
+        model.addAttribute("chatbots", chatbotRepository.findSummaries(0L, null, null, PageRequest.of(0, DASHBOARD_CHATBOTS)));
+        model.addAttribute("totalChatbots", chatbotRepository.countAllChatbots());
+        model.addAttribute("activeChatbots", chatbotRepository.countActiveChatbots());
         return "index";
     }
     
@@ -50,9 +54,11 @@ public class WebController {
      * Chatbot management page
      */
     @GetMapping("/chatbots")
-    public String chatbots(Model model) {
-        List<Chatbot> chatbots = chatbotRepository.findAll();
-        model.addAttribute("chatbots", chatbots);
+    public String chatbots(@RequestParam(required = false) Long after,
+                           @RequestParam(required = false) Boolean active,
+                           @RequestParam(required = false) String name,
+                           Model model) {
+        addChatbotPage(model, after, active, name);
         return "chatbots";
     }
     
@@ -118,9 +124,10 @@ public class WebController {
      * Analytics page
      */
     @GetMapping("/analytics")
-    public String analytics(Model model) {
-        List<Chatbot> chatbots = chatbotRepository.findAll();
-        model.addAttribute("chatbots", chatbots);
+    public String analytics(@RequestParam(required = false) Long after, Model model) {
+        addChatbotPage(model, after, null, null);
+        model.addAttribute("totalChatbots", chatbotRepository.countAllChatbots());
+        model.addAttribute("activeChatbots", chatbotRepository.countActiveChatbots());
         return "analytics";
     }
     
@@ -131,4 +138,23 @@ public class WebController {
     public String settings(Model model) {
         return "settings";
     }
+    
+    /**
+     * Add one keyset page of chatbot summaries and the cursor of the next page, if any
+     */
+    private void addChatbotPage(Model model, Long after, Boolean active, String name) {
+        String nameFilter = name != null && !name.isBlank() ? name.trim() : null;
+        List<ChatbotRepository.ChatbotSummary> chatbots = chatbotRepository.findSummaries(
+            after != null ? after : 0L, active, nameFilter, PageRequest.of(0, PAGE_SIZE + 1));
+        
+        Long nextCursor = null;
+        if (chatbots.size() > PAGE_SIZE) {
+            chatbots = chatbots.subList(0, PAGE_SIZE);
+            nextCursor = chatbots.get(PAGE_SIZE - 1).getId();
+        }
+        model.addAttribute("chatbots", chatbots);
+        model.addAttribute("nextCursor", nextCursor);
+        model.addAttribute("active", active);
+        model.addAttribute("name", nameFilter);
+    }
 }
@@ -0,0 +1,164 @@
+package com.noupe.chatbot.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Entity representing one pre-aggregated analytics counter of a chatbot:
+ * a metric (optionally split by a dimension such as the language) summed
+ * over an hour, a day, or all time.
+ *
+ * Rows are incremented in JDBC batches from in-memory counters; the entity
+ * also serves as the value object for those batches.
+ */
+@Entity
+@Table(name = "analytics_rollups", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_analytics_rollups_key", 
+                      columnNames = {"chatbot_id", "granularity", "bucket_start", "metric", "dimension"})
+})
+public class AnalyticsRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chatbot_id", nullable = false, insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Chatbot chatbot;
+    
+    @Column(name = "chatbot_id", nullable = false)
+    private Long chatbotId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Granularity granularity;
+    
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private Metric metric;
+    
+    @Column(nullable = false, length = 50)
+    private String dimension = "";
+    
+    @Column(nullable = false)
+    private Long amount = 0L;
+    
+    // Constructors
+    public AnalyticsRollup() {}
+    
+    public AnalyticsRollup(Long chatbotId, Granularity granularity, LocalDateTime bucketStart, 
+                           Metric metric, String dimension, long amount) {
+        this.chatbotId = chatbotId;
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.metric = metric;
+        this.dimension = dimension;
+        this.amount = amount;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Chatbot getChatbot() {
+        return chatbot;
+    }
+    
+    public Long getChatbotId() {
+        return chatbotId;
+    }
+    
+    public void setChatbotId(Long chatbotId) {
+        this.chatbotId = chatbotId;
+    }
+    
+    public Granularity getGranularity() {
+        return granularity;
+    }
+    
+    public void setGranularity(Granularity granularity) {
+        this.granularity = granularity;
+    }
+    
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+    
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+    
+    public Metric getMetric() {
+        return metric;
+    }
+    
+    public void setMetric(Metric metric) {
+        this.metric = metric;
+    }
+    
+    public String getDimension() {
+        return dimension;
+    }
+    
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+    
+    public Long getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+    
+    /**
+     * Enum representing the time span a rollup row covers
+     */
+    public enum Granularity {
+        HOUR,
+        DAY,
+        ALL;
+        
+        private static final LocalDateTime ALL_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+        
+        /**
+         * Start of the bucket containing the given time
+         */
+        public LocalDateTime bucketStart(LocalDateTime time) {
+            return switch (this) {
+                case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+                case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+                case ALL -> ALL_TIME;
+            };
+        }
+    }
+    
+    /**
+     * Enum representing the counted quantity
+     */
+    public enum Metric {
+        CONVERSATIONS,
+        CONVERSATIONS_ENDED,
+        CONVERSATION_SECONDS,
+        MESSAGES,
+        USER_MESSAGES,
+        AI_MESSAGES,
+        RESPONSE_TIME_MS,
+        LANGUAGE,
+        RESPONSE_TIME_BUCKET
+    }
+}
@@ -15,11 +15,14 @@ import java.util.List;
  * Entity representing a chatbot configuration
  */
 @Entity
-@Table(name = "chatbots")
+@Table(name = "chatbots", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_chatbots_embed_code", columnNames = {"embed_code"})
+})
 public class Chatbot {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chatbots_seq")
+    @SequenceGenerator(name = "chatbots_seq", sequenceName = "chatbots_seq", allocationSize = 50)
     private Long id;
     
     @NotBlank(message = "Name is required")
@@ -38,7 +41,8 @@ public class Chatbot {
     private String primaryLanguage = "en";
     
     @ElementCollection
-    @CollectionTable(name = "chatbot_languages", joinColumns = @JoinColumn(name = "chatbot_id"))
+    @CollectionTable(name = "chatbot_languages", joinColumns = @JoinColumn(name = "chatbot_id"),
+                     indexes = @Index(name = "idx_chatbot_languages_chatbot", columnList = "chatbot_id"))
     @Column(name = "language")
     private List<String> supportedLanguages = new ArrayList<>();
     
@@ -54,6 +58,20 @@ public class Chatbot {
     @Column(nullable = false)
     private String embedCode;
     
+    @Column(nullable = false)
+    private Boolean recrawlEnabled = true;
+    
+    @Column(nullable = false)
+    private Integer recrawlIntervalHours = 24;
+    
+    // Days ended conversations are kept in the database before being archived; null uses the default
+    @Column
+    private Integer conversationRetentionDays;
+    
+    // Conversations before this time are not in the analytics rollups yet; set by migration, cleared once added
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime analyticsSeedBefore;
+    
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -163,6 +181,34 @@ public class Chatbot {
         this.embedCode = embedCode;
     }
     
+    public Boolean getRecrawlEnabled() {
+        return recrawlEnabled;
+    }
+    
+    public void setRecrawlEnabled(Boolean recrawlEnabled) {
+        this.recrawlEnabled = recrawlEnabled;
+    }
+    
+    public Integer getRecrawlIntervalHours() {
+        return recrawlIntervalHours;
+    }
+    
+    public void setRecrawlIntervalHours(Integer recrawlIntervalHours) {
+        this.recrawlIntervalHours = recrawlIntervalHours;
+    }
+    
+    public Integer getConversationRetentionDays() {
+        return conversationRetentionDays;
+    }
+    
+    public void setConversationRetentionDays(Integer conversationRetentionDays) {
+        this.conversationRetentionDays = conversationRetentionDays;
+    }
+    
+    public LocalDateTime getAnalyticsSeedBefore() {
+        return analyticsSeedBefore;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,169 @@
+package com.noupe.chatbot.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Storage format of large text columns: a format byte followed by the text.
+ *
+ * Texts of at least {@value #MIN_COMPRESSED_BYTES} UTF-8 bytes are stored
+ * DEFLATE-compressed at the fastest level when that saves at least a tenth
+ * of their size; shorter or incompressible texts are stored as plain UTF-8.
+ * Compressed values carry their UTF-8 length as a varint, so they are
+ * inflated into an exactly sized buffer.
+ *
+ * <pre>
+ *   0x00 utf8-bytes
+ *   0x01 varint(utf8-length) deflate-bytes
+ * </pre>
+ */
+public final class CompressedText {
+    
+    /**
+     * Smallest text, in UTF-8 bytes, that is compressed
+     */
+    public static final int MIN_COMPRESSED_BYTES = 256;
+    
+    static final byte PLAIN = 0;
+    static final byte DEFLATE = 1;
+    
+    // zlib streams are expensive to set up, so every thread keeps one of each
+    private static final ThreadLocal<Deflater> deflaters = 
+        ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+    
+    private CompressedText() {
+    }
+    
+    /**
+     * Encode text for storage; null stays null
+     */
+    public static byte[] encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= MIN_COMPRESSED_BYTES) {
+            byte[] compressed = deflate(utf8);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        byte[] stored = new byte[utf8.length + 1];
+        stored[0] = PLAIN;
+        System.arraycopy(utf8, 0, stored, 1, utf8.length);
+        return stored;
+    }
+    
+    /**
+     * Decode a stored value; null stays null
+     *
+     * @throws IllegalArgumentException if the value is not in this format or is corrupt
+     */
+    public static String decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.length == 0) {
+            throw new IllegalArgumentException("Empty stored text");
+        }
+        if (stored[0] == PLAIN) {
+            return new String(stored, 1, stored.length - 1, StandardCharsets.UTF_8);
+        }
+        if (stored[0] != DEFLATE) {
+            throw new IllegalArgumentException("Unknown stored text format: " + stored[0]);
+        }
+        
+        int[] position = {1};
+        int length = readVarInt(stored, position);
+        byte[] utf8 = new byte[length];
+        Inflater inflater = inflaters.get();
+        try {
+            inflater.setInput(stored, position[0], stored.length - position[0]);
+            int inflated = 0;
+            while (inflated < length) {
+                int count = inflater.inflate(utf8, inflated, length - inflated);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new IllegalArgumentException("Truncated stored text");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt stored text", e);
+        } finally {
+            inflater.reset();
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Decode a stored value, or return the text of the legacy plain text
+     * column for rows written before the stored form and not converted yet
+     */
+    public static String decode(byte[] stored, String legacy) {
+        return stored != null ? decode(stored) : legacy;
+    }
+    
+    /**
+     * The compressed form, or null if it would not save at least a tenth
+     */
+    private static byte[] deflate(byte[] utf8) {
+        int limit = utf8.length - utf8.length / 10;
+        byte[] header = new byte[6];
+        header[0] = DEFLATE;
+        int headerLength = writeVarInt(header, 1, utf8.length);
+        
+        byte[] stored = new byte[limit];
+        System.arraycopy(header, 0, stored, 0, headerLength);
+        Deflater deflater = deflaters.get();
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            int length = headerLength;
+            while (!deflater.finished()) {
+                if (length == stored.length) {
+                    return null;
+                }
+                length += deflater.deflate(stored, length, stored.length - length);
+            }
+            return Arrays.copyOf(stored, length);
+        } finally {
+            deflater.reset();
+        }
+    }
+    
+    private static int writeVarInt(byte[] out, int offset, int value) {
+        int position = offset;
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+    
+    private static int readVarInt(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            if (position[0] >= data.length || shift > 28) {
+                throw new IllegalArgumentException("Truncated stored text");
+            }
+            byte b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Invalid stored text length");
+                }
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,17 +15,30 @@ import java.util.List;
  * Entity representing a conversation between a user and a chatbot
  */
 @Entity
-@Table(name = "conversations")
+@Table(name = "conversations", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_conversations_chatbot_session", columnNames = {"chatbot_id", "session_id"})
+}, indexes = {
+    @Index(name = "idx_conversations_chatbot_ended", columnList = "chatbot_id, is_active, ended_at")
+})
 public class Conversation {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "conversations_seq")
+    @GenericGenerator(name = "conversations_seq", type = ShardSequenceGenerator.class, parameters = {
+        @Parameter(name = "sequence_name", value = "conversations_seq"),
+        @Parameter(name = "increment_size", value = "50")
+    })
     private Long id;
     
+    // Chatbots live in the primary database only, so a conversation stored in a shard can never load
+    // its chatbot; the association is there for queries and for the chatbot's side of the mapping
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "chatbot_id", nullable = false)
+    @JoinColumn(name = "chatbot_id", nullable = false, insertable = false, updatable = false)
     private Chatbot chatbot;
     
+    @Column(name = "chatbot_id", nullable = false)
+    private Long chatbotId;
+    
     @NotBlank(message = "Session ID is required")
     @Column(nullable = false, length = 100)
     private String sessionId;
@@ -47,6 +62,10 @@ public class Conversation {
     @Column
     private LocalDateTime endedAt;
     
+    // Set when a session ended for inactivity comes back; its duration is measured from here
+    @Column
+    private LocalDateTime resumedAt;
+    
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Message> messages = new ArrayList<>();
     
@@ -55,6 +74,7 @@ public class Conversation {
     
     public Conversation(Chatbot chatbot, String sessionId) {
         this.chatbot = chatbot;
+        this.chatbotId = chatbot.getId();
         this.sessionId = sessionId;
     }
     
@@ -69,12 +89,19 @@ public class Conversation {
     }
     
     public long getDurationInMinutes() {
-        if (endedAt != null && createdAt != null) {
-            return java.time.Duration.between(createdAt, endedAt).toMinutes();
+        if (endedAt != null && getStartedAt() != null) {
+            return java.time.Duration.between(getStartedAt(), endedAt).toMinutes();
         }
         return 0;
     }
     
+    /**
+     * Start of the current session: when it was resumed, or else when it was created
+     */
+    public LocalDateTime getStartedAt() {
+        return resumedAt != null ? resumedAt : createdAt;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -84,12 +111,12 @@ public class Conversation {
         this.id = id;
     }
     
-    public Chatbot getChatbot() {
-        return chatbot;
+    public Long getChatbotId() {
+        return chatbotId;
     }
     
-    public void setChatbot(Chatbot chatbot) {
-        this.chatbot = chatbot;
+    public void setChatbotId(Long chatbotId) {
+        this.chatbotId = chatbotId;
     }
     
     public String getSessionId() {
@@ -148,6 +175,14 @@ public class Conversation {
         this.endedAt = endedAt;
     }
     
+    public LocalDateTime getResumedAt() {
+        return resumedAt;
+    }
+    
+    public void setResumedAt(LocalDateTime resumedAt) {
+        this.resumedAt = resumedAt;
+    }
+    
     public List<Message> getMessages() {
         return messages;
     }
@@ -0,0 +1,99 @@
+package com.noupe.chatbot.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Entity representing a URL of a crawl's frontier: queued while
+ * {@code done} is false, visited once it is true.
+ *
+ * Rows are written in JDBC batches by the crawl checkpoint and removed when
+ * the crawl finishes.
+ */
+@Entity
+@Table(name = "crawl_frontier_entries", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_crawl_frontier_job_url", columnNames = {"crawl_job_id", "url"})
+})
+public class CrawlFrontierEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "crawl_job_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private CrawlJob crawlJob;
+    
+    @Column(nullable = false, length = 1000)
+    private String url;
+    
+    @Column(nullable = false)
+    private Integer depth;
+    
+    @Column(nullable = false)
+    private Double priority;
+    
+    @Column(nullable = false)
+    private Boolean done = false;
+    
+    // Constructors
+    public CrawlFrontierEntry() {}
+    
+    public CrawlFrontierEntry(String url, int depth, double priority, boolean done) {
+        this.url = url;
+        this.depth = depth;
+        this.priority = priority;
+        this.done = done;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public CrawlJob getCrawlJob() {
+        return crawlJob;
+    }
+    
+    public void setCrawlJob(CrawlJob crawlJob) {
+        this.crawlJob = crawlJob;
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    public void setUrl(String url) {
+        this.url = url;
+    }
+    
+    public Integer getDepth() {
+        return depth;
+    }
+    
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+    
+    public Double getPriority() {
+        return priority;
+    }
+    
+    public void setPriority(Double priority) {
+        this.priority = priority;
+    }
+    
+    public Boolean getDone() {
+        return done;
+    }
+    
+    public void setDone(Boolean done) {
+        this.done = done;
+    }
+}
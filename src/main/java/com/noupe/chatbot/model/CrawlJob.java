@@ -0,0 +1,237 @@
+package com.noupe.chatbot.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a website crawl, checkpointed while it runs so that
+ * an interrupted crawl can be resumed by a restarted node
+ */
+@Entity
+@Table(name = "crawl_jobs", indexes = {
+    @Index(name = "idx_crawl_jobs_chatbot_started", columnList = "chatbot_id, started_at"),
+    @Index(name = "idx_crawl_jobs_status", columnList = "status")
+})
+public class CrawlJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chatbot_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Chatbot chatbot;
+    
+    @NotNull(message = "Status is required")
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private CrawlStatus status = CrawlStatus.RUNNING;
+    
+    @Column(length = 100)
+    private String nodeId;
+    
+    @Column(nullable = false)
+    private Integer pagesFetched = 0;
+    
+    @Column(nullable = false)
+    private Integer pagesStored = 0;
+    
+    @Column(nullable = false)
+    private Integer duplicatePages = 0;
+    
+    @Column(nullable = false)
+    private Long bytesFetched = 0L;
+    
+    @Column(nullable = false)
+    private Integer maxPages;
+    
+    @Column(nullable = false)
+    private Long maxBytes;
+    
+    @Column(nullable = false)
+    private Integer maxDurationMinutes;
+    
+    @Column(length = 20)
+    private String stopReason;
+    
+    @Column(length = 1000)
+    private String errorMessage;
+    
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime startedAt;
+    
+    @Column
+    private LocalDateTime checkpointedAt;
+    
+    @Column
+    private LocalDateTime finishedAt;
+    
+    // Constructors
+    public CrawlJob() {}
+    
+    public CrawlJob(Chatbot chatbot, String nodeId, int maxPages, long maxBytes, int maxDurationMinutes) {
+        this.chatbot = chatbot;
+        this.nodeId = nodeId;
+        this.maxPages = maxPages;
+        this.maxBytes = maxBytes;
+        this.maxDurationMinutes = maxDurationMinutes;
+        this.checkpointedAt = LocalDateTime.now();
+    }
+    
+    // Helper methods
+    public boolean isRunning() {
+        return status == CrawlStatus.RUNNING;
+    }
+    
+    public void finish(CrawlStatus status, String errorMessage) {
+        this.status = status;
+        this.errorMessage = errorMessage;
+        this.finishedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Chatbot getChatbot() {
+        return chatbot;
+    }
+    
+    public void setChatbot(Chatbot chatbot) {
+        this.chatbot = chatbot;
+    }
+    
+    public CrawlStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(CrawlStatus status) {
+        this.status = status;
+    }
+    
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+    
+    public Integer getPagesFetched() {
+        return pagesFetched;
+    }
+    
+    public void setPagesFetched(Integer pagesFetched) {
+        this.pagesFetched = pagesFetched;
+    }
+    
+    public Integer getPagesStored() {
+        return pagesStored;
+    }
+    
+    public void setPagesStored(Integer pagesStored) {
+        this.pagesStored = pagesStored;
+    }
+    
+    public Integer getDuplicatePages() {
+        return duplicatePages;
+    }
+    
+    public void setDuplicatePages(Integer duplicatePages) {
+        this.duplicatePages = duplicatePages;
+    }
+    
+    public Long getBytesFetched() {
+        return bytesFetched;
+    }
+    
+    public void setBytesFetched(Long bytesFetched) {
+        this.bytesFetched = bytesFetched;
+    }
+    
+    public Integer getMaxPages() {
+        return maxPages;
+    }
+    
+    public void setMaxPages(Integer maxPages) {
+        this.maxPages = maxPages;
+    }
+    
+    public Long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    public void setMaxBytes(Long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    public Integer getMaxDurationMinutes() {
+        return maxDurationMinutes;
+    }
+    
+    public void setMaxDurationMinutes(Integer maxDurationMinutes) {
+        this.maxDurationMinutes = maxDurationMinutes;
+    }
+    
+    public String getStopReason() {
+        return stopReason;
+    }
+    
+    public void setStopReason(String stopReason) {
+        this.stopReason = stopReason;
+    }
+    
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+    
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public LocalDateTime getCheckpointedAt() {
+        return checkpointedAt;
+    }
+    
+    public void setCheckpointedAt(LocalDateTime checkpointedAt) {
+        this.checkpointedAt = checkpointedAt;
+    }
+    
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+    
+    /**
+     * Enum representing the state of a crawl
+     */
+    public enum CrawlStatus {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+}
@@ -0,0 +1,124 @@
+package com.noupe.chatbot.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing the response-time histogram of a chatbot over one
+ * fixed interval, as recorded by one node. Percentiles over a window are
+ * computed by merging the snapshots of the intervals it covers.
+ *
+ * Rows are written in JDBC batches when an interval closes and purged after
+ * the retention period.
+ */
+@Entity
+@Table(name = "latency_snapshots", indexes = {
+    @Index(name = "idx_latency_snapshots_chatbot_interval", columnList = "chatbot_id, interval_start"),
+    @Index(name = "idx_latency_snapshots_interval", columnList = "interval_start")
+})
+public class LatencySnapshot {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chatbot_id", nullable = false, insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Chatbot chatbot;
+    
+    @Column(name = "chatbot_id", nullable = false)
+    private Long chatbotId;
+    
+    @Column(nullable = false)
+    private LocalDateTime intervalStart;
+    
+    @Column(nullable = false)
+    private Integer intervalSeconds;
+    
+    @Column(nullable = false)
+    private Long sampleCount;
+    
+    @Column(nullable = false)
+    private Long maxValueMs;
+    
+    @Column(nullable = false, length = 8192)
+    private byte[] histogram;
+    
+    // Constructors
+    public LatencySnapshot() {}
+    
+    public LatencySnapshot(Long chatbotId, LocalDateTime intervalStart, int intervalSeconds,
+                           long sampleCount, long maxValueMs, byte[] histogram) {
+        this.chatbotId = chatbotId;
+        this.intervalStart = intervalStart;
+        this.intervalSeconds = intervalSeconds;
+        this.sampleCount = sampleCount;
+        this.maxValueMs = maxValueMs;
+        this.histogram = histogram;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Chatbot getChatbot() {
+        return chatbot;
+    }
+    
+    public Long getChatbotId() {
+        return chatbotId;
+    }
+    
+    public void setChatbotId(Long chatbotId) {
+        this.chatbotId = chatbotId;
+    }
+    
+    public LocalDateTime getIntervalStart() {
+        return intervalStart;
+    }
+    
+    public void setIntervalStart(LocalDateTime intervalStart) {
+        this.intervalStart = intervalStart;
+    }
+    
+    public Integer getIntervalSeconds() {
+        return intervalSeconds;
+    }
+    
+    public void setIntervalSeconds(Integer intervalSeconds) {
+        this.intervalSeconds = intervalSeconds;
+    }
+    
+    public Long getSampleCount() {
+        return sampleCount;
+    }
+    
+    public void setSampleCount(Long sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+    
+    public Long getMaxValueMs() {
+        return maxValueMs;
+    }
+    
+    public void setMaxValueMs(Long maxValueMs) {
+        this.maxValueMs = maxValueMs;
+    }
+    
+    public byte[] getHistogram() {
+        return histogram;
+    }
+    
+    public void setHistogram(byte[] histogram) {
+        this.histogram = histogram;
+    }
+}
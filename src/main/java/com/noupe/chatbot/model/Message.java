@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.time.LocalDateTime;
 
@@ -11,11 +13,17 @@ import java.time.LocalDateTime;
  * Entity representing a message in a conversation
  */
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    @Index(name = "idx_messages_conversation_created", columnList = "conversation_id, created_at, id")
+})
 public class Message {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "messages_seq")
+    @GenericGenerator(name = "messages_seq", type = ShardSequenceGenerator.class, parameters = {
+        @Parameter(name = "sequence_name", value = "messages_seq"),
+        @Parameter(name = "increment_size", value = "50")
+    })
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -27,9 +35,18 @@ public class Message {
     @Column(nullable = false)
     private MessageType type;
     
-    @NotBlank(message = "Content is required")
-    @Column(nullable = false, columnDefinition = "TEXT")
-    private String content;
+    /**
+     * Text in {@link CompressedText} form; decoded on first read
+     */
+    @Column(name = "stored_content", columnDefinition = "BYTEA")
+    private byte[] content;
+    
+    // Text of messages written before the stored form, until the compression backfill has moved it over
+    @Column(name = "content", columnDefinition = "TEXT", insertable = false, updatable = false)
+    private String legacyContent;
+    
+    @Transient
+    private String decodedContent;
     
     @Column(columnDefinition = "TEXT")
     private String metadata;
@@ -50,7 +67,7 @@ public class Message {
     public Message(Conversation conversation, MessageType type, String content, boolean isUserMessage) {
         this.conversation = conversation;
         this.type = type;
-        this.content = content;
+        setContent(content);
         this.isUserMessage = isUserMessage;
         this.responseTimeMs = 0;
     }
@@ -80,12 +97,17 @@ public class Message {
         this.type = type;
     }
     
+    @NotBlank(message = "Content is required")
     public String getContent() {
-        return content;
+        if (decodedContent == null) {
+            decodedContent = CompressedText.decode(content, legacyContent);
+        }
+        return decodedContent;
     }
     
     public void setContent(String content) {
-        this.content = content;
+        this.content = CompressedText.encode(content);
+        this.decodedContent = content;
     }
     
     public String getMetadata() {
@@ -0,0 +1,49 @@
+package com.noupe.chatbot.model;
+
+import com.noupe.chatbot.config.TenantShardRoutingDataSource;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.PooledLoOptimizer;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequence generator for entities stored in the shard databases.
+ *
+ * Hibernate's own sequence generator keeps one block of ids per sequence for
+ * the whole application, so a block drawn from one database's sequence would
+ * also be handed out for writes to another. This one keeps a block per shard,
+ * drawn from the sequence of the shard the current thread is routed to, and
+ * so stays within that shard's id range.
+ *
+ * Blocks use the pooled-lo scheme: a sequence value is the first id of its
+ * block, so the ids of a shard start at the sequence's start value.
+ */
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+    
+    private final Map<String, Optimizer> optimizers = new ConcurrentHashMap<>();
+    private Class<?> returnClass;
+    private int incrementSize;
+    
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+        this.returnClass = type.getReturnedClass();
+        this.incrementSize = getOptimizer().getIncrementSize();
+    }
+    
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        // The session's connection belongs to the shard selected when its transaction began
+        Optimizer optimizer = optimizers.computeIfAbsent(TenantShardRoutingDataSource.getCurrentShard(),
+            shard -> new PooledLoOptimizer(returnClass, incrementSize));
+        return optimizer.generate(getDatabaseStructure().buildCallback(session));
+    }
+}
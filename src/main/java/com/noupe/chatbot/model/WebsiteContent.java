@@ -8,10 +8,18 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 /**
- * Entity representing website content that has been analyzed and indexed
+ * Entity representing website content that has been analyzed and indexed.
+ *
+ * The extracted text and meta description are stored separately in
+ * {@link WebsiteContentBody} and are only present on an instance once they
+ * have been extracted or explicitly loaded.
  */
 @Entity
-@Table(name = "website_contents")
+@Table(name = "website_contents", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_website_contents_chatbot_url", columnNames = {"chatbot_id", "url"})
+}, indexes = {
+    @Index(name = "idx_website_contents_next_crawl", columnList = "next_crawl_at")
+})
 public class WebsiteContent {
     
     @Id
@@ -30,10 +38,10 @@ public class WebsiteContent {
     @Column(nullable = false, length = 500)
     private String title;
     
-    @Column(columnDefinition = "TEXT")
+    @Transient
     private String content;
     
-    @Column(columnDefinition = "TEXT")
+    @Transient
     private String metaDescription;
     
     @Column(length = 1000)
@@ -54,6 +62,33 @@ public class WebsiteContent {
     @Column(columnDefinition = "TEXT")
     private String vectorId;
     
+    @Column(length = 500)
+    private String etag;
+    
+    @Column(length = 100)
+    private String lastModified;
+    
+    @Column(length = 64)
+    private String contentHash;
+    
+    @Column(length = 64)
+    private String textHash;
+    
+    @Column
+    private LocalDateTime lastCrawledAt;
+    
+    @Column
+    private LocalDateTime nextCrawlAt;
+    
+    @Column
+    private Integer recrawlIntervalMinutes;
+    
+    @Column(nullable = false)
+    private Integer checkCount = 0;
+    
+    @Column(nullable = false)
+    private Integer changeCount = 0;
+    
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -62,12 +97,33 @@ public class WebsiteContent {
     public WebsiteContent() {}
     
     public WebsiteContent(Chatbot chatbot, String url, String title, String content) {
+        this(chatbot, url, title, content, countWords(content));
+    }
+    
+    public WebsiteContent(Chatbot chatbot, String url, String title, String content, int wordCount) {
         this.chatbot = chatbot;
         this.url = url;
         this.title = title;
         this.content = content;
         this.contentLength = content != null ? content.length() : 0;
-        this.wordCount = content != null ? content.split("\\s+").length : 0;
+        this.wordCount = wordCount;
+    }
+    
+    // Helper method to count words without splitting the content
+    private static int countWords(String content) {
+        if (content == null) {
+            return 0;
+        }
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < content.length(); i++) {
+            boolean whitespace = Character.isWhitespace(content.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
     }
     
     // Getters and Setters
@@ -110,7 +166,15 @@ public class WebsiteContent {
     public void setContent(String content) {
         this.content = content;
         this.contentLength = content != null ? content.length() : 0;
-        this.wordCount = content != null ? content.split("\\s+").length : 0;
+        this.wordCount = countWords(content);
+    }
+    
+    /**
+     * Attach the stored text without recomputing its statistics
+     */
+    public void setBody(String content, String metaDescription) {
+        this.content = content;
+        this.metaDescription = metaDescription;
     }
     
     public String getMetaDescription() {
@@ -169,6 +233,81 @@ public class WebsiteContent {
         this.vectorId = vectorId;
     }
     
+    public String getEtag() {
+        return etag;
+    }
+    
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+    
+    public String getLastModified() {
+        return lastModified;
+    }
+    
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    /**
+     * Hash of the extracted text, used to detect pages with the same text under different URLs
+     */
+    public String getTextHash() {
+        return textHash;
+    }
+    
+    public void setTextHash(String textHash) {
+        this.textHash = textHash;
+    }
+    
+    public LocalDateTime getLastCrawledAt() {
+        return lastCrawledAt;
+    }
+    
+    public void setLastCrawledAt(LocalDateTime lastCrawledAt) {
+        this.lastCrawledAt = lastCrawledAt;
+    }
+    
+    public LocalDateTime getNextCrawlAt() {
+        return nextCrawlAt;
+    }
+    
+    public void setNextCrawlAt(LocalDateTime nextCrawlAt) {
+        this.nextCrawlAt = nextCrawlAt;
+    }
+    
+    public Integer getRecrawlIntervalMinutes() {
+        return recrawlIntervalMinutes;
+    }
+    
+    public void setRecrawlIntervalMinutes(Integer recrawlIntervalMinutes) {
+        this.recrawlIntervalMinutes = recrawlIntervalMinutes;
+    }
+    
+    public Integer getCheckCount() {
+        return checkCount;
+    }
+    
+    public void setCheckCount(Integer checkCount) {
+        this.checkCount = checkCount;
+    }
+    
+    public Integer getChangeCount() {
+        return changeCount;
+    }
+    
+    public void setChangeCount(Integer changeCount) {
+        this.changeCount = changeCount;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
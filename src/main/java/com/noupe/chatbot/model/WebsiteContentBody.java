@@ -0,0 +1,74 @@
+package com.noupe.chatbot.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Entity representing the extracted text of a website content row, kept in
+ * its own table so that page listings and crawl bookkeeping never load it.
+ *
+ * Rows share the id of their website content and are written and read in
+ * JDBC batches only when the text itself is needed. The text is stored in
+ * {@link CompressedText} form.
+ */
+@Entity
+@Table(name = "website_content_bodies")
+public class WebsiteContentBody {
+    
+    @Id
+    @Column(name = "content_id")
+    private Long contentId;
+    
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "content_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private WebsiteContent websiteContent;
+    
+    @Column(name = "stored_content", columnDefinition = "BYTEA")
+    private byte[] content;
+    
+    // Text of pages written before the stored form, until the compression backfill has moved it over
+    @Column(name = "content", columnDefinition = "TEXT", insertable = false, updatable = false)
+    private String legacyContent;
+    
+    @Column(columnDefinition = "TEXT")
+    private String metaDescription;
+    
+    // Constructors
+    public WebsiteContentBody() {}
+    
+    // Getters and Setters
+    public Long getContentId() {
+        return contentId;
+    }
+    
+    public void setContentId(Long contentId) {
+        this.contentId = contentId;
+    }
+    
+    public WebsiteContent getWebsiteContent() {
+        return websiteContent;
+    }
+    
+    public void setWebsiteContent(WebsiteContent websiteContent) {
+        this.websiteContent = websiteContent;
+    }
+    
+    public String getContent() {
+        return CompressedText.decode(content, legacyContent);
+    }
+    
+    public void setContent(String content) {
+        this.content = CompressedText.encode(content);
+    }
+    
+    public String getMetaDescription() {
+        return metaDescription;
+    }
+    
+    public void setMetaDescription(String metaDescription) {
+        this.metaDescription = metaDescription;
+    }
+}
@@ -0,0 +1,153 @@
+package com.noupe.chatbot.repository;
+
+import com.noupe.chatbot.model.AnalyticsRollup;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC access to analytics rollups.
+ *
+ * Counters are added to existing rows in one batch; rows that do not exist
+ * yet are inserted in a second batch. If another node inserted the same row
+ * first, the affected rows are retried one by one.
+ */
+@Repository
+public class AnalyticsRollupRepository {
+    
+    private static final String INCREMENT_SQL = """
+        UPDATE analytics_rollups SET amount = amount + ?
+        WHERE chatbot_id = ? AND granularity = ? AND bucket_start = ? AND metric = ? AND dimension = ?
+        """;
+    
+    private static final String INSERT_SQL = """
+        INSERT INTO analytics_rollups (chatbot_id, granularity, bucket_start, metric, dimension, amount)
+        VALUES (?, ?, ?, ?, ?, ?)
+        """;
+    
+    private static final String SELECT_COLUMNS = 
+        "SELECT chatbot_id, granularity, bucket_start, metric, dimension, amount FROM analytics_rollups ";
+    
+    private static final RowMapper<AnalyticsRollup> ROW_MAPPER = (rs, rowNum) -> new AnalyticsRollup(
+        rs.getLong("chatbot_id"),
+        AnalyticsRollup.Granularity.valueOf(rs.getString("granularity")),
+        rs.getTimestamp("bucket_start").toLocalDateTime(),
+        AnalyticsRollup.Metric.valueOf(rs.getString("metric")),
+        rs.getString("dimension"),
+        rs.getLong("amount"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public AnalyticsRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Add each rollup's amount to its stored counter, creating counters as needed
+     */
+    public void incrementAll(List<AnalyticsRollup> deltas) {
+        int[] updated = jdbcTemplate.batchUpdate(INCREMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                AnalyticsRollup delta = deltas.get(i);
+                ps.setLong(1, delta.getAmount());
+                setKey(ps, 2, delta);
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+        
+        List<AnalyticsRollup> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(deltas.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing, missing.size(), (ps, delta) -> {
+                setKey(ps, 1, delta);
+                ps.setLong(6, delta.getAmount());
+            });
+        } catch (DataIntegrityViolationException e) {
+            for (AnalyticsRollup delta : missing) {
+                increment(delta);
+            }
+        }
+    }
+    
+    private void increment(AnalyticsRollup delta) {
+        int updated = jdbcTemplate.update(INCREMENT_SQL, ps -> {
+            ps.setLong(1, delta.getAmount());
+            setKey(ps, 2, delta);
+        });
+        if (updated == 0) {
+            jdbcTemplate.update(INSERT_SQL, ps -> {
+                setKey(ps, 1, delta);
+                ps.setLong(6, delta.getAmount());
+            });
+        }
+    }
+    
+    /**
+     * All-time counters of a chatbot
+     */
+    public List<AnalyticsRollup> findTotals(Long chatbotId) {
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE chatbot_id = ? AND granularity = 'ALL'", 
+            ROW_MAPPER, chatbotId);
+    }
+    
+    /**
+     * Counters of a chatbot for the buckets starting in [from, to)
+     */
+    public List<AnalyticsRollup> findSeries(Long chatbotId, AnalyticsRollup.Granularity granularity,
+                                            LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(SELECT_COLUMNS + 
+            "WHERE chatbot_id = ? AND granularity = ? AND bucket_start >= ? AND bucket_start < ? " +
+            "ORDER BY bucket_start", 
+            ROW_MAPPER, chatbotId, granularity.name(), Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+    
+    /**
+     * Take the time before which a chatbot's history still has to be added
+     * to its rollups, leaving nothing for other readers. Must run in the
+     * transaction that adds the history; the row stays locked until it ends.
+     *
+     * @return the cutoff, or null if the history has already been added
+     */
+    public LocalDateTime claimSeed(Long chatbotId) {
+        List<Timestamp> cutoff = jdbcTemplate.queryForList(
+            "SELECT analytics_seed_before FROM chatbots WHERE id = ? FOR UPDATE", Timestamp.class, chatbotId);
+        if (cutoff.isEmpty() || cutoff.get(0) == null) {
+            return null;
+        }
+        jdbcTemplate.update("UPDATE chatbots SET analytics_seed_before = NULL WHERE id = ?", chatbotId);
+        return cutoff.get(0).toLocalDateTime();
+    }
+    
+    /**
+     * Bind chatbot_id through dimension, 5 parameters starting at the given index
+     */
+    private static void setKey(PreparedStatement ps, int index, AnalyticsRollup rollup) throws SQLException {
+        ps.setLong(index, rollup.getChatbotId());
+        ps.setString(index + 1, rollup.getGranularity().name());
+        ps.setTimestamp(index + 2, Timestamp.valueOf(rollup.getBucketStart()));
+        ps.setString(index + 3, rollup.getMetric().name());
+        ps.setString(index + 4, rollup.getDimension());
+    }
+}
@@ -1,11 +1,14 @@
 package com.noupe.chatbot.repository;
 
+import com.noupe.chatbot.config.ReplicaTransactional;
 import com.noupe.chatbot.model.Chatbot;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,16 +41,59 @@ public interface ChatbotRepository extends JpaRepository<Chatbot, Long> {
     /**
      * Get chatbot statistics
      */
+    @ReplicaTransactional
     @Query("SELECT COUNT(c) FROM Chatbot c")
     Long countAllChatbots();
     
+    @ReplicaTransactional
     @Query("SELECT COUNT(c) FROM Chatbot c WHERE c.isActive = true")
     Long countActiveChatbots();
     
+    /**
+     * Page of chatbot summaries with ids above the cursor, optionally filtered by
+     * status and name. Only the listed columns are read; no associations are loaded.
+     */
+    @ReplicaTransactional
+    @Query("SELECT c.id AS id, c.name AS name, c.websiteUrl AS websiteUrl, c.description AS description, " +
+           "c.primaryLanguage AS primaryLanguage, c.isActive AS isActive, c.createdAt AS createdAt " +
+           "FROM Chatbot c WHERE c.id > :afterId " +
+           "AND (:active IS NULL OR c.isActive = :active) " +
+           "AND (:name IS NULL OR LOWER(c.name) LIKE LOWER(CONCAT('%', :name, '%'))) " +
+           "ORDER BY c.id ASC")
+    List<ChatbotSummary> findSummaries(@Param("afterId") Long afterId, @Param("active") Boolean active,
+                                       @Param("name") String name, Pageable pageable);
+    
+    /**
+     * Conversation retention setting of every chatbot
+     */
+    @Query("SELECT c.id AS id, c.conversationRetentionDays AS retentionDays FROM Chatbot c ORDER BY c.id")
+    List<RetentionSetting> findRetentionSettings();
+    
     /**
      * Find chatbots created in date range
      */
     @Query("SELECT c FROM Chatbot c WHERE c.createdAt BETWEEN :startDate AND :endDate")
     List<Chatbot> findByCreatedAtBetween(@Param("startDate") java.time.LocalDateTime startDate, 
                                         @Param("endDate") java.time.LocalDateTime endDate);
+    
+    /**
+     * Projection of the chatbot fields shown in listings
+     */
+    interface ChatbotSummary {
+        Long getId();
+        String getName();
+        String getWebsiteUrl();
+        String getDescription();
+        String getPrimaryLanguage();
+        Boolean getIsActive();
+        LocalDateTime getCreatedAt();
+    }
+    
+    /**
+     * Projection of a chatbot's conversation retention
+     */
+    interface RetentionSetting {
+        Long getId();
+        Integer getRetentionDays();
+    }
 }
@@ -0,0 +1,95 @@
+package com.noupe.chatbot.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JDBC access for moving text written before the {@link com.noupe.chatbot.model.CompressedText}
+ * form from the legacy plain text content column to the stored_content column.
+ *
+ * Rows are read by primary key above a cursor, so every batch is a short
+ * index range scan. Converted rows have their legacy text cleared, so only
+ * rows that still carry it are returned.
+ */
+@Repository
+public class ContentCompressionRepository {
+    
+    private static final String FIND_MESSAGES_SQL = """
+        SELECT id, content FROM messages
+        WHERE id > ? AND content IS NOT NULL
+        ORDER BY id
+        LIMIT ?
+        """;
+    
+    private static final String FIND_BODIES_SQL = """
+        SELECT content_id AS id, content FROM website_content_bodies
+        WHERE content_id > ? AND content IS NOT NULL
+        ORDER BY content_id
+        LIMIT ?
+        """;
+    
+    private static final RowMapper<LegacyText> LEGACY_TEXT_ROW_MAPPER = (rs, rowNum) -> new LegacyText(
+        rs.getLong("id"),
+        rs.getString("content"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public ContentCompressionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Messages still in the legacy column with ids above the cursor, in id order
+     */
+    public List<LegacyText> findLegacyMessages(long afterId, int limit) {
+        return jdbcTemplate.query(FIND_MESSAGES_SQL, LEGACY_TEXT_ROW_MAPPER, afterId, limit);
+    }
+    
+    /**
+     * Page texts still in the legacy column with content ids above the cursor, in id order
+     */
+    public List<LegacyText> findLegacyBodies(long afterId, int limit) {
+        return jdbcTemplate.query(FIND_BODIES_SQL, LEGACY_TEXT_ROW_MAPPER, afterId, limit);
+    }
+    
+    /**
+     * Store the converted text of messages and clear their legacy text
+     */
+    public void updateMessages(List<Conversion> messages) {
+        jdbcTemplate.batchUpdate(
+            "UPDATE messages SET stored_content = ?, content = NULL WHERE id = ? AND stored_content IS NULL", 
+            messages, messages.size(), (ps, message) -> {
+                ps.setBytes(1, message.stored());
+                ps.setLong(2, message.id());
+            });
+    }
+    
+    /**
+     * Store the converted text of pages and clear their legacy text, skipping
+     * pages whose text was rewritten by a crawl since it was read
+     */
+    public void updateBodies(List<Conversion> bodies) {
+        jdbcTemplate.batchUpdate(
+            "UPDATE website_content_bodies SET stored_content = ?, content = NULL " +
+            "WHERE content_id = ? AND stored_content IS NULL", 
+            bodies, bodies.size(), (ps, body) -> {
+                ps.setBytes(1, body.stored());
+                ps.setLong(2, body.id());
+            });
+    }
+    
+    /**
+     * Text of a row in the legacy plain text column
+     */
+    public record LegacyText(long id, String content) {
+    }
+    
+    /**
+     * Text of a row in {@link com.noupe.chatbot.model.CompressedText} form
+     */
+    public record Conversion(long id, byte[] stored) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.noupe.chatbot.repository;
+
+import com.noupe.chatbot.config.ReplicaTransactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Forward-only JDBC reads of conversations and their messages for exports.
+ *
+ * Rows are handed to the callback one at a time as the driver fetches them in
+ * blocks of the configured fetch size, so memory use does not depend on the
+ * size of the export. Drivers such as PostgreSQL only use a server-side
+ * cursor inside a transaction, so callers should hold one open while reading.
+ */
+@Repository
+public class ConversationExportRepository {
+    
+    private static final String SELECT_MESSAGES_SQL = """
+        SELECT c.id AS conversation_id, c.session_id, c.user_language, c.created_at AS conversation_created_at,
+            c.ended_at AS conversation_ended_at, m.id AS message_id, m.type, m.is_user_message, m.stored_content,
+            m.content, m.response_time_ms, m.created_at
+        FROM conversations c
+        JOIN messages m ON m.conversation_id = c.id
+        """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${app.export.fetch-size:1000}")
+    private int fetchSize;
+    
+    public ConversationExportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Stream the messages of a chatbot created in [from, to), either bound
+     * optional, ordered by conversation and then chronologically, in a
+     * read-only transaction of its own unless one is active
+     */
+    @ReplicaTransactional
+    public void streamMessages(Long chatbotId, LocalDateTime from, LocalDateTime to, RowCallbackHandler handler) {
+        StringBuilder sql = new StringBuilder(SELECT_MESSAGES_SQL).append("WHERE c.chatbot_id = ? ");
+        List<Object> args = new ArrayList<>();
+        args.add(chatbotId);
+        if (from != null) {
+            sql.append("AND m.created_at >= ? ");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append("AND m.created_at < ? ");
+            args.add(Timestamp.valueOf(to));
+        }
+        sql.append("ORDER BY c.id, m.created_at, m.id");
+        query(sql.toString(), args, handler);
+    }
+    
+    /**
+     * Stream the messages of the given conversations, ordered by conversation and then chronologically
+     */
+    public void streamMessagesOfConversations(List<Long> conversationIds, RowCallbackHandler handler) {
+        if (conversationIds.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(conversationIds.size(), "?"));
+        String sql = SELECT_MESSAGES_SQL + "WHERE c.id IN (" + placeholders + ") ORDER BY c.id, m.created_at, m.id";
+        query(sql, new ArrayList<>(conversationIds), handler);
+    }
+    
+    private void query(String sql, List<Object> args, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, handler);
+    }
+}
@@ -22,6 +22,12 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
      */
     Optional<Conversation> findByChatbotAndSessionId(Chatbot chatbot, String sessionId);
     
+    /**
+     * Id of the conversation of a session, without loading the conversation
+     */
+    @Query("SELECT c.id FROM Conversation c WHERE c.chatbot.id = :chatbotId AND c.sessionId = :sessionId")
+    Optional<Long> findIdByChatbotIdAndSessionId(@Param("chatbotId") Long chatbotId, @Param("sessionId") String sessionId);
+    
     /**
      * Find all conversations for a chatbot
      */
@@ -54,9 +60,50 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
     @Query("SELECT COUNT(c) FROM Conversation c WHERE c.chatbot = :chatbot AND c.isActive = true")
     Long countActiveByChatbot(@Param("chatbot") Chatbot chatbot);
     
+    /**
+     * Conversations of a chatbot created before the given time, and how many of them had ended by then
+     */
+    @Query("SELECT COUNT(c) AS totalConversations, " +
+           "COALESCE(SUM(CASE WHEN c.endedAt < :before THEN 1 ELSE 0 END), 0) AS endedConversations " +
+           "FROM Conversation c WHERE c.chatbot = :chatbot AND c.createdAt < :before")
+    ConversationCounts countConversationsByChatbot(@Param("chatbot") Chatbot chatbot,
+                                                   @Param("before") LocalDateTime before);
+    
+    /**
+     * Total duration in seconds of the conversations that ended before the given time, or null if none has;
+     * resumed conversations count from their resumption
+     */
+    @Query("SELECT SUM((c.endedAt - COALESCE(c.resumedAt, c.createdAt)) BY SECOND) FROM Conversation c " +
+           "WHERE c.chatbot = :chatbot AND c.endedAt < :before")
+    Double getTotalDurationSecondsByChatbot(@Param("chatbot") Chatbot chatbot, @Param("before") LocalDateTime before);
+    
+    /**
+     * Number of conversations created before the given time per user language
+     */
+    @Query("SELECT c.userLanguage AS language, COUNT(c) AS conversations FROM Conversation c " +
+           "WHERE c.chatbot = :chatbot AND c.createdAt < :before GROUP BY c.userLanguage")
+    List<LanguageCount> countByChatbotGroupByLanguage(@Param("chatbot") Chatbot chatbot,
+                                                      @Param("before") LocalDateTime before);
+    
     /**
      * Find conversations with minimum message count
      */
     @Query("SELECT c FROM Conversation c WHERE c.chatbot = :chatbot AND SIZE(c.messages) >= :minMessages")
     List<Conversation> findByChatbotWithMinMessages(@Param("chatbot") Chatbot chatbot, @Param("minMessages") Integer minMessages);
+    
+    /**
+     * Projection of conversation counts
+     */
+    interface ConversationCounts {
+        Long getTotalConversations();
+        Long getEndedConversations();
+    }
+    
+    /**
+     * Projection of a conversation count per language
+     */
+    interface LanguageCount {
+        String getLanguage();
+        Long getConversations();
+    }
 }
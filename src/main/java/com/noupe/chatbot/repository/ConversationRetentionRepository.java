@@ -0,0 +1,124 @@
+package com.noupe.chatbot.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDBC reads and writes for closing idle conversations and purging archived ones.
+ *
+ * Every statement touches a bounded set of rows by primary key and runs in
+ * its own short transaction, so the chat path is never blocked for long.
+ */
+@Repository
+public class ConversationRetentionRepository {
+    
+    private static final String FIND_IDLE_SQL = """
+        SELECT id, chatbot_id, session_id, started_at, last_activity_at FROM (
+            SELECT c.id, c.chatbot_id, c.session_id, COALESCE(c.resumed_at, c.created_at) AS started_at,
+                COALESCE((SELECT MAX(m.created_at) FROM messages m WHERE m.conversation_id = c.id), c.created_at)
+                    AS last_activity_at
+            FROM conversations c
+            WHERE c.is_active = true AND c.created_at < ? AND c.id > ?
+        ) t
+        WHERE last_activity_at < ?
+        ORDER BY id
+        LIMIT ?
+        """;
+    
+    private static final RowMapper<IdleConversation> IDLE_ROW_MAPPER = (rs, rowNum) -> new IdleConversation(
+        rs.getLong("id"),
+        rs.getLong("chatbot_id"),
+        rs.getString("session_id"),
+        rs.getTimestamp("started_at").toLocalDateTime(),
+        rs.getTimestamp("last_activity_at").toLocalDateTime());
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public ConversationRetentionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Active conversations without any message since the cutoff with ids above the cursor, oldest ids first
+     */
+    public List<IdleConversation> findIdle(LocalDateTime cutoff, long afterId, int limit) {
+        Timestamp time = Timestamp.valueOf(cutoff);
+        return jdbcTemplate.query(FIND_IDLE_SQL, IDLE_ROW_MAPPER, time, afterId, time, limit);
+    }
+    
+    /**
+     * End conversations at their last activity, skipping those that are no
+     * longer active or received a message since they were found idle
+     *
+     * @return the conversations that were ended by this call
+     */
+    public List<IdleConversation> endAll(List<IdleConversation> conversations) {
+        int[][] counts = jdbcTemplate.batchUpdate(
+            "UPDATE conversations SET is_active = false, ended_at = ? WHERE id = ? AND is_active = true " +
+            "AND NOT EXISTS (SELECT 1 FROM messages m WHERE m.conversation_id = conversations.id AND m.created_at > ?)",
+            conversations, conversations.size(), (ps, conversation) -> {
+                Timestamp lastActivity = Timestamp.valueOf(conversation.lastActivityAt());
+                ps.setTimestamp(1, lastActivity);
+                ps.setLong(2, conversation.id());
+                ps.setTimestamp(3, lastActivity);
+            });
+        
+        List<IdleConversation> ended = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Drivers that cannot report per-row counts return SUCCESS_NO_INFO (-2)
+                if (count != 0) {
+                    ended.add(conversations.get(index));
+                }
+                index++;
+            }
+        }
+        return ended;
+    }
+    
+    /**
+     * Ended conversations of a chatbot that ended before the cutoff, oldest ids first
+     */
+    public List<Long> findArchivable(Long chatbotId, LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.queryForList("""
+            SELECT id FROM conversations
+            WHERE chatbot_id = ? AND is_active = false AND ended_at < ?
+            ORDER BY id
+            LIMIT ?
+            """, Long.class, chatbotId, Timestamp.valueOf(cutoff), limit);
+    }
+    
+    /**
+     * Delete the given conversations and their messages, provided they are
+     * still ended; a conversation that was resumed in the meantime is kept
+     *
+     * @return the number of deleted messages
+     */
+    public int deleteEnded(List<Long> conversationIds) {
+        if (conversationIds.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(conversationIds.size(), "?"));
+        Object[] ids = conversationIds.toArray();
+        int messages = jdbcTemplate.update("DELETE FROM messages WHERE conversation_id IN (" 
+            + "SELECT id FROM conversations WHERE id IN (" + placeholders + ") AND is_active = false)", ids);
+        jdbcTemplate.update("DELETE FROM conversations WHERE id IN (" + placeholders + ") AND is_active = false "
+            + "AND NOT EXISTS (SELECT 1 FROM messages m WHERE m.conversation_id = conversations.id)", ids);
+        return messages;
+    }
+    
+    /**
+     * An active conversation without recent messages
+     */
+    public record IdleConversation(long id, long chatbotId, String sessionId, LocalDateTime startedAt,
+                                   LocalDateTime lastActivityAt) {
+    }
+}
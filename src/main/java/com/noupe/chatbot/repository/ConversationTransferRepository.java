@@ -0,0 +1,138 @@
+package com.noupe.chatbot.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDBC reads and writes for copying a chatbot's conversations and messages
+ * between shard databases. Rows are copied with their ids as plain column
+ * values in keyset pages by id, and written idempotently, so a copy pass can
+ * be repeated to pick up rows written in the meantime.
+ *
+ * Statements run against the shard selected for the current thread.
+ * The upserts use PostgreSQL's ON CONFLICT clause.
+ */
+@Repository
+public class ConversationTransferRepository {
+    
+    private static final String CONVERSATION_COLUMNS = 
+        "id, chatbot_id, session_id, user_language, user_ip, user_agent, is_active, created_at, ended_at, resumed_at";
+    
+    private static final String MESSAGE_COLUMNS = 
+        "id, conversation_id, type, stored_content, content, metadata, response_time_ms, is_user_message, created_at";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public ConversationTransferRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Conversations of a chatbot with ids above the cursor, in id order. With
+     * a since time, only those created, ended or active since then.
+     */
+    public List<Object[]> findConversations(Long chatbotId, LocalDateTime since, long afterId, int limit) {
+        if (since == null) {
+            return jdbcTemplate.query("SELECT " + CONVERSATION_COLUMNS + " FROM conversations " +
+                "WHERE chatbot_id = ? AND id > ? ORDER BY id LIMIT ?", rowMapper(10), chatbotId, afterId, limit);
+        }
+        Timestamp time = Timestamp.valueOf(since);
+        return jdbcTemplate.query("SELECT " + CONVERSATION_COLUMNS + " FROM conversations " +
+            "WHERE chatbot_id = ? AND (created_at >= ? OR ended_at >= ? OR is_active = true) AND id > ? " +
+            "ORDER BY id LIMIT ?", rowMapper(10), chatbotId, time, time, afterId, limit);
+    }
+    
+    /**
+     * The given conversations, as far as they exist
+     */
+    public List<Object[]> findConversationsByIds(List<Long> conversationIds) {
+        if (conversationIds.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(conversationIds.size(), "?"));
+        return jdbcTemplate.query("SELECT " + CONVERSATION_COLUMNS + " FROM conversations WHERE id IN (" 
+            + placeholders + ")", rowMapper(10), conversationIds.toArray());
+    }
+    
+    /**
+     * Ids of a chatbot's active conversations
+     */
+    public List<Long> findActiveConversationIds(Long chatbotId) {
+        return jdbcTemplate.queryForList("SELECT id FROM conversations WHERE chatbot_id = ? AND is_active = true",
+            Long.class, chatbotId);
+    }
+    
+    /**
+     * Insert conversations, or bring the state of existing copies up to date
+     */
+    public void upsertConversations(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO conversations (" + CONVERSATION_COLUMNS + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET is_active = EXCLUDED.is_active, ended_at = EXCLUDED.ended_at, " +
+            "resumed_at = EXCLUDED.resumed_at", rows);
+    }
+    
+    /**
+     * Messages of a chatbot with ids above the cursor, in id order; with a
+     * since time, only those created since then
+     */
+    public List<Object[]> findMessages(Long chatbotId, LocalDateTime since, long afterId, int limit) {
+        String sql = "SELECT m.id, m.conversation_id, m.type, m.stored_content, m.content, m.metadata, m.response_time_ms, " +
+            "m.is_user_message, m.created_at FROM messages m JOIN conversations c ON c.id = m.conversation_id " +
+            "WHERE c.chatbot_id = ? AND m.id > ? ";
+        if (since == null) {
+            return jdbcTemplate.query(sql + "ORDER BY m.id LIMIT ?", rowMapper(9), chatbotId, afterId, limit);
+        }
+        return jdbcTemplate.query(sql + "AND m.created_at >= ? ORDER BY m.id LIMIT ?", rowMapper(9), 
+            chatbotId, afterId, Timestamp.valueOf(since), limit);
+    }
+    
+    /**
+     * Insert messages that are not there yet; messages never change once
+     * written. Messages whose conversation has not been copied yet are
+     * skipped and picked up by the next pass.
+     */
+    public void insertMessages(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO messages (" + MESSAGE_COLUMNS + ") " +
+            "SELECT ?, ?, ?, CAST(? AS BYTEA), ?, ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM conversations WHERE id = ?) " +
+            "ON CONFLICT (id) DO NOTHING", rows, rows.size(), (ps, row) -> {
+                for (int i = 0; i < row.length; i++) {
+                    ps.setObject(i + 1, row[i]);
+                }
+                ps.setObject(row.length + 1, row[1]);
+            });
+    }
+    
+    /**
+     * Delete up to the given number of a chatbot's conversations with their messages
+     *
+     * @return the number of deleted conversations
+     */
+    public int deleteConversations(Long chatbotId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM conversations WHERE chatbot_id = ? LIMIT ?", 
+            Long.class, chatbotId, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        jdbcTemplate.update("DELETE FROM messages WHERE conversation_id IN (" + placeholders + ")", args);
+        return jdbcTemplate.update("DELETE FROM conversations WHERE id IN (" + placeholders + ")", args);
+    }
+    
+    private static RowMapper<Object[]> rowMapper(int columns) {
+        return (rs, rowNum) -> {
+            Object[] row = new Object[columns];
+            for (int i = 0; i < columns; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            return row;
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.noupe.chatbot.repository;
+
+import com.noupe.chatbot.model.CrawlFrontierEntry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC access to crawl checkpoints: the frontier entries of running crawls
+ * and the progress counters of their crawl jobs.
+ *
+ * A running crawl refreshes {@code checkpointed_at} with every checkpoint, so
+ * a job that has not been checkpointed for a while belongs to a dead node.
+ */
+@Repository
+public class CrawlCheckpointRepository {
+    
+    private static final String INSERT_ENTRY_SQL = """
+        INSERT INTO crawl_frontier_entries (crawl_job_id, url, depth, priority, done)
+        VALUES (?, ?, ?, ?, ?)
+        """;
+    
+    private static final String MARK_DONE_SQL = """
+        UPDATE crawl_frontier_entries SET done = true WHERE crawl_job_id = ? AND url = ?
+        """;
+    
+    private static final String UPDATE_PROGRESS_SQL = """
+        UPDATE crawl_jobs SET pages_fetched = ?, pages_stored = ?, duplicate_pages = ?, bytes_fetched = ?,
+            checkpointed_at = ?
+        WHERE id = ? AND status = 'RUNNING'
+        """;
+    
+    private static final String CLAIM_SQL = """
+        UPDATE crawl_jobs SET node_id = ?, checkpointed_at = ?
+        WHERE id = ? AND status = 'RUNNING' AND (node_id = ? OR checkpointed_at IS NULL OR checkpointed_at < ?)
+        """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public CrawlCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Store newly queued or visited URLs of a crawl
+     */
+    public void insertEntries(long crawlJobId, List<CrawlFrontierEntry> entries) {
+        jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, crawlJobId);
+            ps.setString(2, entry.getUrl());
+            ps.setInt(3, entry.getDepth());
+            ps.setDouble(4, entry.getPriority());
+            ps.setBoolean(5, entry.getDone());
+        });
+    }
+    
+    /**
+     * Mark crawled URLs as done
+     */
+    public void markDone(long crawlJobId, List<String> urls) {
+        jdbcTemplate.batchUpdate(MARK_DONE_SQL, urls, urls.size(), (ps, url) -> {
+            ps.setLong(1, crawlJobId);
+            ps.setString(2, url);
+        });
+    }
+    
+    /**
+     * Load the frontier of a crawl, queued URLs in priority order
+     */
+    public List<CrawlFrontierEntry> findEntries(long crawlJobId) {
+        return jdbcTemplate.query(
+            "SELECT url, depth, priority, done FROM crawl_frontier_entries WHERE crawl_job_id = ? " +
+            "ORDER BY done, priority DESC, id",
+            (rs, rowNum) -> new CrawlFrontierEntry(rs.getString("url"), rs.getInt("depth"), 
+                rs.getDouble("priority"), rs.getBoolean("done")),
+            crawlJobId);
+    }
+    
+    public int countPending(long crawlJobId) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM crawl_frontier_entries WHERE crawl_job_id = ? AND done = false",
+            Integer.class, crawlJobId);
+        return count != null ? count : 0;
+    }
+    
+    public void deleteEntries(long crawlJobId) {
+        jdbcTemplate.update("DELETE FROM crawl_frontier_entries WHERE crawl_job_id = ?", crawlJobId);
+    }
+    
+    /**
+     * Record the progress of a running crawl, which also serves as its heartbeat.
+     * Returns false if the job is no longer running, e.g. because it was cancelled.
+     */
+    public boolean updateProgress(long crawlJobId, int pagesFetched, int pagesStored, int duplicatePages, 
+                                  long bytesFetched) {
+        return jdbcTemplate.update(UPDATE_PROGRESS_SQL, pagesFetched, pagesStored, duplicatePages, bytesFetched,
+            Timestamp.valueOf(LocalDateTime.now()), crawlJobId) == 1;
+    }
+    
+    /**
+     * Cancel a running crawl; the node running it stops at its next checkpoint
+     */
+    public boolean cancel(long crawlJobId) {
+        return jdbcTemplate.update(
+            "UPDATE crawl_jobs SET status = 'CANCELLED', stop_reason = 'CANCELLED', finished_at = ? " +
+            "WHERE id = ? AND status = 'RUNNING'",
+            Timestamp.valueOf(LocalDateTime.now()), crawlJobId) == 1;
+    }
+    
+    /**
+     * Take over a running crawl that was started by this node before a restart,
+     * or whose node has not checkpointed since {@code staleBefore}.
+     * Returns false if another node got there first.
+     */
+    public boolean claim(long crawlJobId, String nodeId, LocalDateTime staleBefore) {
+        return jdbcTemplate.update(CLAIM_SQL, nodeId, Timestamp.valueOf(LocalDateTime.now()), crawlJobId, 
+            nodeId, Timestamp.valueOf(staleBefore)) == 1;
+    }
+}
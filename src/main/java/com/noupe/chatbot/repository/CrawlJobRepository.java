@@ -0,0 +1,34 @@
+package com.noupe.chatbot.repository;
+
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.CrawlJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for CrawlJob entities
+ */
+@Repository
+public interface CrawlJobRepository extends JpaRepository<CrawlJob, Long> {
+    
+    /**
+     * Find the most recent crawl of a chatbot
+     */
+    Optional<CrawlJob> findFirstByChatbotOrderByStartedAtDesc(Chatbot chatbot);
+    
+    /**
+     * Find crawls of a chatbot in the given state
+     */
+    List<CrawlJob> findByChatbotAndStatus(Chatbot chatbot, CrawlJob.CrawlStatus status);
+    
+    /**
+     * Find crawls in the given state together with their chatbots
+     */
+    @Query("SELECT j FROM CrawlJob j JOIN FETCH j.chatbot WHERE j.status = :status ORDER BY j.startedAt")
+    List<CrawlJob> findByStatusWithChatbot(@Param("status") CrawlJob.CrawlStatus status);
+}
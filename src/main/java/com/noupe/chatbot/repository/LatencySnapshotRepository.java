@@ -0,0 +1,71 @@
+package com.noupe.chatbot.repository;
+
+import com.noupe.chatbot.model.LatencySnapshot;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC access to response-time histogram snapshots
+ */
+@Repository
+public class LatencySnapshotRepository {
+    
+    private static final String SELECT_COLUMNS = 
+        "SELECT chatbot_id, interval_start, interval_seconds, sample_count, max_value_ms, histogram FROM latency_snapshots ";
+    
+    private static final RowMapper<LatencySnapshot> ROW_MAPPER = (rs, rowNum) -> new LatencySnapshot(
+        rs.getLong("chatbot_id"),
+        rs.getTimestamp("interval_start").toLocalDateTime(),
+        rs.getInt("interval_seconds"),
+        rs.getLong("sample_count"),
+        rs.getLong("max_value_ms"),
+        rs.getBytes("histogram"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public LatencySnapshotRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public void insertAll(List<LatencySnapshot> snapshots) {
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO latency_snapshots (chatbot_id, interval_start, interval_seconds, sample_count, max_value_ms, histogram)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """, snapshots, snapshots.size(), (ps, snapshot) -> {
+                ps.setLong(1, snapshot.getChatbotId());
+                ps.setTimestamp(2, Timestamp.valueOf(snapshot.getIntervalStart()));
+                ps.setInt(3, snapshot.getIntervalSeconds());
+                ps.setLong(4, snapshot.getSampleCount());
+                ps.setLong(5, snapshot.getMaxValueMs());
+                ps.setBytes(6, snapshot.getHistogram());
+            });
+    }
+    
+    /**
+     * Snapshots of a chatbot for the intervals starting at or after the given time
+     */
+    public List<LatencySnapshot> findByChatbotSince(Long chatbotId, LocalDateTime from) {
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE chatbot_id = ? AND interval_start >= ?", 
+            ROW_MAPPER, chatbotId, Timestamp.valueOf(from));
+    }
+    
+    /**
+     * Snapshots of all chatbots for the intervals starting at or after the given time
+     */
+    public List<LatencySnapshot> findSince(LocalDateTime from) {
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE interval_start >= ?", 
+            ROW_MAPPER, Timestamp.valueOf(from));
+    }
+    
+    /**
+     * Delete the snapshots of intervals that started before the cutoff
+     */
+    public int deleteOlderThan(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM latency_snapshots WHERE interval_start < ?", Timestamp.valueOf(cutoff));
+    }
+}
@@ -1,7 +1,11 @@
 package com.noupe.chatbot.repository;
 
+import com.noupe.chatbot.config.ReplicaTransactional;
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.CompressedText;
 import com.noupe.chatbot.model.Conversation;
 import com.noupe.chatbot.model.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -54,6 +58,32 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
                                                        @Param("startDate") LocalDateTime startDate,
                                                        @Param("endDate") LocalDateTime endDate);
     
+    /**
+     * Newest messages of a conversation, newest first.
+     *
+     * Read from the primary, unlike earlier pages: this page is fetched and
+     * cached again right after a chat message evicts it, and a replica that
+     * has not caught up yet would cache it without that message.
+     */
+    @Query("SELECT m.id AS id, m.type AS type, m.content AS storedContent, m.legacyContent AS legacyContent, " +
+           "m.isUserMessage AS isUserMessage, " +
+           "m.createdAt AS createdAt FROM Message m WHERE m.conversation.id = :conversationId " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageView> findLatestByConversationId(@Param("conversationId") Long conversationId, Pageable pageable);
+    
+    /**
+     * Messages of a conversation older than the (createdAt, id) cursor, newest first
+     */
+    @Query("SELECT m.id AS id, m.type AS type, m.content AS storedContent, m.legacyContent AS legacyContent, " +
+           "m.isUserMessage AS isUserMessage, " +
+           "m.createdAt AS createdAt FROM Message m WHERE m.conversation.id = :conversationId " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    @ReplicaTransactional
+    List<MessageView> findByConversationIdBefore(@Param("conversationId") Long conversationId,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") Long id, Pageable pageable);
+    
     /**
      * Get message statistics
      */
@@ -66,9 +96,59 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation = :conversation AND m.isUserMessage = false")
     Long countAiMessagesByConversation(@Param("conversation") Conversation conversation);
     
+    /**
+     * Message counts of a chatbot's conversations for the messages created before the given time
+     */
+    @Query("SELECT COUNT(m) AS totalMessages, " +
+           "COALESCE(SUM(CASE WHEN m.isUserMessage = true THEN 1 ELSE 0 END), 0) AS userMessages " +
+           "FROM Message m WHERE m.conversation.chatbot = :chatbot AND m.createdAt < :before")
+    MessageCounts countMessagesByChatbot(@Param("chatbot") Chatbot chatbot, @Param("before") LocalDateTime before);
+    
+    /**
+     * Number of AI messages created before the given time per response time in milliseconds
+     */
+    @Query("SELECT m.responseTimeMs AS responseTimeMs, COUNT(m) AS messages FROM Message m " +
+           "WHERE m.conversation.chatbot = :chatbot AND m.isUserMessage = false AND m.responseTimeMs IS NOT NULL " +
+           "AND m.createdAt < :before GROUP BY m.responseTimeMs")
+    List<ResponseTimeCount> countAiMessagesByResponseTime(@Param("chatbot") Chatbot chatbot,
+                                                          @Param("before") LocalDateTime before);
+    
     /**
      * Get average response time for AI messages
      */
     @Query("SELECT AVG(m.responseTimeMs) FROM Message m WHERE m.conversation = :conversation AND m.isUserMessage = false AND m.responseTimeMs > 0")
     Double getAverageResponseTimeByConversation(@Param("conversation") Conversation conversation);
+    
+    /**
+     * Projection of message counts
+     */
+    interface MessageCounts {
+        Long getTotalMessages();
+        Long getUserMessages();
+    }
+    
+    /**
+     * Projection of a message count per response time
+     */
+    interface ResponseTimeCount {
+        Integer getResponseTimeMs();
+        Long getMessages();
+    }
+    
+    /**
+     * Projection of a message as shown in the chat history; the stored
+     * text is only decoded when read
+     */
+    interface MessageView {
+        Long getId();
+        Message.MessageType getType();
+        byte[] getStoredContent();
+        String getLegacyContent();
+        Boolean getIsUserMessage();
+        LocalDateTime getCreatedAt();
+        
+        default String getContent() {
+            return CompressedText.decode(getStoredContent(), getLegacyContent());
+        }
+    }
 }
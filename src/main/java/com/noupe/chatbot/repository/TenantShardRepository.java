@@ -0,0 +1,61 @@
+package com.noupe.chatbot.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC access to the shard map, which is kept in the primary database
+ */
+@Repository
+public class TenantShardRepository {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public TenantShardRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public List<TenantShard> findAll() {
+        return jdbcTemplate.query("SELECT chatbot_id, shard, state FROM tenant_shards", (rs, rowNum) -> 
+            new TenantShard(rs.getLong("chatbot_id"), rs.getString("shard"), State.valueOf(rs.getString("state"))));
+    }
+    
+    /**
+     * Assign a chatbot to a shard in the given state
+     */
+    public void save(Long chatbotId, String shard, State state) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int updated = jdbcTemplate.update("UPDATE tenant_shards SET shard = ?, state = ?, updated_at = ? WHERE chatbot_id = ?",
+            shard, state.name(), now, chatbotId);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO tenant_shards (chatbot_id, shard, state, updated_at) VALUES (?, ?, ?, ?)",
+                chatbotId, shard, state.name(), now);
+        }
+    }
+    
+    public void delete(Long chatbotId) {
+        jdbcTemplate.update("DELETE FROM tenant_shards WHERE chatbot_id = ?", chatbotId);
+    }
+    
+    /**
+     * Placement of a chatbot's conversations
+     */
+    public record TenantShard(long chatbotId, String shard, State state) {
+    }
+    
+    /**
+     * Stages of a chatbot's placement while it is moved between shards
+     */
+    public enum State {
+        // Served by its shard
+        STABLE,
+        // Being copied to another shard; still served by its shard, retention paused
+        MOVING,
+        // Final copy in progress; work on the chatbot's conversations waits
+        LOCKED
+    }
+}
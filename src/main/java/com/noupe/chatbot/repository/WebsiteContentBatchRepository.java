@@ -0,0 +1,198 @@
+package com.noupe.chatbot.repository;
+
+import com.noupe.chatbot.model.WebsiteContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC batch writes for crawled website content.
+ *
+ * Rows are unique per (chatbot_id, url): pages already known to the crawl are
+ * updated by id, new pages are inserted. If a concurrent crawl inserted the
+ * same page first, or an update moves a page onto the URL of another row,
+ * the affected batch falls back to per-row writes. The
+ * extracted text is written to its own table once the pages are stored.
+ */
+@Repository
+public class WebsiteContentBatchRepository {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WebsiteContentBatchRepository.class);
+    
+    private static final String INSERT_SQL = """
+        INSERT INTO website_contents (chatbot_id, url, title, meta_keywords,
+            language, content_length, word_count, is_indexed, etag, last_modified, content_hash, text_hash,
+            last_crawled_at, next_crawl_at, recrawl_interval_minutes, check_count, change_count, created_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, false, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+    
+    private static final String UPDATE_SQL = """
+        UPDATE website_contents SET url = ?, title = ?, meta_keywords = ?,
+            language = ?, content_length = ?, word_count = ?, is_indexed = false, etag = ?, last_modified = ?,
+            content_hash = ?, text_hash = ?, last_crawled_at = ?, next_crawl_at = ?, recrawl_interval_minutes = ?,
+            check_count = ?, change_count = ?
+        WHERE id = ?
+        """;
+    
+    private static final String UPDATE_BY_URL_SQL = """
+        UPDATE website_contents SET title = ?, meta_keywords = ?,
+            language = ?, content_length = ?, word_count = ?, is_indexed = false, etag = ?, last_modified = ?,
+            content_hash = ?, text_hash = ?, last_crawled_at = ?, next_crawl_at = ?, recrawl_interval_minutes = ?,
+            check_count = ?, change_count = ?
+        WHERE chatbot_id = ? AND url = ?
+        """;
+    
+    private static final String TOUCH_SQL = """
+        UPDATE website_contents SET etag = ?, last_modified = ?, last_crawled_at = ?, next_crawl_at = ?,
+            recrawl_interval_minutes = ?, check_count = ?, change_count = ?
+        WHERE id = ?
+        """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final WebsiteContentBodyRepository bodyRepository;
+    
+    public WebsiteContentBatchRepository(JdbcTemplate jdbcTemplate, WebsiteContentBodyRepository bodyRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bodyRepository = bodyRepository;
+    }
+    
+    /**
+     * Insert new pages
+     */
+    public void insertAll(List<WebsiteContent> contents) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, contents, contents.size(), (ps, content) -> {
+                ps.setLong(1, content.getChatbot().getId());
+                ps.setString(2, content.getUrl());
+                setPageColumns(ps, 3, content);
+                ps.setTimestamp(17, Timestamp.valueOf(LocalDateTime.now()));
+            });
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Batch insert of {} pages hit existing rows, upserting one by one", contents.size());
+            for (WebsiteContent content : contents) {
+                upsert(content);
+            }
+        }
+        bodyRepository.saveAll(contents);
+    }
+    
+    /**
+     * Update pages whose content changed, queueing them for re-indexing
+     */
+    public void updateAll(List<WebsiteContent> contents) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, contents, contents.size(), (ps, content) -> {
+                ps.setString(1, content.getUrl());
+                setPageColumns(ps, 2, content);
+                ps.setLong(16, content.getId());
+            });
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Batch update of {} pages moved a page onto a stored URL, updating one by one", contents.size());
+            for (WebsiteContent content : contents) {
+                update(content);
+            }
+        }
+        bodyRepository.saveAll(contents);
+    }
+    
+    /**
+     * Record a re-crawl of unchanged pages
+     */
+    public void touchAll(List<WebsiteContent> contents) {
+        jdbcTemplate.batchUpdate(TOUCH_SQL, contents, contents.size(), (ps, content) -> {
+            setNullableString(ps, 1, content.getEtag());
+            setNullableString(ps, 2, content.getLastModified());
+            setTimestamp(ps, 3, content.getLastCrawledAt());
+            setScheduleColumns(ps, 4, content);
+            ps.setLong(8, content.getId());
+        });
+    }
+    
+    /**
+     * Update a page by id; if its new URL is already stored under another
+     * row, that row takes the content and this one keeps its old URL
+     */
+    private void update(WebsiteContent content) {
+        try {
+            jdbcTemplate.update(UPDATE_SQL, ps -> {
+                ps.setString(1, content.getUrl());
+                setPageColumns(ps, 2, content);
+                ps.setLong(16, content.getId());
+            });
+        } catch (DataIntegrityViolationException e) {
+            upsert(content);
+        }
+    }
+    
+    private void upsert(WebsiteContent content) {
+        int updated = jdbcTemplate.update(UPDATE_BY_URL_SQL, ps -> {
+            setPageColumns(ps, 1, content);
+            ps.setLong(15, content.getChatbot().getId());
+            ps.setString(16, content.getUrl());
+        });
+        if (updated == 0) {
+            jdbcTemplate.update(INSERT_SQL, ps -> {
+                ps.setLong(1, content.getChatbot().getId());
+                ps.setString(2, content.getUrl());
+                setPageColumns(ps, 3, content);
+                ps.setTimestamp(17, Timestamp.valueOf(LocalDateTime.now()));
+            });
+        }
+    }
+    
+    /**
+     * Bind title through change_count, 14 parameters starting at the given index
+     */
+    private static void setPageColumns(PreparedStatement ps, int index, WebsiteContent content) throws SQLException {
+        ps.setString(index, content.getTitle());
+        setNullableString(ps, index + 1, content.getMetaKeywords());
+        setNullableString(ps, index + 2, content.getLanguage());
+        ps.setInt(index + 3, content.getContentLength());
+        ps.setInt(index + 4, content.getWordCount());
+        setNullableString(ps, index + 5, content.getEtag());
+        setNullableString(ps, index + 6, content.getLastModified());
+        setNullableString(ps, index + 7, content.getContentHash());
+        setNullableString(ps, index + 8, content.getTextHash());
+        setTimestamp(ps, index + 9, content.getLastCrawledAt());
+        setScheduleColumns(ps, index + 10, content);
+    }
+    
+    /**
+     * Bind next_crawl_at through change_count, 4 parameters starting at the given index
+     */
+    private static void setScheduleColumns(PreparedStatement ps, int index, WebsiteContent content) throws SQLException {
+        setTimestamp(ps, index, content.getNextCrawlAt());
+        if (content.getRecrawlIntervalMinutes() != null) {
+            ps.setInt(index + 1, content.getRecrawlIntervalMinutes());
+        } else {
+            ps.setNull(index + 1, Types.INTEGER);
+        }
+        ps.setInt(index + 2, content.getCheckCount() != null ? content.getCheckCount() : 0);
+        ps.setInt(index + 3, content.getChangeCount() != null ? content.getChangeCount() : 0);
+    }
+    
+    private static void setNullableString(PreparedStatement ps, int index, String value) throws SQLException {
+        if (value != null) {
+            ps.setString(index, value);
+        } else {
+            ps.setNull(index, Types.VARCHAR);
+        }
+    }
+    
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value != null) {
+            ps.setTimestamp(index, Timestamp.valueOf(value));
+        } else {
+            ps.setNull(index, Types.TIMESTAMP);
+        }
+    }
+}
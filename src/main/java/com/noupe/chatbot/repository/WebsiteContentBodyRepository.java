@@ -0,0 +1,132 @@
+package com.noupe.chatbot.repository;
+
+import com.noupe.chatbot.model.CompressedText;
+import com.noupe.chatbot.model.WebsiteContent;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * JDBC access to the extracted text of website content.
+ *
+ * Bodies are addressed by the (chatbot_id, url) of their page, so they can be
+ * written right after a batch insert of pages whose ids are not known yet.
+ * Existing bodies are updated in one batch, missing ones inserted in a second.
+ * The text is stored in {@link CompressedText} form; bodies written before
+ * that keep their plain text in the legacy content column until rewritten
+ * or converted by the compression backfill.
+ */
+@Repository
+public class WebsiteContentBodyRepository {
+    
+    private static final int LOAD_CHUNK_SIZE = 500;
+    
+    private static final String UPDATE_SQL = """
+        UPDATE website_content_bodies SET stored_content = ?, content = NULL, meta_description = ?
+        WHERE content_id = (SELECT id FROM website_contents WHERE chatbot_id = ? AND url = ?)
+        """;
+    
+    private static final String INSERT_SQL = """
+        INSERT INTO website_content_bodies (content_id, stored_content, meta_description)
+        SELECT id, ?, ? FROM website_contents WHERE chatbot_id = ? AND url = ?
+        """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public WebsiteContentBodyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Store the text of pages that have already been written
+     */
+    public void saveAll(List<WebsiteContent> contents) {
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                setBodyColumns(ps, contents.get(i));
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return contents.size();
+            }
+        });
+        
+        List<WebsiteContent> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(contents.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing, missing.size(), WebsiteContentBodyRepository::setBodyColumns);
+        } catch (DataIntegrityViolationException e) {
+            for (WebsiteContent content : missing) {
+                if (jdbcTemplate.update(UPDATE_SQL, ps -> setBodyColumns(ps, content)) == 0) {
+                    jdbcTemplate.update(INSERT_SQL, ps -> setBodyColumns(ps, content));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Attach the stored text to pages loaded without it
+     */
+    public void loadBodies(List<WebsiteContent> contents) {
+        Map<Long, WebsiteContent> contentsById = new HashMap<>();
+        for (WebsiteContent content : contents) {
+            if (content.getId() != null) {
+                contentsById.put(content.getId(), content);
+            }
+        }
+        
+        List<Long> ids = new ArrayList<>(contentsById.keySet());
+        for (int start = 0; start < ids.size(); start += LOAD_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(start, Math.min(start + LOAD_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(
+                "SELECT content_id, stored_content, content, meta_description FROM website_content_bodies " +
+                "WHERE content_id IN (" + placeholders + ")",
+                rs -> {
+                    contentsById.get(rs.getLong("content_id"))
+                        .setBody(CompressedText.decode(rs.getBytes("stored_content"), rs.getString("content")),
+                            rs.getString("meta_description"));
+                },
+                chunk.toArray());
+        }
+    }
+    
+    /**
+     * Bind stored_content, meta_description, chatbot_id and url
+     */
+    private static void setBodyColumns(PreparedStatement ps, WebsiteContent content) throws SQLException {
+        byte[] stored = CompressedText.encode(content.getContent());
+        if (stored != null) {
+            ps.setBytes(1, stored);
+        } else {
+            ps.setNull(1, Types.BINARY);
+        }
+        setNullableString(ps, 2, content.getMetaDescription());
+        ps.setLong(3, content.getChatbot().getId());
+        ps.setString(4, content.getUrl());
+    }
+    
+    private static void setNullableString(PreparedStatement ps, int index, String value) throws SQLException {
+        if (value != null) {
+            ps.setString(index, value);
+        } else {
+            ps.setNull(index, Types.VARCHAR);
+        }
+    }
+}
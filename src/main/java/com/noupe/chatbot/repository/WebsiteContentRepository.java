@@ -2,11 +2,13 @@ package com.noupe.chatbot.repository;
 
 import com.noupe.chatbot.model.Chatbot;
 import com.noupe.chatbot.model.WebsiteContent;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -25,6 +27,11 @@ public interface WebsiteContentRepository extends JpaRepository<WebsiteContent,
      */
     List<WebsiteContent> findByChatbotAndIsIndexedTrue(Chatbot chatbot);
     
+    /**
+     * Find content that is new or changed since the last indexing run
+     */
+    List<WebsiteContent> findByChatbotAndIsIndexedFalse(Chatbot chatbot);
+    
     /**
      * Find content by URL
      */
@@ -47,6 +54,15 @@ public interface WebsiteContentRepository extends JpaRepository<WebsiteContent,
     @Query("SELECT COUNT(wc) FROM WebsiteContent wc WHERE wc.chatbot = :chatbot AND wc.isIndexed = true")
     Long countIndexedByChatbot(@Param("chatbot") Chatbot chatbot);
     
+    /**
+     * Page statistics of a chatbot, aggregated in the database
+     */
+    @Query("SELECT COUNT(wc) AS totalPages, SUM(wc.wordCount) AS totalWords, " +
+           "SUM(wc.contentLength) AS totalCharacters, " +
+           "SUM(CASE WHEN wc.isIndexed = true THEN 1 ELSE 0 END) AS indexedPages " +
+           "FROM WebsiteContent wc WHERE wc.chatbot = :chatbot")
+    ContentStats getContentStatsByChatbot(@Param("chatbot") Chatbot chatbot);
+    
     /**
      * Find content by language
      */
@@ -57,4 +73,23 @@ public interface WebsiteContentRepository extends JpaRepository<WebsiteContent,
      */
     @Query("SELECT wc FROM WebsiteContent wc WHERE wc.chatbot = :chatbot AND wc.wordCount >= :minWords")
     List<WebsiteContent> findByChatbotWithMinWords(@Param("chatbot") Chatbot chatbot, @Param("minWords") Integer minWords);
+    
+    /**
+     * Find crawled pages of active chatbots with re-crawling enabled that are due, most overdue first
+     */
+    @Query("SELECT wc FROM WebsiteContent wc JOIN wc.chatbot c " +
+           "WHERE c.isActive = true AND c.recrawlEnabled = true AND wc.url LIKE 'http%' " +
+           "AND (wc.nextCrawlAt IS NULL OR wc.nextCrawlAt <= :now) " +
+           "ORDER BY wc.nextCrawlAt ASC NULLS FIRST")
+    List<WebsiteContent> findDueForRecrawl(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    /**
+     * Projection of page statistics
+     */
+    interface ContentStats {
+        Long getTotalPages();
+        Long getTotalWords();
+        Long getTotalCharacters();
+        Long getIndexedPages();
+    }
 }
@@ -4,6 +4,7 @@ import com.noupe.chatbot.model.*;
 import com.noupe.chatbot.repository.ChatbotRepository;
 import com.noupe.chatbot.repository.ConversationRepository;
 import com.noupe.chatbot.repository.MessageRepository;
+import com.noupe.chatbot.repository.WebsiteContentBodyRepository;
 import com.noupe.chatbot.repository.WebsiteContentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +38,8 @@ public class AiChatbotService {
     
     private static final Logger logger = LoggerFactory.getLogger(AiChatbotService.class);
     
+    private static final int INDEX_BATCH_SIZE = 100;
+    
     private final ChatClient chatClient;
     private final VectorStore vectorStore;
     private final EmbeddingModel embeddingModel;
@@ -44,6 +47,12 @@ public class AiChatbotService {
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final WebsiteContentRepository websiteContentRepository;
+    private final WebsiteContentBodyRepository websiteContentBodyRepository;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final LatencyTrackingService latencyTrackingService;
+    private final ConversationHistoryService conversationHistoryService;
+    private final SessionLifecycleService sessionLifecycleService;
+    private final TenantShardService tenantShardService;
     
     @Value("${app.chatbot.max-conversation-history:10}")
     private int maxConversationHistory;
@@ -54,7 +63,12 @@ public class AiChatbotService {
     @Autowired
     public AiChatbotService(ChatClient chatClient, VectorStore vectorStore, EmbeddingModel embeddingModel,
                            ChatbotRepository chatbotRepository, ConversationRepository conversationRepository,
-                           MessageRepository messageRepository, WebsiteContentRepository websiteContentRepository) {
+                           MessageRepository messageRepository, WebsiteContentRepository websiteContentRepository,
+                           WebsiteContentBodyRepository websiteContentBodyRepository, AnalyticsRollupService analyticsRollupService,
+                           LatencyTrackingService latencyTrackingService,
+                           ConversationHistoryService conversationHistoryService,
+                           SessionLifecycleService sessionLifecycleService,
+                           TenantShardService tenantShardService) {
         this.chatClient = chatClient;
         this.vectorStore = vectorStore;
         this.embeddingModel = embeddingModel;
@@ -62,6 +76,12 @@ public class AiChatbotService {
         this.conversationRepository = conversationRepository;
         this.messageRepository = messageRepository;
         this.websiteContentRepository = websiteContentRepository;
+        this.websiteContentBodyRepository = websiteContentBodyRepository;
+        this.analyticsRollupService = analyticsRollupService;
+        this.latencyTrackingService = latencyTrackingService;
+        this.conversationHistoryService = conversationHistoryService;
+        this.sessionLifecycleService = sessionLifecycleService;
+        this.tenantShardService = tenantShardService;
     }
     
     /**
@@ -81,12 +101,14 @@ public class AiChatbotService {
                 throw new RuntimeException("Chatbot is not active");
             }
             
-            // Get or create conversation
-            Conversation conversation = getOrCreateConversation(chatbot, sessionId, userLanguage, userIp, userAgent);
-            
-            // Save user message
-            com.noupe.chatbot.model.Message userMsg = new com.noupe.chatbot.model.Message(conversation, com.noupe.chatbot.model.Message.MessageType.TEXT, userMessage, true);
-            messageRepository.save(userMsg);
+            // Get or create conversation and save user message, in the chatbot's shard
+            Conversation conversation = tenantShardService.inTenant(chatbotId, () -> {
+                Conversation current = getOrCreateConversation(chatbot, sessionId, userLanguage, userIp, userAgent);
+                com.noupe.chatbot.model.Message userMsg = new com.noupe.chatbot.model.Message(current, com.noupe.chatbot.model.Message.MessageType.TEXT, userMessage, true);
+                messageRepository.save(userMsg);
+                return current;
+            });
+            analyticsRollupService.recordMessage(chatbotId, true, null);
             
             // Generate AI response
             String aiResponse = generateResponse(chatbot, conversation, userMessage, userLanguage);
@@ -97,14 +119,21 @@ public class AiChatbotService {
             // Save AI response
             com.noupe.chatbot.model.Message aiMsg = new com.noupe.chatbot.model.Message(conversation, com.noupe.chatbot.model.Message.MessageType.TEXT, aiResponse, false);
             aiMsg.setResponseTimeMs((int) responseTime);
-            messageRepository.save(aiMsg);
+            tenantShardService.inTenant(chatbotId, () -> {
+                messageRepository.save(aiMsg);
+                conversationHistoryService.evict(chatbotId, sessionId);
+                sessionLifecycleService.touch(conversation);
+                return null;
+            });
+            analyticsRollupService.recordMessage(chatbotId, false, aiMsg.getResponseTimeMs());
+            latencyTrackingService.record(chatbotId, responseTime);
             
             // Create chat response
             ChatResponse response = new ChatResponse(List.of(new org.springframework.ai.chat.model.Generation(new AssistantMessage(aiResponse))));
             
             logger.info("Processed message for chatbot {} in {}ms", chatbotId, responseTime);
             return response;
-            
+        
         } catch (Exception e) {
             logger.error("Error processing message for chatbot {}", chatbotId, e);
             throw new RuntimeException("Failed to process message: " + e.getMessage());
@@ -126,6 +155,13 @@ public class AiChatbotService {
             conversation.setUserIp(userIp);
             conversation.setUserAgent(userAgent);
             conversationRepository.save(conversation);
+            analyticsRollupService.recordConversationStarted(chatbot.getId(), conversation.getUserLanguage());
+        } else if (!Boolean.TRUE.equals(conversation.getIsActive())) {
+            // The session was ended for inactivity; resuming it counts as a new conversation
+            conversation.setIsActive(true);
+            conversation.setEndedAt(null);
+            conversation.setResumedAt(LocalDateTime.now());
+            analyticsRollupService.recordConversationStarted(chatbot.getId(), conversation.getUserLanguage());
         }
         
         return conversation;
@@ -140,7 +176,7 @@ public class AiChatbotService {
         List<Document> relevantDocs = retrieveRelevantContext(chatbot, userMessage);
         
         // Build conversation history
-        List<com.noupe.chatbot.model.Message> recentMessages = getRecentMessages(conversation);
+        List<com.noupe.chatbot.model.Message> recentMessages = getRecentMessages(chatbot, conversation);
         
         // Create system prompt with context
         String systemPrompt = buildSystemPrompt(chatbot, relevantDocs, userLanguage);
@@ -185,7 +221,7 @@ public class AiChatbotService {
                 .filter(doc -> doc.getMetadata().containsKey("chatbotId") && 
                               doc.getMetadata().get("chatbotId").equals(chatbot.getId().toString()))
                 .collect(Collectors.toList());
-                
+        
         } catch (Exception e) {
             logger.warn("Failed to retrieve context from vector store", e);
             return new ArrayList<>();
@@ -195,8 +231,9 @@ public class AiChatbotService {
     /**
      * Get recent conversation history
      */
-    private List<com.noupe.chatbot.model.Message> getRecentMessages(Conversation conversation) {
-        return messageRepository.findByConversationOrderByCreatedAtDesc(conversation)
+    private List<com.noupe.chatbot.model.Message> getRecentMessages(Chatbot chatbot, Conversation conversation) {
+        return tenantShardService.inTenant(chatbot.getId(), 
+                () -> messageRepository.findByConversationOrderByCreatedAtDesc(conversation))
             .stream()
             .limit(maxConversationHistory)
             .sorted(Comparator.comparing(com.noupe.chatbot.model.Message::getCreatedAt))
@@ -256,75 +293,68 @@ public class AiChatbotService {
     }
     
     /**
-     * Index website content for a chatbot
+     * Index website content for a chatbot.
+     * Only pages that are new or changed since the last run are sent to the vector store.
      */
     public void indexWebsiteContent(Chatbot chatbot) {
         logger.info("Starting content indexing for chatbot: {}", chatbot.getId());
         
-        List<WebsiteContent> contents = websiteContentRepository.findByChatbot(chatbot);
+        List<WebsiteContent> contents = websiteContentRepository.findByChatbotAndIsIndexedFalse(chatbot);
         
-        for (WebsiteContent content : contents) {
-            try {
-                // Create document for vector store
-                Document document = new Document(
-                    content.getContent(),
-                    Map.of(
-                        "chatbotId", chatbot.getId().toString(),
-                        "url", content.getUrl(),
-                        "title", content.getTitle(),
-                        "language", content.getLanguage() != null ? content.getLanguage() : "en"
-                    )
-                );
-                
-                // Add to vector store
-                vectorStore.add(List.of(document));
-                
-                // Mark as indexed
-                content.setIsIndexed(true);
-                content.setVectorId(document.getId());
-                websiteContentRepository.save(content);
-                
-                logger.debug("Indexed content: {}", content.getUrl());
+        for (int start = 0; start < contents.size(); start += INDEX_BATCH_SIZE) {
+            // Page text is stored apart from the page rows and loaded one batch at a time
+            List<WebsiteContent> chunk = contents.subList(start, Math.min(start + INDEX_BATCH_SIZE, contents.size()));
+            websiteContentBodyRepository.loadBodies(chunk);
+            
+            for (WebsiteContent content : chunk) {
+                try {
+                    // Drop the vector of the previous version of a changed page
+                    if (content.getVectorId() != null) {
+                        vectorStore.delete(DocumentIngestionService.splitVectorIds(content.getVectorId()));
+                    }
+                    
+                    // Create document for vector store
+                    Document document = new Document(
+                        content.getContent(),
+                        Map.of(
+                            "chatbotId", chatbot.getId().toString(),
+                            "url", content.getUrl(),
+                            "title", content.getTitle(),
+                            "language", content.getLanguage() != null ? content.getLanguage() : "en"
+                        )
+                    );
+                    
+                    // Add to vector store
+                    vectorStore.add(List.of(document));
+                    
+                    // Mark as indexed
+                    content.setIsIndexed(true);
+                    content.setVectorId(document.getId());
+                    websiteContentRepository.save(content);
+                    
+                    logger.debug("Indexed content: {}", content.getUrl());
                 
-            } catch (Exception e) {
-                logger.error("Failed to index content: {}", content.getUrl(), e);
+                } catch (Exception e) {
+                    logger.error("Failed to index content: {}", content.getUrl(), e);
+                }
             }
         }
         
-        logger.info("Content indexing completed for chatbot: {}", chatbot.getId());
+        logger.info("Content indexing completed for chatbot: {} ({} pages)", chatbot.getId(), contents.size());
     }
     
     /**
-     * Get conversation analytics
+     * Get conversation analytics.
+     * Read from the pre-aggregated rollups, so the cost does not grow with the conversation history.
+     * Not in a replica transaction: history from before the rollups is added on the primary on first read.
      */
     public Map<String, Object> getConversationAnalytics(Long chatbotId) {
         Chatbot chatbot = chatbotRepository.findById(chatbotId)
             .orElseThrow(() -> new RuntimeException("Chatbot not found"));
         
-        List<Conversation> conversations = conversationRepository.findByChatbot(chatbot);
-        
-        Map<String, Object> analytics = new HashMap<>();
-        analytics.put("totalConversations", conversations.size());
-        analytics.put("activeConversations", conversations.stream().mapToInt(c -> c.getIsActive() ? 1 : 0).sum());
-        analytics.put("totalMessages", conversations.stream().mapToInt(Conversation::getMessageCount).sum());
-        
-        // Average conversation duration
-        double avgDuration = conversations.stream()
-            .filter(c -> c.getEndedAt() != null)
-            .mapToLong(Conversation::getDurationInMinutes)
-            .average()
-            .orElse(0.0);
-        analytics.put("averageDurationMinutes", avgDuration);
-        
-        // Language distribution
-        Map<String, Long> languageDistribution = conversations.stream()
-            .filter(c -> c.getUserLanguage() != null)
-            .collect(Collectors.groupingBy(
-                Conversation::getUserLanguage,
-                Collectors.counting()
-            ));
-        analytics.put("languageDistribution", languageDistribution);
-        
-        return analytics;
+        if (chatbot.getAnalyticsSeedBefore() != null) {
+            return analyticsRollupService.seedConversationAnalytics(chatbot);
+        }
+        return analyticsRollupService.getConversationAnalytics(chatbotId);
     }
 }
@@ -0,0 +1,355 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.config.ReplicaTransactional;
+import com.noupe.chatbot.model.AnalyticsRollup;
+import com.noupe.chatbot.model.AnalyticsRollup.Granularity;
+import com.noupe.chatbot.model.AnalyticsRollup.Metric;
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.repository.AnalyticsRollupRepository;
+import com.noupe.chatbot.repository.ConversationRepository;
+import com.noupe.chatbot.repository.ConversationRepository.ConversationCounts;
+import com.noupe.chatbot.repository.ConversationRepository.LanguageCount;
+import com.noupe.chatbot.repository.MessageRepository;
+import com.noupe.chatbot.repository.MessageRepository.MessageCounts;
+import com.noupe.chatbot.repository.MessageRepository.ResponseTimeCount;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maintains per-chatbot analytics rollups on the chat path.
+ *
+ * Events only increment in-memory counters for the hour, day and all-time
+ * buckets they fall into; the counters are added to the rollup table in one
+ * batch per flush interval. Analytics are then read from a handful of rollup
+ * rows, whatever the number of conversations and messages, and lag the chat
+ * path by at most one flush interval.
+ *
+ * Conversations stored before the rollups existed are added to the all-time
+ * rollups once per chatbot, on its first analytics read; hour and day
+ * rollups start with the rollups themselves.
+ */
+@Service
+public class AnalyticsRollupService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsRollupService.class);
+    
+    /**
+     * Upper bounds of the response time histogram buckets, in milliseconds
+     */
+    private static final long[] RESPONSE_TIME_BOUNDS_MS = {100, 250, 500, 1000, 2000, 5000, 10000, 30000};
+    
+    private static final String RESPONSE_TIME_OVERFLOW_BUCKET = "gt_30000";
+    
+    private final AnalyticsRollupRepository rollupRepository;
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final TenantShardService tenantShardService;
+    private final ReadWriteLock countersLock = new ReentrantReadWriteLock();
+    
+    private Map<CounterKey, LongAdder> counters = new ConcurrentHashMap<>();
+    
+    public AnalyticsRollupService(AnalyticsRollupRepository rollupRepository,
+                                  ConversationRepository conversationRepository,
+                                  MessageRepository messageRepository,
+                                  TenantShardService tenantShardService) {
+        this.rollupRepository = rollupRepository;
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.tenantShardService = tenantShardService;
+    }
+    
+    /**
+     * Count a new conversation
+     */
+    public void recordConversationStarted(Long chatbotId, String language) {
+        afterCommit(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            increment(chatbotId, now, Metric.CONVERSATIONS, "", 1);
+            increment(chatbotId, now, Metric.LANGUAGE, languageDimension(language), 1);
+        });
+    }
+    
+    /**
+     * Count a finished conversation and its duration
+     */
+    public void recordConversationEnded(Long chatbotId, long durationSeconds) {
+        afterCommit(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            increment(chatbotId, now, Metric.CONVERSATIONS_ENDED, "", 1);
+            increment(chatbotId, now, Metric.CONVERSATION_SECONDS, "", Math.max(0, durationSeconds));
+        });
+    }
+    
+    /**
+     * Count a message; the response time is recorded for AI messages only
+     */
+    public void recordMessage(Long chatbotId, boolean isUserMessage, Integer responseTimeMs) {
+        afterCommit(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            increment(chatbotId, now, Metric.MESSAGES, "", 1);
+            if (isUserMessage) {
+                increment(chatbotId, now, Metric.USER_MESSAGES, "", 1);
+                return;
+            }
+            increment(chatbotId, now, Metric.AI_MESSAGES, "", 1);
+            if (responseTimeMs != null) {
+                increment(chatbotId, now, Metric.RESPONSE_TIME_MS, "", responseTimeMs);
+                increment(chatbotId, now, Metric.RESPONSE_TIME_BUCKET, responseTimeBucket(responseTimeMs), 1);
+            }
+        });
+    }
+    
+    /**
+     * Apply an event once the surrounding transaction has committed, so that
+     * rolled back chats are not counted
+     */
+    private void afterCommit(Runnable event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            event.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                event.run();
+            }
+        });
+    }
+    
+    private void increment(Long chatbotId, LocalDateTime time, Metric metric, String dimension, long amount) {
+        countersLock.readLock().lock();
+        try {
+            for (Granularity granularity : Granularity.values()) {
+                CounterKey key = new CounterKey(chatbotId, granularity, granularity.bucketStart(time), metric, dimension);
+                counters.computeIfAbsent(key, k -> new LongAdder()).add(amount);
+            }
+        } finally {
+            countersLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Add the counters collected since the last flush to the rollup table
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.flush-interval-ms:10000}")
+    public void flush() {
+        Map<CounterKey, LongAdder> pending;
+        countersLock.writeLock().lock();
+        try {
+            if (counters.isEmpty()) {
+                return;
+            }
+            pending = counters;
+            counters = new ConcurrentHashMap<>();
+        } finally {
+            countersLock.writeLock().unlock();
+        }
+        
+        List<AnalyticsRollup> deltas = new ArrayList<>(pending.size());
+        pending.forEach((key, adder) -> deltas.add(key.toRollup(adder.sum())));
+        
+        try {
+            rollupRepository.incrementAll(deltas);
+            logger.debug("Flushed {} analytics counters", deltas.size());
+        } catch (DataAccessException e) {
+            // Keep the counts for the next flush
+            logger.error("Failed to flush {} analytics counters", deltas.size(), e);
+            for (AnalyticsRollup delta : deltas) {
+                increment(CounterKey.of(delta), delta.getAmount());
+            }
+        }
+    }
+    
+    private void increment(CounterKey key, long amount) {
+        countersLock.readLock().lock();
+        try {
+            counters.computeIfAbsent(key, k -> new LongAdder()).add(amount);
+        } finally {
+            countersLock.readLock().unlock();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+    
+    /**
+     * All-time conversation analytics of a chatbot
+     */
+    @ReplicaTransactional
+    public Map<String, Object> getConversationAnalytics(Long chatbotId) {
+        Map<String, Object> analytics = summarize(rollupRepository.findTotals(chatbotId));
+        analytics.remove("bucketStart");
+        return analytics;
+    }
+    
+    /**
+     * All-time conversation analytics of a chatbot whose earlier history may
+     * still have to be added to the rollups. The history is counted in the
+     * chatbot's shard and added in the transaction that clears the chatbot's
+     * cutoff, so it is added exactly once, and the result is read from the
+     * primary so that it already includes it.
+     */
+    @Transactional
+    public Map<String, Object> seedConversationAnalytics(Chatbot chatbot) {
+        LocalDateTime before = rollupRepository.claimSeed(chatbot.getId());
+        if (before != null) {
+            List<AnalyticsRollup> history = tenantShardService.inTenant(chatbot.getId(),
+                () -> countHistory(chatbot, before));
+            rollupRepository.incrementAll(history);
+            logger.info("Added the analytics history before {} of chatbot {} to the rollups", before, chatbot.getId());
+        }
+        
+        Map<String, Object> analytics = summarize(rollupRepository.findTotals(chatbot.getId()));
+        analytics.remove("bucketStart");
+        return analytics;
+    }
+    
+    /**
+     * All-time rollups of the conversations and messages created before the given time
+     */
+    private List<AnalyticsRollup> countHistory(Chatbot chatbot, LocalDateTime before) {
+        Map<CounterKey, Long> totals = new HashMap<>();
+        LocalDateTime bucketStart = Granularity.ALL.bucketStart(before);
+        
+        ConversationCounts conversations = conversationRepository.countConversationsByChatbot(chatbot, before);
+        Double durationSeconds = conversationRepository.getTotalDurationSecondsByChatbot(chatbot, before);
+        MessageCounts messages = messageRepository.countMessagesByChatbot(chatbot, before);
+        long userMessages = messages.getUserMessages();
+        
+        addHistory(totals, chatbot, bucketStart, Metric.CONVERSATIONS, "", conversations.getTotalConversations());
+        addHistory(totals, chatbot, bucketStart, Metric.CONVERSATIONS_ENDED, "", conversations.getEndedConversations());
+        addHistory(totals, chatbot, bucketStart, Metric.CONVERSATION_SECONDS, "",
+            durationSeconds != null ? Math.max(0, Math.round(durationSeconds)) : 0);
+        for (LanguageCount language : conversationRepository.countByChatbotGroupByLanguage(chatbot, before)) {
+            addHistory(totals, chatbot, bucketStart, Metric.LANGUAGE, languageDimension(language.getLanguage()),
+                language.getConversations());
+        }
+        
+        addHistory(totals, chatbot, bucketStart, Metric.MESSAGES, "", messages.getTotalMessages());
+        addHistory(totals, chatbot, bucketStart, Metric.USER_MESSAGES, "", userMessages);
+        addHistory(totals, chatbot, bucketStart, Metric.AI_MESSAGES, "", messages.getTotalMessages() - userMessages);
+        for (ResponseTimeCount responseTime : messageRepository.countAiMessagesByResponseTime(chatbot, before)) {
+            long responseTimeMs = responseTime.getResponseTimeMs();
+            addHistory(totals, chatbot, bucketStart, Metric.RESPONSE_TIME_MS, "",
+                responseTimeMs * responseTime.getMessages());
+            addHistory(totals, chatbot, bucketStart, Metric.RESPONSE_TIME_BUCKET, responseTimeBucket(responseTimeMs),
+                responseTime.getMessages());
+        }
+        
+        List<AnalyticsRollup> rollups = new ArrayList<>(totals.size());
+        totals.forEach((key, amount) -> rollups.add(key.toRollup(amount)));
+        return rollups;
+    }
+    
+    private static void addHistory(Map<CounterKey, Long> totals, Chatbot chatbot, LocalDateTime bucketStart,
+                                   Metric metric, String dimension, long amount) {
+        if (amount != 0) {
+            totals.merge(new CounterKey(chatbot.getId(), Granularity.ALL, bucketStart, metric, dimension),
+                amount, Long::sum);
+        }
+    }
+    
+    /**
+     * Conversation analytics of a chatbot per hour or day, for the buckets starting in [from, to)
+     */
+    @ReplicaTransactional
+    public List<Map<String, Object>> getTimeSeries(Long chatbotId, Granularity granularity,
+                                                   LocalDateTime from, LocalDateTime to) {
+        Map<LocalDateTime, List<AnalyticsRollup>> rollupsByBucket = new TreeMap<>();
+        for (AnalyticsRollup rollup : rollupRepository.findSeries(chatbotId, granularity, from, to)) {
+            rollupsByBucket.computeIfAbsent(rollup.getBucketStart(), b -> new ArrayList<>()).add(rollup);
+        }
+        
+        List<Map<String, Object>> series = new ArrayList<>();
+        rollupsByBucket.values().forEach(rollups -> series.add(summarize(rollups)));
+        return series;
+    }
+    
+    private Map<String, Object> summarize(List<AnalyticsRollup> rollups) {
+        Map<Metric, Long> totals = new EnumMap<>(Metric.class);
+        Map<String, Long> languageDistribution = new HashMap<>();
+        Map<String, Long> responseTimeHistogram = new LinkedHashMap<>();
+        for (long bound : RESPONSE_TIME_BOUNDS_MS) {
+            responseTimeHistogram.put("le_" + bound, 0L);
+        }
+        responseTimeHistogram.put(RESPONSE_TIME_OVERFLOW_BUCKET, 0L);
+        
+        LocalDateTime bucketStart = null;
+        for (AnalyticsRollup rollup : rollups) {
+            bucketStart = rollup.getBucketStart();
+            switch (rollup.getMetric()) {
+                case LANGUAGE -> languageDistribution.merge(rollup.getDimension(), rollup.getAmount(), Long::sum);
+                case RESPONSE_TIME_BUCKET -> responseTimeHistogram.merge(rollup.getDimension(), rollup.getAmount(), Long::sum);
+                default -> totals.merge(rollup.getMetric(), rollup.getAmount(), Long::sum);
+            }
+        }
+        
+        long conversations = totals.getOrDefault(Metric.CONVERSATIONS, 0L);
+        long endedConversations = totals.getOrDefault(Metric.CONVERSATIONS_ENDED, 0L);
+        long aiMessages = totals.getOrDefault(Metric.AI_MESSAGES, 0L);
+        
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("bucketStart", bucketStart);
+        summary.put("totalConversations", conversations);
+        summary.put("activeConversations", Math.max(0, conversations - endedConversations));
+        summary.put("totalMessages", totals.getOrDefault(Metric.MESSAGES, 0L));
+        summary.put("userMessages", totals.getOrDefault(Metric.USER_MESSAGES, 0L));
+        summary.put("aiMessages", aiMessages);
+        summary.put("averageDurationMinutes", endedConversations > 0 ?
+            totals.getOrDefault(Metric.CONVERSATION_SECONDS, 0L) / 60.0 / endedConversations : 0.0);
+        summary.put("averageResponseTimeMs", aiMessages > 0 ?
+            (double) totals.getOrDefault(Metric.RESPONSE_TIME_MS, 0L) / aiMessages : 0.0);
+        summary.put("languageDistribution", languageDistribution);
+        summary.put("responseTimeHistogram", responseTimeHistogram);
+        return summary;
+    }
+    
+    /**
+     * Language dimension of a conversation; conversations without a language count under the empty string
+     */
+    private static String languageDimension(String language) {
+        String dimension = language != null ? language : "";
+        return dimension.length() > 50 ? dimension.substring(0, 50) : dimension;
+    }
+    
+    /**
+     * Histogram bucket of a response time, e.g. {@code le_500} for 251-500 ms
+     */
+    static String responseTimeBucket(long responseTimeMs) {
+        for (long bound : RESPONSE_TIME_BOUNDS_MS) {
+            if (responseTimeMs <= bound) {
+                return "le_" + bound;
+            }
+        }
+        return RESPONSE_TIME_OVERFLOW_BUCKET;
+    }
+    
+    private record CounterKey(Long chatbotId, Granularity granularity, LocalDateTime bucketStart,
+                              Metric metric, String dimension) {
+        
+        static CounterKey of(AnalyticsRollup rollup) {
+            return new CounterKey(rollup.getChatbotId(), rollup.getGranularity(), rollup.getBucketStart(),
+                rollup.getMetric(), rollup.getDimension());
+        }
+        
+        AnalyticsRollup toRollup(long amount) {
+            return new AnalyticsRollup(chatbotId, granularity, bucketStart, metric, dimension, amount);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.config.TenantShardRoutingDataSource;
+import com.noupe.chatbot.model.CompressedText;
+import com.noupe.chatbot.repository.ContentCompressionRepository;
+import com.noupe.chatbot.repository.ContentCompressionRepository.Conversion;
+import com.noupe.chatbot.repository.ContentCompressionRepository.LegacyText;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Moves message and page text written before {@link CompressedText} storage
+ * from the legacy plain text column to the stored column, compressing it.
+ *
+ * The migration only adds the stored column, so that no table is rewritten
+ * under an exclusive lock; rows are read from whichever column holds their
+ * text until this backfill has converted them. New text is written in the
+ * stored form, so each table only needs one pass per database. The pass
+ * walks the table by primary key in small batches, each in its own
+ * transaction, with a pause in between so that the chat path keeps
+ * priority. Its position is kept in memory: a pass cut short resumes where
+ * it stopped, and every node start checks the tables once. Once every table
+ * of every database reports done, the legacy columns can be dropped.
+ *
+ * Runs on one node only to avoid duplicate work; concurrent runs are harmless.
+ */
+@Service
+public class ContentCompressionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ContentCompressionService.class);
+    
+    private static final long DONE = -1;
+    
+    private final ContentCompressionRepository compressionRepository;
+    private final TenantShardService tenantShardService;
+    private final Map<String, Long> cursors = new ConcurrentHashMap<>();
+    
+    @Value("${app.compression.backfill-enabled:false}")
+    private boolean backfillEnabled;
+    
+    @Value("${app.compression.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${app.compression.batch-pause-ms:100}")
+    private long batchPauseMs;
+    
+    public ContentCompressionService(ContentCompressionRepository compressionRepository,
+                                     TenantShardService tenantShardService) {
+        this.compressionRepository = compressionRepository;
+        this.tenantShardService = tenantShardService;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.compression.interval-ms:300000}",
+               initialDelayString = "${app.compression.initial-delay-ms:120000}")
+    public void run() {
+        if (!backfillEnabled) {
+            return;
+        }
+        try {
+            for (String shard : tenantShardService.getShardNames()) {
+                convert("messages", shard,
+                    compressionRepository::findLegacyMessages, compressionRepository::updateMessages);
+            }
+            convert("website_content_bodies", TenantShardRoutingDataSource.PRIMARY_SHARD,
+                compressionRepository::findLegacyBodies, compressionRepository::updateBodies);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (DataAccessException e) {
+            logger.error("Text compression run failed", e);
+        }
+    }
+    
+    private void convert(String table, String shard, BiFunction<Long, Integer, List<LegacyText>> finder,
+                         Consumer<List<Conversion>> updater) throws InterruptedException {
+        String key = table + "@" + shard;
+        long afterId = cursors.getOrDefault(key, 0L);
+        if (afterId == DONE) {
+            return;
+        }
+        
+        long convertedRows = 0;
+        long textChars = 0;
+        long storedBytes = 0;
+        List<LegacyText> batch;
+        do {
+            long cursor = afterId;
+            batch = tenantShardService.inShard(shard, () -> finder.apply(cursor, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            
+            List<Conversion> conversions = new ArrayList<>(batch.size());
+            for (LegacyText text : batch) {
+                byte[] stored = CompressedText.encode(text.content());
+                conversions.add(new Conversion(text.id(), stored));
+                textChars += text.content().length();
+                storedBytes += stored.length;
+            }
+            tenantShardService.inShard(shard, () -> {
+                updater.accept(conversions);
+                return null;
+            });
+            convertedRows += conversions.size();
+            
+            afterId = batch.get(batch.size() - 1).id();
+            cursors.put(key, afterId);
+            pause();
+        } while (batch.size() == batchSize);
+        cursors.put(key, DONE);
+        
+        if (convertedRows > 0) {
+            logger.info("Converted the text of {} rows of {} in shard {}: {} characters stored in {} bytes",
+                convertedRows, table, shard, textChars, storedBytes);
+        }
+        logger.info("No legacy text left in {} of shard {}", table, shard);
+    }
+    
+    private void pause() throws InterruptedException {
+        if (batchPauseMs > 0) {
+            Thread.sleep(batchPauseMs);
+        }
+    }
+}
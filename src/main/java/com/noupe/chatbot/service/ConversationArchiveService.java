@@ -0,0 +1,118 @@
+package com.noupe.chatbot.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noupe.chatbot.repository.ConversationExportRepository;
+import com.noupe.chatbot.service.archive.ArchiveIndexEntry;
+import com.noupe.chatbot.service.archive.ArchiveSegment;
+import com.noupe.chatbot.service.archive.ArchiveSegmentWriter;
+import com.noupe.chatbot.service.archive.ConversationRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Archive of conversations moved out of the database, stored per chatbot as
+ * gzip-compressed NDJSON segment files with an index, in the same record
+ * format as conversation exports. The archive directory is written by the
+ * node running the retention job and read by exports on every node, so it
+ * must be on storage shared by all nodes.
+ */
+@Service
+public class ConversationArchiveService {
+    
+    private static final DateTimeFormatter SEGMENT_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS");
+    
+    private final ConversationExportRepository exportRepository;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${app.retention.archive-dir:data/archive}")
+    private String archiveDir;
+    
+    public ConversationArchiveService(ConversationExportRepository exportRepository, ObjectMapper objectMapper) {
+        this.exportRepository = exportRepository;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * Write the messages of the given conversations of a chatbot to a new
+     * segment. Once this returns, the conversations can be deleted.
+     *
+     * @return the number of archived messages
+     */
+    public long archive(Long chatbotId, List<Long> conversationIds) throws IOException {
+        String name = "segment-" + LocalDateTime.now().format(SEGMENT_TIME_FORMAT) + "-" + conversationIds.get(0);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        long[] count = {0};
+        
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(chatbotDirectory(chatbotId), name);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            generator.setRootValueSeparator(null);
+            try {
+                exportRepository.streamMessagesOfConversations(conversationIds, rs -> {
+                    ConversationRecord record = ConversationRecord.fromRow(rs);
+                    try {
+                        buffer.reset();
+                        record.writeJson(generator);
+                        generator.flush();
+                        writer.append(record.getConversationId(), record.getCreatedAt(), buffer.toByteArray());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            
+            // Conversations without messages leave nothing to archive
+            if (writer.getConversationCount() > 0) {
+                writer.commit();
+            }
+        }
+        return count[0];
+    }
+    
+    /**
+     * Read the archived messages of a chatbot created in [from, to), either
+     * bound optional, one conversation at a time
+     */
+    public void readMessages(Long chatbotId, LocalDateTime from, LocalDateTime to, RecordHandler handler) 
+            throws IOException {
+        for (ArchiveSegment segment : ArchiveSegment.list(chatbotDirectory(chatbotId))) {
+            for (ArchiveIndexEntry entry : segment.readIndex()) {
+                if (!entry.overlaps(from, to)) {
+                    continue;
+                }
+                try (BufferedReader reader = segment.openConversation(entry)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        ConversationRecord record = ConversationRecord.fromJson(objectMapper.readTree(line));
+                        LocalDateTime createdAt = record.getCreatedAt();
+                        if ((from == null || !createdAt.isBefore(from)) && (to == null || createdAt.isBefore(to))) {
+                            handler.accept(record);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    private Path chatbotDirectory(Long chatbotId) {
+        return Paths.get(archiveDir, "chatbot-" + chatbotId);
+    }
+    
+    /**
+     * Receives archived records
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(ConversationRecord record) throws IOException;
+    }
+}
@@ -0,0 +1,216 @@
+package com.noupe.chatbot.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.noupe.chatbot.repository.ConversationExportRepository;
+import com.noupe.chatbot.service.archive.ConversationRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes full conversation dumps of a chatbot, one record per message:
+ * archived conversations first, then those still in the database.
+ *
+ * Records are written to the output as they are read from the archive or the
+ * database cursor and are never collected, so exports of any size run in
+ * constant memory.
+ */
+@Service
+public class ConversationExportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ConversationExportService.class);
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * Supported export formats
+     */
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+        
+        private final MediaType mediaType;
+        private final String extension;
+        
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+        
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+    }
+    
+    private final ConversationExportRepository exportRepository;
+    private final ConversationArchiveService archiveService;
+    private final ObjectMapper objectMapper;
+    private final TenantShardService tenantShardService;
+    
+    public ConversationExportService(ConversationExportRepository exportRepository,
+                                     ConversationArchiveService archiveService,
+                                     ObjectMapper objectMapper,
+                                     TenantShardService tenantShardService) {
+        this.exportRepository = exportRepository;
+        this.archiveService = archiveService;
+        this.objectMapper = objectMapper;
+        this.tenantShardService = tenantShardService;
+    }
+    
+    /**
+     * Write the messages of a chatbot created in [from, to) to the output,
+     * optionally gzip-compressed. The output itself is left open.
+     *
+     * @return the number of messages written
+     */
+    public long export(Long chatbotId, LocalDateTime from, LocalDateTime to, Format format, boolean gzip,
+                       OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+            compressed != null ? compressed : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        RecordWriter records = format == Format.CSV ? new CsvRecordWriter(writer) : new NdjsonRecordWriter(writer);
+        
+        long[] count = {0};
+        try {
+            records.begin();
+            archiveService.readMessages(chatbotId, from, to, record -> {
+                records.write(record);
+                count[0]++;
+            });
+            tenantShardService.inTenant(chatbotId, () -> {
+                exportRepository.streamMessages(chatbotId, from, to, rs -> {
+                    try {
+                        records.write(ConversationRecord.fromRow(rs));
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                return null;
+            });
+            records.end();
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; stop reading the cursor
+            throw e.getCause();
+        }
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        
+        logger.info("Exported {} messages of chatbot {} as {} in {} ms", 
+            count[0], chatbotId, format, System.currentTimeMillis() - startTime);
+        return count[0];
+    }
+    
+    /**
+     * Serializes export records
+     */
+    private interface RecordWriter {
+        
+        void begin() throws IOException;
+        
+        void write(ConversationRecord record) throws IOException;
+        
+        void end() throws IOException;
+    }
+    
+    /**
+     * One JSON object per line
+     */
+    private class NdjsonRecordWriter implements RecordWriter {
+        
+        private final JsonGenerator generator;
+        private boolean empty = true;
+        
+        NdjsonRecordWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+        
+        @Override
+        public void begin() {
+        }
+        
+        @Override
+        public void write(ConversationRecord record) throws IOException {
+            record.writeJson(generator);
+            empty = false;
+        }
+        
+        @Override
+        public void end() throws IOException {
+            if (!empty) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        }
+    }
+    
+    /**
+     * RFC 4180 CSV with a header row
+     */
+    private static class CsvRecordWriter implements RecordWriter {
+        
+        private final Writer writer;
+        
+        CsvRecordWriter(Writer writer) {
+            this.writer = writer;
+        }
+        
+        @Override
+        public void begin() throws IOException {
+            writeRow(ConversationRecord.COLUMNS);
+        }
+        
+        @Override
+        public void write(ConversationRecord record) throws IOException {
+            writeRow(record.getValues());
+        }
+        
+        private void writeRow(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeField(values[i].toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+        
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+        
+        @Override
+        public void end() {
+        }
+    }
+}
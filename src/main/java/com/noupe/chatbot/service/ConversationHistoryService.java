@@ -0,0 +1,243 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.repository.ConversationRepository;
+import com.noupe.chatbot.repository.MessageRepository;
+import com.noupe.chatbot.service.session.SessionsEndedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Serves the message history of a chat session, newest page first, with
+ * keyset cursors over (conversation_id, created_at, id).
+ *
+ * The newest page of recently read sessions is cached in memory so that a
+ * polling widget costs no query until a new message arrives. Entries are
+ * evicted when the session gets a message on this node and expire after a
+ * short time, which bounds staleness when messages arrive on another node.
+ */
+@Service
+public class ConversationHistoryService {
+    
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final TenantShardService tenantShardService;
+    private final Map<String, CachedPage> recentPages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+            return size() > cacheSize;
+        }
+    };
+    
+    @Value("${app.chat.history.page-size:20}")
+    private int defaultPageSize;
+    
+    @Value("${app.chat.history.cache-size:10000}")
+    private int cacheSize;
+    
+    @Value("${app.chat.history.cache-ttl-seconds:30}")
+    private long cacheTtlSeconds;
+    
+    public ConversationHistoryService(ConversationRepository conversationRepository,
+                                      MessageRepository messageRepository,
+                                      TenantShardService tenantShardService) {
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.tenantShardService = tenantShardService;
+    }
+    
+    /**
+     * One page of a session's messages in chronological order. Without a
+     * cursor the newest messages are returned; with the cursor of a page the
+     * messages before it.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another session
+     */
+    public HistoryPage getHistory(Long chatbotId, String sessionId, String cursor, Integer limit) {
+        int pageSize = limit != null ? Math.max(1, Math.min(limit, MAX_PAGE_SIZE)) : defaultPageSize;
+        boolean cacheable = cursor == null && pageSize == defaultPageSize;
+        String key = cacheKey(chatbotId, sessionId);
+        
+        if (cacheable) {
+            HistoryPage cached = getCached(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        HistoryPage page = tenantShardService.inTenant(chatbotId, () -> loadPage(chatbotId, sessionId, cursor, pageSize));
+        if (cacheable) {
+            synchronized (recentPages) {
+                recentPages.put(key, new CachedPage(page, System.nanoTime()));
+            }
+        }
+        return page;
+    }
+    
+    private HistoryPage loadPage(Long chatbotId, String sessionId, String cursor, int pageSize) {
+        Optional<Long> conversationId = conversationRepository.findIdByChatbotIdAndSessionId(chatbotId, sessionId);
+        if (conversationId.isEmpty()) {
+            if (cursor != null) {
+                throw new IllegalArgumentException("Cursor does not belong to this session");
+            }
+            return new HistoryPage(List.of(), null, "\"empty\"");
+        }
+        long id = conversationId.get();
+        
+        PageRequest request = PageRequest.of(0, pageSize + 1);
+        List<MessageRepository.MessageView> views;
+        if (cursor != null) {
+            Cursor position = Cursor.decode(cursor);
+            if (position.conversationId != id) {
+                throw new IllegalArgumentException("Cursor does not belong to this session");
+            }
+            views = messageRepository.findByConversationIdBefore(id, position.createdAt, position.messageId, request);
+        } else {
+            views = messageRepository.findLatestByConversationId(id, request);
+        }
+        
+        String nextCursor = null;
+        if (views.size() > pageSize) {
+            views = views.subList(0, pageSize);
+            MessageRepository.MessageView oldest = views.get(pageSize - 1);
+            nextCursor = new Cursor(id, oldest.getCreatedAt(), oldest.getId()).encode();
+        }
+        
+        List<Map<String, Object>> messages = new ArrayList<>(views.size());
+        for (int i = views.size() - 1; i >= 0; i--) {
+            messages.add(toMap(views.get(i)));
+        }
+        
+        long newestId = views.isEmpty() ? 0 : views.get(0).getId();
+        long oldestId = views.isEmpty() ? 0 : views.get(views.size() - 1).getId();
+        String etag = "\"" + id + "-" + newestId + "-" + oldestId + "-" + views.size() + "\"";
+        return new HistoryPage(messages, nextCursor, etag);
+    }
+    
+    private Map<String, Object> toMap(MessageRepository.MessageView view) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("id", view.getId());
+        message.put("role", Boolean.TRUE.equals(view.getIsUserMessage()) ? "user" : "assistant");
+        message.put("type", view.getType());
+        message.put("content", view.getContent());
+        message.put("createdAt", view.getCreatedAt());
+        return message;
+    }
+    
+    private HistoryPage getCached(String key) {
+        synchronized (recentPages) {
+            CachedPage cached = recentPages.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.cachedAtNanos > cacheTtlSeconds * 1_000_000_000L) {
+                recentPages.remove(key);
+                return null;
+            }
+            return cached.page;
+        }
+    }
+    
+    /**
+     * Drop the cached history of a session once the current transaction has committed
+     */
+    public void evict(Long chatbotId, String sessionId) {
+        String key = cacheKey(chatbotId, sessionId);
+        Runnable eviction = () -> {
+            synchronized (recentPages) {
+                recentPages.remove(key);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+    
+    /**
+     * Drop the cached history of sessions that were ended
+     */
+    @EventListener
+    public void onSessionsEnded(SessionsEndedEvent event) {
+        synchronized (recentPages) {
+            for (SessionsEndedEvent.EndedSession session : event.sessions()) {
+                recentPages.remove(cacheKey(session.chatbotId(), session.sessionId()));
+            }
+        }
+    }
+    
+    private static String cacheKey(Long chatbotId, String sessionId) {
+        return chatbotId + ":" + sessionId;
+    }
+    
+    /**
+     * A page of history: messages oldest first, the cursor for older messages
+     * (null on the last page) and an entity tag for conditional requests
+     */
+    public static class HistoryPage {
+        
+        private final List<Map<String, Object>> messages;
+        private final String nextCursor;
+        private final String etag;
+        
+        HistoryPage(List<Map<String, Object>> messages, String nextCursor, String etag) {
+            this.messages = messages;
+            this.nextCursor = nextCursor;
+            this.etag = etag;
+        }
+        
+        public List<Map<String, Object>> getMessages() {
+            return messages;
+        }
+        
+        public String getNextCursor() {
+            return nextCursor;
+        }
+        
+        public String getEtag() {
+            return etag;
+        }
+    }
+    
+    private record CachedPage(HistoryPage page, long cachedAtNanos) {
+    }
+    
+    /**
+     * Position of the oldest message of a page, encoded as an opaque URL-safe string
+     */
+    private record Cursor(long conversationId, LocalDateTime createdAt, long messageId) {
+        
+        String encode() {
+            String value = conversationId + "|" + createdAt + "|" + messageId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static Cursor decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = value.split("\\|");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                return new Cursor(Long.parseLong(parts[0]), LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
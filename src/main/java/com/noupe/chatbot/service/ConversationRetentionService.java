@@ -0,0 +1,172 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.repository.ChatbotRepository;
+import com.noupe.chatbot.repository.ConversationRetentionRepository;
+import com.noupe.chatbot.repository.ConversationRetentionRepository.IdleConversation;
+import com.noupe.chatbot.repository.TenantShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keeps the conversation tables bounded.
+ *
+ * Each run first ends conversations that have been idle for longer than the
+ * idle timeout but were missed by the {@link SessionLifecycleService}, such
+ * as sessions last active before a restart. It then moves conversations that
+ * ended more than the chatbot's retention period ago to the archive and
+ * deletes them from the database. All work is done in small batches by primary key, each in its own
+ * transaction, with a pause in between so that the chat path keeps priority.
+ * Every shard is swept; chatbots that are being moved between shards are
+ * skipped by the archival until the move has completed.
+ *
+ * Runs must not overlap across nodes, so the job is disabled by default and
+ * must be enabled on one node only. Nothing is archived unless a retention
+ * period is configured, by default or per chatbot. The archive directory must
+ * be storage shared by all nodes, since exports on any node read it.
+ */
+@Service
+public class ConversationRetentionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ConversationRetentionService.class);
+    
+    private final ConversationRetentionRepository retentionRepository;
+    private final ChatbotRepository chatbotRepository;
+    private final ConversationArchiveService archiveService;
+    private final SessionLifecycleService sessionLifecycleService;
+    private final TenantShardService tenantShardService;
+    
+    @Value("${app.retention.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.session.idle-timeout-minutes:30}")
+    private long idleTimeoutMinutes;
+    
+    @Value("${app.retention.default-days:0}")
+    private int defaultRetentionDays;
+    
+    @Value("${app.retention.archive-batch-size:500}")
+    private int archiveBatchSize;
+    
+    @Value("${app.retention.delete-batch-size:100}")
+    private int deleteBatchSize;
+    
+    @Value("${app.retention.batch-pause-ms:100}")
+    private long batchPauseMs;
+    
+    public ConversationRetentionService(ConversationRetentionRepository retentionRepository,
+                                        ChatbotRepository chatbotRepository,
+                                        ConversationArchiveService archiveService,
+                                        SessionLifecycleService sessionLifecycleService,
+                                        TenantShardService tenantShardService) {
+        this.retentionRepository = retentionRepository;
+        this.chatbotRepository = chatbotRepository;
+        this.archiveService = archiveService;
+        this.sessionLifecycleService = sessionLifecycleService;
+        this.tenantShardService = tenantShardService;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.retention.interval-ms:300000}",
+               initialDelayString = "${app.retention.initial-delay-ms:60000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            closeIdleConversations();
+            archiveExpiredConversations();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (DataAccessException | IOException e) {
+            logger.error("Conversation retention run failed", e);
+        }
+    }
+    
+    /**
+     * End active conversations without a message within the idle timeout
+     */
+    public int closeIdleConversations() throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(idleTimeoutMinutes);
+        int closed = 0;
+        for (String shard : tenantShardService.getShardNames()) {
+            long afterId = 0;
+            List<IdleConversation> idle;
+            do {
+                long cursor = afterId;
+                idle = tenantShardService.inShard(shard, () -> retentionRepository.findIdle(cutoff, cursor, deleteBatchSize));
+                if (idle.isEmpty()) {
+                    break;
+                }
+                // Ended in the shard of each chatbot, which differs for copies left by a move in progress
+                closed += sessionLifecycleService.endConversations(idle).size();
+                afterId = idle.get(idle.size() - 1).id();
+                pause();
+            } while (idle.size() == deleteBatchSize);
+        }
+        
+        if (closed > 0) {
+            logger.info("Ended {} idle conversations", closed);
+        }
+        return closed;
+    }
+    
+    /**
+     * Archive and delete conversations that ended before each chatbot's retention period
+     */
+    public void archiveExpiredConversations() throws IOException, InterruptedException {
+        for (ChatbotRepository.RetentionSetting setting : chatbotRepository.findRetentionSettings()) {
+            int retentionDays = setting.getRetentionDays() != null ? setting.getRetentionDays() : defaultRetentionDays;
+            if (retentionDays <= 0) {
+                // Kept forever
+                continue;
+            }
+            if (tenantShardService.getState(setting.getId()) != TenantShardRepository.State.STABLE) {
+                // Being moved to another shard
+                continue;
+            }
+            archiveExpiredConversations(setting.getId(), LocalDateTime.now().minusDays(retentionDays));
+        }
+    }
+    
+    private void archiveExpiredConversations(Long chatbotId, LocalDateTime cutoff) 
+            throws IOException, InterruptedException {
+        long archivedConversations = 0;
+        long archivedMessages = 0;
+        List<Long> expired;
+        do {
+            expired = tenantShardService.inTenant(chatbotId, 
+                () -> retentionRepository.findArchivable(chatbotId, cutoff, archiveBatchSize));
+            if (expired.isEmpty()) {
+                break;
+            }
+            // Deleting only after the segment is committed means a failure can never lose data
+            List<Long> archived = expired;
+            archivedMessages += tenantShardService.inTenant(chatbotId, () -> archiveService.archive(chatbotId, archived));
+            for (int i = 0; i < expired.size(); i += deleteBatchSize) {
+                List<Long> batch = expired.subList(i, Math.min(i + deleteBatchSize, expired.size()));
+                tenantShardService.inTenant(chatbotId, () -> retentionRepository.deleteEnded(batch));
+                pause();
+            }
+            archivedConversations += expired.size();
+        } while (expired.size() == archiveBatchSize 
+            && tenantShardService.getState(chatbotId) == TenantShardRepository.State.STABLE);
+        
+        if (archivedConversations > 0) {
+            logger.info("Archived {} conversations with {} messages of chatbot {} that ended before {}", 
+                archivedConversations, archivedMessages, chatbotId, cutoff);
+        }
+    }
+    
+    private void pause() throws InterruptedException {
+        if (batchPauseMs > 0) {
+            Thread.sleep(batchPauseMs);
+        }
+    }
+}
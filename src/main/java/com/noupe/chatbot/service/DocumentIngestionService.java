@@ -0,0 +1,334 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.WebsiteContent;
+import com.noupe.chatbot.repository.WebsiteContentBodyRepository;
+import com.noupe.chatbot.repository.WebsiteContentRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Service for ingesting PDF documents, either linked from crawled pages or uploaded directly.
+ *
+ * A document is cut into page ranges that are parsed in parallel, each range
+ * on its own PDFBox instance (the engine behind the bundled Spring AI PDF
+ * reader). Since each instance parses the whole file, a document is cut into
+ * at most {@code max-ranges-per-document} ranges, and the parse pool bounds
+ * the instances across documents. Page text is split into chunks and sent to
+ * the vector store in batches while parsing continues, so only one batch per
+ * range is held in memory. Documents above the size limit are rejected and
+ * pages beyond the page limit are ignored.
+ */
+@Service
+public class DocumentIngestionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentIngestionService.class);
+    
+    public static final String UPLOAD_URL_PREFIX = "upload:";
+    
+    private final VectorStore vectorStore;
+    private final WebsiteContentRepository websiteContentRepository;
+    private final WebsiteContentBodyRepository websiteContentBodyRepository;
+    private final ExecutorService parseExecutor;
+    private final int parseParallelism;
+    private final TokenTextSplitter textSplitter = new TokenTextSplitter();
+    
+    @Value("${app.documents.max-bytes:20971520}")
+    private long maxBytes;
+    
+    @Value("${app.documents.max-pages:200}")
+    private int maxPages;
+    
+    @Value("${app.documents.max-text-length:100000}")
+    private int maxPreviewLength;
+    
+    @Value("${app.documents.max-ranges-per-document:2}")
+    private int maxRangesPerDocument;
+    
+    @Value("${app.embedding.batch-size:100}")
+    private int embeddingBatchSize;
+    
+    public DocumentIngestionService(VectorStore vectorStore, WebsiteContentRepository websiteContentRepository,
+                                    WebsiteContentBodyRepository websiteContentBodyRepository,
+                                    @Value("${app.documents.parse-parallelism:0}") int parseParallelism) {
+        this.vectorStore = vectorStore;
+        this.websiteContentRepository = websiteContentRepository;
+        this.websiteContentBodyRepository = websiteContentBodyRepository;
+        this.parseParallelism = parseParallelism > 0 ? parseParallelism : Runtime.getRuntime().availableProcessors();
+        this.parseExecutor = Executors.newFixedThreadPool(this.parseParallelism);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        parseExecutor.shutdownNow();
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    /**
+     * Ingest an uploaded PDF, replacing an earlier upload with the same file name
+     */
+    public WebsiteContent ingestUpload(Chatbot chatbot, String fileName, byte[] pdf) throws IOException {
+        String url = UPLOAD_URL_PREFIX + fileName;
+        WebsiteContent previous = websiteContentRepository.findByChatbotAndUrl(chatbot, url);
+        
+        IngestionResult result = ingestPdf(chatbot, url, fileName, pdf, previous);
+        WebsiteContent content = toContent(chatbot, url, result, previous);
+        content.setLastCrawledAt(LocalDateTime.now());
+        return saveContent(content);
+    }
+    
+    /**
+     * Save the content row that tracks a document, then its preview text
+     */
+    public WebsiteContent saveContent(WebsiteContent content) {
+        WebsiteContent saved = websiteContentRepository.save(content);
+        websiteContentBodyRepository.saveAll(List.of(content));
+        return saved;
+    }
+    
+    /**
+     * Parse, chunk and index a PDF. Vectors of the previous version are
+     * removed once the whole document has been indexed, so a failed parse
+     * leaves the previous version in place.
+     */
+    public IngestionResult ingestPdf(Chatbot chatbot, String url, String fallbackTitle, byte[] pdf,
+                                     WebsiteContent previous) throws IOException {
+        if (pdf.length > maxBytes) {
+            throw new IOException("PDF exceeds the maximum size of " + maxBytes + " bytes");
+        }
+        
+        int pageCount;
+        int totalPages;
+        String title;
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            totalPages = document.getNumberOfPages();
+            pageCount = Math.min(totalPages, maxPages);
+            title = document.getDocumentInformation().getTitle();
+        }
+        if (title == null || title.isBlank()) {
+            title = fallbackTitle;
+        }
+        if (totalPages > maxPages) {
+            logger.warn("PDF {} has {} pages, ingesting the first {}", url, totalPages, maxPages);
+        }
+        
+        // Every range loads the whole document, so a document gets only a few of the parse threads
+        int ranges = Math.max(1, Math.min(pageCount, Math.min(parseParallelism, maxRangesPerDocument)));
+        int pagesPerRange = (pageCount + ranges - 1) / Math.max(1, ranges);
+        String documentTitle = title;
+        
+        List<CompletableFuture<RangeResult>> futures = new ArrayList<>();
+        for (int start = 1; start <= pageCount; start += pagesPerRange) {
+            int first = start;
+            int last = Math.min(pageCount, start + pagesPerRange - 1);
+            futures.add(CompletableFuture.supplyAsync(
+                () -> ingestPageRange(chatbot, url, documentTitle, pdf, first, last), parseExecutor));
+        }
+        
+        // Wait for every range before inspecting results so no range is still adding vectors
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        
+        IngestionResult result = new IngestionResult(documentTitle);
+        Throwable failure = null;
+        for (CompletableFuture<RangeResult> future : futures) {
+            try {
+                result.add(future.join(), maxPreviewLength);
+            } catch (CompletionException e) {
+                failure = e.getCause();
+            }
+        }
+        
+        if (failure != null) {
+            // Keep the index consistent: drop what the successful ranges already added
+            if (!result.getVectorIds().isEmpty()) {
+                vectorStore.delete(result.getVectorIds());
+            }
+            throw new IOException("Failed to parse PDF " + url, failure);
+        }
+        
+        // The new chunks have their own ids, so the previous version stays searchable until now
+        if (previous != null && previous.getVectorId() != null) {
+            List<String> previousIds = splitVectorIds(previous.getVectorId());
+            if (!previousIds.isEmpty()) {
+                vectorStore.delete(previousIds);
+            }
+        }
+        
+        logger.info("Ingested PDF {}: {} pages, {} chunks", url, result.getPageCount(), result.getVectorIds().size());
+        return result;
+    }
+    
+    /**
+     * Build or update the content row that tracks an ingested document
+     */
+    public WebsiteContent toContent(Chatbot chatbot, String url, IngestionResult result, WebsiteContent previous) {
+        WebsiteContent content = previous != null ? previous : new WebsiteContent();
+        content.setChatbot(chatbot);
+        content.setUrl(url);
+        content.setTitle(result.getTitle().length() > 500 ? result.getTitle().substring(0, 500) : result.getTitle());
+        content.setContent(result.getPreview());
+        content.setLanguage(chatbot.getPrimaryLanguage());
+        content.setIsIndexed(true);
+        content.setVectorId(String.join(",", result.getVectorIds()));
+        return content;
+    }
+    
+    /**
+     * Vector ids are stored comma separated because a document spans many chunks
+     */
+    public static List<String> splitVectorIds(String vectorIds) {
+        List<String> ids = new ArrayList<>();
+        for (String id : vectorIds.split(",")) {
+            if (!id.isBlank()) {
+                ids.add(id.trim());
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * Parse one page range on its own PDFBox document and index it in batches
+     */
+    private RangeResult ingestPageRange(Chatbot chatbot, String url, String title, byte[] pdf, int first, int last) {
+        RangeResult range = new RangeResult();
+        List<Document> batch = new ArrayList<>();
+        
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            
+            for (int page = first; page <= last; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String text = stripper.getText(document).trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                
+                range.appendPreview(text, maxPreviewLength);
+                range.pages++;
+                
+                Document pageDocument = new Document(text, Map.of(
+                    "chatbotId", chatbot.getId().toString(),
+                    "url", url,
+                    "title", title,
+                    "page", String.valueOf(page),
+                    "language", chatbot.getPrimaryLanguage() != null ? chatbot.getPrimaryLanguage() : "en"
+                ));
+                batch.addAll(textSplitter.apply(List.of(pageDocument)));
+                
+                if (batch.size() >= embeddingBatchSize) {
+                    flush(batch, range);
+                }
+            }
+            flush(batch, range);
+            
+        } catch (IOException e) {
+            if (!range.vectorIds.isEmpty()) {
+                vectorStore.delete(range.vectorIds);
+            }
+            throw new CompletionException(e);
+        }
+        
+        return range;
+    }
+    
+    private void flush(List<Document> batch, RangeResult range) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        vectorStore.add(batch);
+        for (Document chunk : batch) {
+            range.vectorIds.add(chunk.getId());
+        }
+        batch.clear();
+    }
+    
+    /**
+     * Result of ingesting one page range
+     */
+    private static class RangeResult {
+        
+        private final StringBuilder preview = new StringBuilder();
+        private final List<String> vectorIds = new ArrayList<>();
+        private int pages;
+        
+        void appendPreview(String text, int maxLength) {
+            if (preview.length() >= maxLength) {
+                return;
+            }
+            if (preview.length() > 0) {
+                preview.append(' ');
+            }
+            preview.append(text, 0, Math.min(text.length(), maxLength - preview.length()));
+        }
+    }
+    
+    /**
+     * Result of ingesting a whole document
+     */
+    public static class IngestionResult {
+        
+        private final String title;
+        private final StringBuilder preview = new StringBuilder();
+        private final List<String> vectorIds = new ArrayList<>();
+        private int pageCount;
+        
+        IngestionResult(String title) {
+            this.title = title;
+        }
+        
+        void add(RangeResult range, int maxPreviewLength) {
+            // Ranges are added in page order, so the preview reads from the start of the document
+            if (preview.length() < maxPreviewLength && range.preview.length() > 0) {
+                if (preview.length() > 0) {
+                    preview.append(' ');
+                }
+                preview.append(range.preview, 0, Math.min(range.preview.length(), maxPreviewLength - preview.length()));
+            }
+            vectorIds.addAll(range.vectorIds);
+            pageCount += range.pages;
+        }
+        
+        public String getTitle() {
+            return title;
+        }
+        
+        /**
+         * The start of the document text, up to the configured maximum length
+         */
+        public String getPreview() {
+            return preview.toString();
+        }
+        
+        public List<String> getVectorIds() {
+            return vectorIds;
+        }
+        
+        /**
+         * Number of pages with text that were indexed
+         */
+        public int getPageCount() {
+            return pageCount;
+        }
+    }
+}
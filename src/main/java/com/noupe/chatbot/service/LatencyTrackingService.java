@@ -0,0 +1,259 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.config.ReplicaTransactional;
+import com.noupe.chatbot.model.LatencySnapshot;
+import com.noupe.chatbot.repository.LatencySnapshotRepository;
+import com.noupe.chatbot.service.analytics.LatencyHistogram;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tracks response-time percentiles per chatbot.
+ *
+ * Response times are recorded into an in-memory histogram per chatbot for
+ * the current interval. Closed intervals are persisted as compact snapshots,
+ * and percentiles over a sliding window merge the snapshots of the intervals
+ * overlapping the window with the interval still open on this node. Windows
+ * are therefore rounded to whole intervals.
+ */
+@Service
+public class LatencyTrackingService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LatencyTrackingService.class);
+    
+    /**
+     * Sliding windows reported by the analytics API, by name
+     */
+    public static final Map<String, Duration> WINDOWS = windows();
+    
+    private final LatencySnapshotRepository snapshotRepository;
+    private final Map<Long, Interval> openIntervals = new ConcurrentHashMap<>();
+    private final Queue<LatencySnapshot> closedIntervals = new ConcurrentLinkedQueue<>();
+    
+    @Value("${app.analytics.latency.interval-seconds:60}")
+    private int intervalSeconds;
+    
+    @Value("${app.analytics.latency.retention-days:7}")
+    private int retentionDays;
+    
+    public LatencyTrackingService(LatencySnapshotRepository snapshotRepository) {
+        this.snapshotRepository = snapshotRepository;
+    }
+    
+    private static Map<String, Duration> windows() {
+        Map<String, Duration> windows = new LinkedHashMap<>();
+        windows.put("5m", Duration.ofMinutes(5));
+        windows.put("15m", Duration.ofMinutes(15));
+        windows.put("1h", Duration.ofHours(1));
+        windows.put("24h", Duration.ofHours(24));
+        return Collections.unmodifiableMap(windows);
+    }
+    
+    /**
+     * Record the response time of one AI message
+     */
+    public void record(Long chatbotId, long responseTimeMs) {
+        LocalDateTime start = intervalStart(LocalDateTime.now());
+        openIntervals.compute(chatbotId, (id, interval) -> {
+            if (interval == null || !interval.start.equals(start)) {
+                if (interval != null) {
+                    closedIntervals.add(interval.toSnapshot(intervalSeconds));
+                }
+                interval = new Interval(id, start);
+            }
+            interval.histogram.record(responseTimeMs);
+            return interval;
+        });
+    }
+    
+    /**
+     * Persist the intervals that have closed since the last run
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.latency.flush-interval-ms:15000}")
+    public void flush() {
+        closeIntervalsBefore(intervalStart(LocalDateTime.now()));
+        writeClosedIntervals();
+    }
+    
+    /**
+     * Delete snapshots older than the retention period
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.latency.purge-interval-ms:3600000}")
+    public void purgeExpiredSnapshots() {
+        try {
+            int deleted = snapshotRepository.deleteOlderThan(LocalDateTime.now().minusDays(retentionDays));
+            if (deleted > 0) {
+                logger.info("Purged {} latency snapshots older than {} days", deleted, retentionDays);
+            }
+        } catch (DataAccessException e) {
+            logger.error("Failed to purge latency snapshots", e);
+        }
+    }
+    
+    /**
+     * Persist every interval, including the open ones, so that no samples are lost on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        closeIntervalsBefore(LocalDateTime.MAX);
+        writeClosedIntervals();
+    }
+    
+    private void closeIntervalsBefore(LocalDateTime start) {
+        for (Long chatbotId : openIntervals.keySet()) {
+            openIntervals.computeIfPresent(chatbotId, (id, interval) -> {
+                if (interval.start.isBefore(start)) {
+                    closedIntervals.add(interval.toSnapshot(intervalSeconds));
+                    return null;
+                }
+                return interval;
+            });
+        }
+    }
+    
+    private void writeClosedIntervals() {
+        List<LatencySnapshot> snapshots = new ArrayList<>();
+        LatencySnapshot snapshot;
+        while ((snapshot = closedIntervals.poll()) != null) {
+            snapshots.add(snapshot);
+        }
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        
+        try {
+            snapshotRepository.insertAll(snapshots);
+            logger.debug("Persisted {} latency snapshots", snapshots.size());
+        } catch (DataAccessException e) {
+            // Keep the snapshots for the next run
+            logger.error("Failed to persist {} latency snapshots", snapshots.size(), e);
+            closedIntervals.addAll(snapshots);
+        }
+    }
+    
+    /**
+     * Response-time percentiles of a chatbot for every sliding window
+     */
+    @ReplicaTransactional
+    public Map<String, Map<String, Object>> getPercentiles(Long chatbotId) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        WINDOWS.keySet().forEach(window -> histograms.put(window, new LatencyHistogram()));
+        
+        Duration longestWindow = Collections.max(WINDOWS.values());
+        List<LatencySnapshot> snapshots = snapshotRepository.findByChatbotSince(chatbotId, windowStart(now, longestWindow));
+        snapshots.addAll(openSnapshots(chatbotId));
+        for (LatencySnapshot snapshot : snapshots) {
+            LatencyHistogram histogram = LatencyHistogram.decode(snapshot.getHistogram());
+            WINDOWS.forEach((window, length) -> {
+                if (!snapshot.getIntervalStart().isBefore(windowStart(now, length))) {
+                    histograms.get(window).add(histogram);
+                }
+            });
+        }
+        
+        Map<String, Map<String, Object>> percentiles = new LinkedHashMap<>();
+        histograms.forEach((window, histogram) -> percentiles.put(window, summarize(histogram)));
+        return percentiles;
+    }
+    
+    /**
+     * Chatbots with the highest p95 response time over a window, slowest first
+     */
+    @ReplicaTransactional
+    public List<Map<String, Object>> getSlowestChatbots(Duration window, int limit) {
+        LocalDateTime from = windowStart(LocalDateTime.now(), window);
+        List<LatencySnapshot> snapshots = snapshotRepository.findSince(from);
+        snapshots.addAll(openSnapshots(null));
+        
+        Map<Long, LatencyHistogram> histograms = new HashMap<>();
+        for (LatencySnapshot snapshot : snapshots) {
+            if (!snapshot.getIntervalStart().isBefore(from)) {
+                histograms.computeIfAbsent(snapshot.getChatbotId(), id -> new LatencyHistogram())
+                    .add(LatencyHistogram.decode(snapshot.getHistogram()));
+            }
+        }
+        
+        List<Map<String, Object>> slowest = new ArrayList<>();
+        histograms.forEach((chatbotId, histogram) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("chatbotId", chatbotId);
+            entry.putAll(summarize(histogram));
+            slowest.add(entry);
+        });
+        slowest.sort(Comparator.comparing((Map<String, Object> entry) -> (Long) entry.get("p95")).reversed());
+        return slowest.subList(0, Math.min(limit, slowest.size()));
+    }
+    
+    /**
+     * Snapshots of the intervals still open on this node, for one chatbot or all when null
+     */
+    private List<LatencySnapshot> openSnapshots(Long chatbotId) {
+        List<LatencySnapshot> snapshots = new ArrayList<>();
+        openIntervals.forEach((id, interval) -> {
+            if (chatbotId == null || chatbotId.equals(id)) {
+                snapshots.add(interval.toSnapshot(intervalSeconds));
+            }
+        });
+        closedIntervals.forEach(snapshot -> {
+            if (chatbotId == null || chatbotId.equals(snapshot.getChatbotId())) {
+                snapshots.add(snapshot);
+            }
+        });
+        return snapshots;
+    }
+    
+    private Map<String, Object> summarize(LatencyHistogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("p50", histogram.getValueAtPercentile(50));
+        summary.put("p95", histogram.getValueAtPercentile(95));
+        summary.put("p99", histogram.getValueAtPercentile(99));
+        summary.put("max", histogram.getMaxValue());
+        return summary;
+    }
+    
+    /**
+     * Start of the first interval that overlaps the window ending now
+     */
+    private LocalDateTime windowStart(LocalDateTime now, Duration window) {
+        return intervalStart(now.minus(window));
+    }
+    
+    private LocalDateTime intervalStart(LocalDateTime time) {
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(epochSecond - Math.floorMod(epochSecond, intervalSeconds), 0, ZoneOffset.UTC);
+    }
+    
+    /**
+     * Histogram of one chatbot for the interval still being recorded
+     */
+    private static class Interval {
+        
+        private final Long chatbotId;
+        private final LocalDateTime start;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        
+        Interval(Long chatbotId, LocalDateTime start) {
+            this.chatbotId = chatbotId;
+            this.start = start;
+        }
+        
+        LatencySnapshot toSnapshot(int intervalSeconds) {
+            return new LatencySnapshot(chatbotId, start, intervalSeconds,
+                histogram.getTotalCount(), histogram.getMaxValue(), histogram.encode());
+        }
+    }
+}
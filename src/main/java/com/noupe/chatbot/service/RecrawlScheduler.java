@@ -0,0 +1,96 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.WebsiteContent;
+import com.noupe.chatbot.repository.ChatbotRepository;
+import com.noupe.chatbot.repository.WebsiteContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Periodically re-crawls and re-indexes pages that are due.
+ *
+ * Each run takes at most {@code pages-per-run} due pages across all chatbots,
+ * most overdue first, so the fetch load stays flat instead of spiking when
+ * many chatbots were analyzed at the same time. How often a page falls due is
+ * learned per page by the crawler from how often it changed in the past.
+ */
+@Service
+public class RecrawlScheduler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RecrawlScheduler.class);
+    
+    private final WebsiteContentRepository websiteContentRepository;
+    private final ChatbotRepository chatbotRepository;
+    private final WebsiteAnalysisService websiteAnalysisService;
+    private final AiChatbotService aiChatbotService;
+    
+    @Value("${app.recrawl.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.recrawl.pages-per-run:100}")
+    private int pagesPerRun;
+    
+    public RecrawlScheduler(WebsiteContentRepository websiteContentRepository,
+                            ChatbotRepository chatbotRepository,
+                            WebsiteAnalysisService websiteAnalysisService,
+                            AiChatbotService aiChatbotService) {
+        this.websiteContentRepository = websiteContentRepository;
+        this.chatbotRepository = chatbotRepository;
+        this.websiteAnalysisService = websiteAnalysisService;
+        this.aiChatbotService = aiChatbotService;
+    }
+    
+    /**
+     * Re-crawl the most overdue pages and re-index the chatbots whose content changed
+     */
+    @Scheduled(fixedDelayString = "${app.recrawl.poll-interval-ms:60000}", 
+               initialDelayString = "${app.recrawl.initial-delay-ms:60000}")
+    public void recrawlDuePages() {
+        if (!enabled) {
+            return;
+        }
+        
+        List<WebsiteContent> duePages = websiteContentRepository.findDueForRecrawl(
+            LocalDateTime.now(), PageRequest.of(0, pagesPerRun));
+        if (duePages.isEmpty()) {
+            return;
+        }
+        
+        Map<Long, List<WebsiteContent>> pagesByChatbot = new LinkedHashMap<>();
+        for (WebsiteContent page : duePages) {
+            pagesByChatbot.computeIfAbsent(page.getChatbot().getId(), id -> new ArrayList<>()).add(page);
+        }
+        
+        Map<Chatbot, CompletableFuture<List<WebsiteContent>>> recrawls = new LinkedHashMap<>();
+        pagesByChatbot.forEach((chatbotId, pages) -> chatbotRepository.findById(chatbotId)
+            .ifPresent(chatbot -> recrawls.put(chatbot, websiteAnalysisService.recrawlPages(chatbot, pages))));
+        
+        int changedPages = 0;
+        for (Map.Entry<Chatbot, CompletableFuture<List<WebsiteContent>>> recrawl : recrawls.entrySet()) {
+            Chatbot chatbot = recrawl.getKey();
+            List<WebsiteContent> changed = recrawl.getValue().join();
+            if (changed.isEmpty()) {
+                continue;
+            }
+            
+            changedPages += changed.size();
+            try {
+                aiChatbotService.indexWebsiteContent(chatbot);
+            } catch (Exception e) {
+                logger.error("Failed to re-index chatbot {} after re-crawl", chatbot.getId(), e);
+            }
+        }
+        
+        logger.info("Re-crawled {} due pages of {} chatbots, {} changed", 
+            duePages.size(), recrawls.size(), changedPages);
+    }
+}
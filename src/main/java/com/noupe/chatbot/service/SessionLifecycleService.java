@@ -0,0 +1,155 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.model.Conversation;
+import com.noupe.chatbot.repository.ConversationRetentionRepository;
+import com.noupe.chatbot.repository.ConversationRetentionRepository.IdleConversation;
+import com.noupe.chatbot.service.session.IdleTimerWheel;
+import com.noupe.chatbot.service.session.SessionsEndedEvent;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ends conversations whose session has gone idle.
+ *
+ * Sessions active on this node are tracked in a timer wheel, which is
+ * touched on every message and advanced once per tick. Sessions idle for
+ * the timeout are ended in batched updates, counted in the analytics, and
+ * announced with a {@link SessionsEndedEvent} so that session caches can
+ * release them. Sessions not seen since a restart, or whose end could not
+ * be written, are caught by the periodic sweep of the retention job.
+ */
+@Service
+public class SessionLifecycleService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SessionLifecycleService.class);
+    
+    private final ConversationRetentionRepository retentionRepository;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TenantShardService tenantShardService;
+    
+    private IdleTimerWheel<ActiveSession> activeSessions;
+    
+    @Value("${app.session.idle-timeout-minutes:30}")
+    private long idleTimeoutMinutes;
+    
+    @Value("${app.session.tick-ms:1000}")
+    private long tickMs;
+    
+    @Value("${app.session.end-batch-size:100}")
+    private int endBatchSize;
+    
+    public SessionLifecycleService(ConversationRetentionRepository retentionRepository,
+                                   AnalyticsRollupService analyticsRollupService,
+                                   ApplicationEventPublisher eventPublisher,
+                                   TenantShardService tenantShardService) {
+        this.retentionRepository = retentionRepository;
+        this.analyticsRollupService = analyticsRollupService;
+        this.eventPublisher = eventPublisher;
+        this.tenantShardService = tenantShardService;
+    }
+    
+    @PostConstruct
+    void init() {
+        activeSessions = new IdleTimerWheel<>(Duration.ofMinutes(idleTimeoutMinutes).toMillis(), tickMs, 
+            System.currentTimeMillis());
+    }
+    
+    /**
+     * Record activity in a conversation once the current transaction has committed
+     */
+    public void touch(Conversation conversation) {
+        // Read the conversation after commit, when its creation time has been generated
+        Runnable activity = () -> activeSessions.touch(new ActiveSession(conversation.getId(), 
+            conversation.getChatbotId(), conversation.getSessionId(), conversation.getStartedAt()), 
+            System.currentTimeMillis());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            activity.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                activity.run();
+            }
+        });
+    }
+    
+    /**
+     * End the conversations of sessions that have gone idle since the last tick
+     */
+    @Scheduled(fixedDelayString = "${app.session.tick-ms:1000}")
+    public void expireIdleSessions() {
+        List<IdleTimerWheel.Expired<ActiveSession>> expired = activeSessions.advance(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+        
+        List<IdleConversation> idle = new ArrayList<>(expired.size());
+        for (IdleTimerWheel.Expired<ActiveSession> session : expired) {
+            ActiveSession key = session.key();
+            LocalDateTime lastActivity = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(session.lastActivityMillis()), ZoneId.systemDefault());
+            idle.add(new IdleConversation(key.conversationId(), key.chatbotId(), key.sessionId(),
+                key.startedAt() != null ? key.startedAt() : lastActivity, lastActivity));
+        }
+        
+        int ended = 0;
+        for (int i = 0; i < idle.size(); i += endBatchSize) {
+            try {
+                ended += endConversations(idle.subList(i, Math.min(i + endBatchSize, idle.size()))).size();
+            } catch (DataAccessException e) {
+                logger.warn("Failed to end {} idle conversations, leaving them to the retention sweep", 
+                    Math.min(endBatchSize, idle.size() - i), e);
+            }
+        }
+        logger.debug("Ended {} of {} idle sessions, {} still active", ended, idle.size(), activeSessions.size());
+    }
+    
+    /**
+     * End idle conversations in one batch per shard, record their duration
+     * and announce the ended sessions. Conversations of chatbots locked for a
+     * move are left for a later sweep.
+     *
+     * @return the conversations that were still active and have been ended
+     */
+    public List<IdleConversation> endConversations(List<IdleConversation> idle) {
+        List<IdleConversation> ended = new ArrayList<>();
+        for (Map.Entry<String, List<IdleConversation>> shard : 
+                tenantShardService.groupByShard(idle, IdleConversation::chatbotId).entrySet()) {
+            ended.addAll(tenantShardService.inShard(shard.getKey(), () -> retentionRepository.endAll(shard.getValue())));
+        }
+        if (ended.isEmpty()) {
+            return ended;
+        }
+        
+        List<SessionsEndedEvent.EndedSession> sessions = new ArrayList<>(ended.size());
+        for (IdleConversation conversation : ended) {
+            analyticsRollupService.recordConversationEnded(conversation.chatbotId(),
+                Duration.between(conversation.startedAt(), conversation.lastActivityAt()).toSeconds());
+            sessions.add(new SessionsEndedEvent.EndedSession(
+                conversation.id(), conversation.chatbotId(), conversation.sessionId()));
+        }
+        eventPublisher.publishEvent(new SessionsEndedEvent(sessions));
+        return ended;
+    }
+    
+    private record ActiveSession(long conversationId, long chatbotId, String sessionId, LocalDateTime startedAt) {
+    }
+}
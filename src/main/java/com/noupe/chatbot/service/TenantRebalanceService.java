@@ -0,0 +1,247 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.config.TenantShardRoutingDataSource;
+import com.noupe.chatbot.repository.ConversationTransferRepository;
+import com.noupe.chatbot.repository.TenantShardRepository.State;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves a chatbot's conversations and messages to another shard while the
+ * chatbot stays online.
+ *
+ * The rows are first copied in bulk while the source keeps serving the
+ * chatbot, then in catch-up passes that copy what was written in the
+ * meantime. For the last pass the chatbot is locked: every node holds new
+ * work on its conversations until the shard map points to the target.
+ * The source rows are deleted after a delay, once no node can still be
+ * reading them. Moves run one at a time in the background.
+ */
+@Service
+public class TenantRebalanceService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TenantRebalanceService.class);
+    
+    private final TenantShardService shardService;
+    private final ConversationTransferRepository transferRepository;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    
+    @Value("${app.sharding.copy-batch-size:1000}")
+    private int copyBatchSize;
+    
+    @Value("${app.sharding.catch-up-passes:2}")
+    private int catchUpPasses;
+    
+    // Rows committed up to this long after they were created are still picked up by the next pass
+    @Value("${app.sharding.copy-margin-seconds:300}")
+    private long copyMarginSeconds;
+    
+    @Value("${app.sharding.refresh-ms:2000}")
+    private long refreshMs;
+    
+    @Value("${app.sharding.drain-ms:10000}")
+    private long drainMs;
+    
+    @Value("${app.sharding.purge-delay-ms:600000}")
+    private long purgeDelayMs;
+    
+    public TenantRebalanceService(TenantShardService shardService,
+                                  ConversationTransferRepository transferRepository) {
+        this.shardService = shardService;
+        this.transferRepository = transferRepository;
+    }
+    
+    /**
+     * Start moving a chatbot's conversations to the target shard
+     *
+     * @return the shard the conversations are moved from
+     * @throws IllegalArgumentException if the target shard is unknown or already holds the chatbot
+     * @throws IllegalStateException if sharding is disabled or the chatbot is already being moved
+     */
+    public synchronized String move(Long chatbotId, String targetShard) {
+        if (!shardService.isEnabled()) {
+            throw new IllegalStateException("Sharding is not enabled");
+        }
+        if (!shardService.getShardNames().contains(targetShard)) {
+            throw new IllegalArgumentException("Unknown shard: " + targetShard);
+        }
+        String sourceShard = shardService.getShard(chatbotId);
+        if (sourceShard.equals(targetShard)) {
+            throw new IllegalArgumentException("Chatbot " + chatbotId + " is already on shard " + targetShard);
+        }
+        if (shardService.getState(chatbotId) != State.STABLE) {
+            throw new IllegalStateException("Chatbot " + chatbotId + " is already being moved");
+        }
+        
+        // Claims the chatbot and pauses retention for it until the move ends
+        shardService.assign(chatbotId, sourceShard, State.MOVING);
+        executor.execute(() -> runMove(chatbotId, sourceShard, targetShard));
+        return sourceShard;
+    }
+    
+    /**
+     * Delete a chatbot's conversations from its shard and drop it from the shard map.
+     * Conversations in the primary are deleted with the chatbot itself.
+     *
+     * @throws IllegalStateException if the chatbot is being moved
+     */
+    public void removeTenant(Long chatbotId) {
+        if (!shardService.isEnabled()) {
+            return;
+        }
+        if (shardService.getState(chatbotId) != State.STABLE) {
+            throw new IllegalStateException("Chatbot " + chatbotId + " is being moved");
+        }
+        String shard = shardService.getShard(chatbotId);
+        if (!TenantShardRoutingDataSource.PRIMARY_SHARD.equals(shard)) {
+            purge(shard, chatbotId);
+        }
+        shardService.unassign(chatbotId);
+    }
+    
+    private void runMove(Long chatbotId, String sourceShard, String targetShard) {
+        long startTime = System.currentTimeMillis();
+        logger.info("Moving conversations of chatbot {} from shard {} to {}", chatbotId, sourceShard, targetShard);
+        try {
+            // Leftovers of an earlier, aborted move
+            purge(targetShard, chatbotId);
+            
+            LocalDateTime passStart = LocalDateTime.now();
+            long messages = copy(sourceShard, targetShard, chatbotId, null);
+            for (int pass = 0; pass < catchUpPasses; pass++) {
+                LocalDateTime since = passStart.minusSeconds(copyMarginSeconds);
+                passStart = LocalDateTime.now();
+                messages += copy(sourceShard, targetShard, chatbotId, since);
+            }
+            
+            shardService.assign(chatbotId, sourceShard, State.LOCKED);
+            // Let every node see the lock and finish the work it started on the source
+            Thread.sleep(refreshMs + drainMs);
+            messages += copy(sourceShard, targetShard, chatbotId, passStart.minusSeconds(copyMarginSeconds));
+            syncActiveConversations(sourceShard, targetShard, chatbotId);
+            shardService.assign(chatbotId, targetShard, State.STABLE);
+            
+            logger.info("Moved {} messages of chatbot {} from shard {} to {} in {} ms", 
+                messages, chatbotId, sourceShard, targetShard, System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(chatbotId, sourceShard, targetShard, e);
+            return;
+        } catch (RuntimeException e) {
+            abort(chatbotId, sourceShard, targetShard, e);
+            return;
+        }
+        
+        // Nodes that have not refreshed their shard map yet may still read the source
+        executor.schedule(() -> purgeMoved(chatbotId, sourceShard), refreshMs + purgeDelayMs, TimeUnit.MILLISECONDS);
+    }
+    
+    private void abort(Long chatbotId, String sourceShard, String targetShard, Exception cause) {
+        logger.error("Moving chatbot {} from shard {} to {} failed, it stays on {}", 
+            chatbotId, sourceShard, targetShard, sourceShard, cause);
+        try {
+            shardService.assign(chatbotId, sourceShard, State.STABLE);
+        } catch (RuntimeException e) {
+            logger.error("Failed to release chatbot {} on shard {}", chatbotId, sourceShard, e);
+        }
+    }
+    
+    /**
+     * Copy the chatbot's conversations and then its messages, all of them or
+     * those written since the given time
+     *
+     * @return the number of messages read from the source
+     */
+    private long copy(String sourceShard, String targetShard, Long chatbotId, LocalDateTime since) {
+        long afterId = 0;
+        List<Object[]> rows;
+        do {
+            long cursor = afterId;
+            rows = shardService.inShard(sourceShard, 
+                () -> transferRepository.findConversations(chatbotId, since, cursor, copyBatchSize));
+            if (!rows.isEmpty()) {
+                write(targetShard, rows, true);
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+            }
+        } while (rows.size() == copyBatchSize);
+        
+        long messages = 0;
+        afterId = 0;
+        do {
+            long cursor = afterId;
+            rows = shardService.inShard(sourceShard, 
+                () -> transferRepository.findMessages(chatbotId, since, cursor, copyBatchSize));
+            if (!rows.isEmpty()) {
+                write(targetShard, rows, false);
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+                messages += rows.size();
+            }
+        } while (rows.size() == copyBatchSize);
+        return messages;
+    }
+    
+    /**
+     * Bring conversations still active in the copy up to date, since those
+     * ended at their last activity may not have been picked up by time
+     */
+    private void syncActiveConversations(String sourceShard, String targetShard, Long chatbotId) {
+        List<Long> active = shardService.inShard(targetShard, 
+            () -> transferRepository.findActiveConversationIds(chatbotId));
+        for (int i = 0; i < active.size(); i += copyBatchSize) {
+            List<Long> ids = active.subList(i, Math.min(i + copyBatchSize, active.size()));
+            List<Object[]> rows = shardService.inShard(sourceShard, () -> transferRepository.findConversationsByIds(ids));
+            if (!rows.isEmpty()) {
+                write(targetShard, rows, true);
+            }
+        }
+    }
+    
+    private void write(String shard, List<Object[]> rows, boolean conversations) {
+        shardService.inShard(shard, () -> {
+            if (conversations) {
+                transferRepository.upsertConversations(rows);
+            } else {
+                transferRepository.insertMessages(rows);
+            }
+            return null;
+        });
+    }
+    
+    private void purgeMoved(Long chatbotId, String shard) {
+        if (shard.equals(shardService.getShard(chatbotId))) {
+            // Moved back in the meantime
+            return;
+        }
+        try {
+            purge(shard, chatbotId);
+        } catch (RuntimeException e) {
+            logger.error("Failed to delete the moved conversations of chatbot {} from shard {}", chatbotId, shard, e);
+        }
+    }
+    
+    private void purge(String shard, Long chatbotId) {
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = shardService.inShard(shard, () -> transferRepository.deleteConversations(chatbotId, copyBatchSize));
+            purged += deleted;
+        } while (deleted > 0);
+        if (purged > 0) {
+            logger.info("Deleted {} conversations of chatbot {} from shard {}", purged, chatbotId, shard);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,253 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.config.ShardDataSources;
+import com.noupe.chatbot.config.TenantShardRoutingDataSource;
+import com.noupe.chatbot.repository.TenantShardRepository;
+import com.noupe.chatbot.repository.TenantShardRepository.State;
+import com.noupe.chatbot.repository.TenantShardRepository.TenantShard;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Places the conversations and messages of each chatbot in one shard database.
+ *
+ * The shard map is kept in the primary database and cached on every node,
+ * refreshed every few seconds; chatbots without an entry stay in the
+ * primary. Work on a chatbot's conversations runs through
+ * {@link #inTenant}, which selects the chatbot's shard for the connections
+ * it opens, so the existing repositories read and write the right database.
+ * Chatbots themselves, crawled content and analytics stay in the primary.
+ *
+ * Without {@code app.sharding.enabled} everything runs on the primary and
+ * the work is executed as is.
+ */
+@Service
+public class TenantShardService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TenantShardService.class);
+    
+    private static final long LOCK_POLL_MS = 50;
+    
+    private final TenantShardRepository shardRepository;
+    private final List<String> shardNames;
+    private final TransactionTemplate newTransaction;
+    
+    private volatile Map<Long, TenantShard> assignments = Map.of();
+    
+    @Value("${app.sharding.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.sharding.lock-wait-ms:30000}")
+    private long lockWaitMs;
+    
+    public TenantShardService(TenantShardRepository shardRepository,
+                              ObjectProvider<ShardDataSources> shardDataSources,
+                              PlatformTransactionManager transactionManager) {
+        this.shardRepository = shardRepository;
+        List<String> names = new ArrayList<>();
+        names.add(TenantShardRoutingDataSource.PRIMARY_SHARD);
+        shardDataSources.ifAvailable(shards -> names.addAll(shards.getDataSources().keySet()));
+        this.shardNames = List.copyOf(names);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            // Routing before the map is loaded would send sharded chatbots to the primary
+            assignments = load();
+            logger.info("Loaded shard map of {} chatbots across shards {}", assignments.size(), shardNames);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.sharding.refresh-ms:2000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            assignments = load();
+        } catch (DataAccessException e) {
+            logger.warn("Failed to refresh the shard map, keeping the cached one: {}", e.getMessage());
+        }
+    }
+    
+    private Map<Long, TenantShard> load() {
+        Map<Long, TenantShard> loaded = new HashMap<>();
+        for (TenantShard assignment : inShard(TenantShardRoutingDataSource.PRIMARY_SHARD, shardRepository::findAll)) {
+            loaded.put(assignment.chatbotId(), assignment);
+        }
+        return loaded;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * The primary followed by the configured shards
+     */
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+    
+    /**
+     * Shard holding a chatbot's conversations
+     */
+    public String getShard(Long chatbotId) {
+        TenantShard assignment = assignments.get(chatbotId);
+        return assignment != null ? assignment.shard() : TenantShardRoutingDataSource.PRIMARY_SHARD;
+    }
+    
+    public State getState(Long chatbotId) {
+        TenantShard assignment = assignments.get(chatbotId);
+        return assignment != null ? assignment.state() : State.STABLE;
+    }
+    
+    /**
+     * Record a chatbot's placement in the shard map and in this node's cache
+     */
+    public void assign(Long chatbotId, String shard, State state) {
+        inShard(TenantShardRoutingDataSource.PRIMARY_SHARD, () -> {
+            shardRepository.save(chatbotId, shard, state);
+            return null;
+        });
+        updateCache(chatbotId, new TenantShard(chatbotId, shard, state));
+    }
+    
+    /**
+     * Drop a chatbot from the shard map
+     */
+    public void unassign(Long chatbotId) {
+        inShard(TenantShardRoutingDataSource.PRIMARY_SHARD, () -> {
+            shardRepository.delete(chatbotId);
+            return null;
+        });
+        updateCache(chatbotId, null);
+    }
+    
+    private synchronized void updateCache(Long chatbotId, TenantShard assignment) {
+        Map<Long, TenantShard> updated = new HashMap<>(assignments);
+        if (assignment != null) {
+            updated.put(chatbotId, assignment);
+        } else {
+            updated.remove(chatbotId);
+        }
+        assignments = updated;
+    }
+    
+    /**
+     * Run work on a chatbot's conversations against the chatbot's shard.
+     * While the chatbot is locked for the last step of a move, this waits
+     * until the move has completed.
+     *
+     * @throws IllegalStateException if the chatbot stays locked for longer than the lock wait
+     */
+    public <T, E extends Exception> T inTenant(Long chatbotId, ShardWork<T, E> work) throws E {
+        return inShard(awaitUnlocked(chatbotId), work);
+    }
+    
+    /**
+     * Run work against the given shard. Connections opened by the work use
+     * the shard; if a transaction on another database is active, the work
+     * runs in a new transaction of its own.
+     */
+    public <T, E extends Exception> T inShard(String shard, ShardWork<T, E> work) throws E {
+        String previous = TenantShardRoutingDataSource.getCurrentShard();
+        if (!enabled || shard.equals(previous)) {
+            return work.run();
+        }
+        if (!shardNames.contains(shard)) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        
+        TenantShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                return work.run();
+            }
+            try {
+                return newTransaction.execute(status -> {
+                    try {
+                        return work.run();
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new CheckedWorkException(e);
+                    }
+                });
+            } catch (CheckedWorkException e) {
+                @SuppressWarnings("unchecked")
+                E cause = (E) e.getCause();
+                throw cause;
+            }
+        } finally {
+            TenantShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+    
+    /**
+     * Split items by the shard of their chatbot, leaving out chatbots that
+     * are locked for a move
+     */
+    public <T> Map<String, List<T>> groupByShard(Collection<T> items, ToLongFunction<T> chatbotId) {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            long id = chatbotId.applyAsLong(item);
+            if (getState(id) != State.LOCKED) {
+                groups.computeIfAbsent(getShard(id), shard -> new ArrayList<>()).add(item);
+            }
+        }
+        return groups;
+    }
+    
+    private String awaitUnlocked(Long chatbotId) {
+        if (!enabled) {
+            return TenantShardRoutingDataSource.PRIMARY_SHARD;
+        }
+        long deadline = System.currentTimeMillis() + lockWaitMs;
+        TenantShard assignment = assignments.get(chatbotId);
+        while (assignment != null && assignment.state() == State.LOCKED) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IllegalStateException("Conversations of chatbot " + chatbotId + " are being moved");
+            }
+            try {
+                Thread.sleep(LOCK_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for chatbot " + chatbotId, e);
+            }
+            assignment = assignments.get(chatbotId);
+        }
+        return assignment != null ? assignment.shard() : TenantShardRoutingDataSource.PRIMARY_SHARD;
+    }
+    
+    /**
+     * Work run against a shard
+     */
+    @FunctionalInterface
+    public interface ShardWork<T, E extends Exception> {
+        T run() throws E;
+    }
+    
+    private static class CheckedWorkException extends RuntimeException {
+        
+        CheckedWorkException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -1,25 +1,63 @@
 package com.noupe.chatbot.service;
 
+import com.noupe.chatbot.config.ReplicaTransactional;
 import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.CrawlFrontierEntry;
+import com.noupe.chatbot.model.CrawlJob;
 import com.noupe.chatbot.model.WebsiteContent;
+import com.noupe.chatbot.repository.CrawlCheckpointRepository;
+import com.noupe.chatbot.repository.CrawlJobRepository;
+import com.noupe.chatbot.repository.WebsiteContentBatchRepository;
 import com.noupe.chatbot.repository.WebsiteContentRepository;
+import com.noupe.chatbot.service.crawler.CrawlBudget;
+import com.noupe.chatbot.service.crawler.CrawlCheckpoint;
+import com.noupe.chatbot.service.crawler.CrawlFrontier;
+import com.noupe.chatbot.service.crawler.CrawlSession;
+import com.noupe.chatbot.service.crawler.CrawlTask;
+import com.noupe.chatbot.service.crawler.CrawlWriteBuffer;
+import com.noupe.chatbot.service.crawler.ExtractedPage;
+import com.noupe.chatbot.service.crawler.FetchedPage;
+import com.noupe.chatbot.service.crawler.HtmlContentExtractor;
+import com.noupe.chatbot.service.crawler.RecrawlPolicy;
+import com.noupe.chatbot.service.crawler.RobotsRules;
+import com.noupe.chatbot.service.crawler.SitemapReader;
+import com.noupe.chatbot.service.crawler.UrlCanonicalizer;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
@@ -31,8 +69,17 @@ public class WebsiteAnalysisService {
     private static final Logger logger = LoggerFactory.getLogger(WebsiteAnalysisService.class);
     
     private final WebsiteContentRepository websiteContentRepository;
+    private final WebsiteContentBatchRepository websiteContentBatchRepository;
+    private final DocumentIngestionService documentIngestionService;
+    private final CrawlJobRepository crawlJobRepository;
+    private final CrawlCheckpointRepository crawlCheckpointRepository;
     private final RestTemplate restTemplate;
     private final ExecutorService executorService;
+    private final ThreadPoolExecutor parseExecutor;
+    private final Map<Long, CrawlSession> activeCrawls = new ConcurrentHashMap<>();
+    // Chatbots with a crawl starting or running on this node
+    private final Set<Long> crawlingChatbots = ConcurrentHashMap.newKeySet();
+    private volatile boolean shuttingDown;
     
     @Value("${app.website-analysis.max-pages:50}")
     private int maxPages;
@@ -46,222 +93,1074 @@ public class WebsiteAnalysisService {
     @Value("${app.website-analysis.user-agent:AI-Chatbot-Crawler/1.0}")
     private String userAgent;
     
+    @Value("${app.website-analysis.concurrency:8}")
+    private int crawlConcurrency;
+    
+    @Value("${app.website-analysis.max-bytes-per-crawl:536870912}")
+    private long maxCrawlBytes;
+    
+    @Value("${app.website-analysis.max-duration-minutes:60}")
+    private int maxCrawlMinutes;
+    
+    @Value("${app.website-analysis.max-sitemap-urls:10000}")
+    private int maxSitemapUrls;
+    
+    @Value("${app.recrawl.min-interval-hours:1}")
+    private long minRecrawlIntervalHours;
+    
+    @Value("${app.recrawl.max-interval-hours:336}")
+    private long maxRecrawlIntervalHours;
+    
+    @Value("${app.website-analysis.write-batch-size:50}")
+    private int writeBatchSize;
+    
+    @Value("${app.website-analysis.max-body-bytes:2097152}")
+    private int maxBodyBytes;
+    
+    @Value("${app.website-analysis.max-text-length:100000}")
+    private int maxTextLength;
+    
+    @Value("${app.website-analysis.tracking-parameters:utm_*,gclid,fbclid,msclkid,mc_cid,mc_eid,_ga,ref}")
+    private List<String> trackingParameters;
+    
+    @Value("${app.website-analysis.node-id:${HOSTNAME:local}}")
+    private String nodeId;
+    
+    @Value("${app.website-analysis.checkpoint.batch-size:100}")
+    private int checkpointBatchSize;
+    
+    @Value("${app.website-analysis.checkpoint.interval-seconds:10}")
+    private long checkpointIntervalSeconds;
+    
+    @Value("${app.website-analysis.checkpoint.stale-after-minutes:10}")
+    private long staleAfterMinutes;
+    
+    private static final long FRONTIER_POLL_MILLIS = 200;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int DEFAULT_RECRAWL_INTERVAL_HOURS = 24;
+    
+    // Frontier priorities, higher is crawled first
+    private static final double CHANGED_PRIORITY = 2.0;
+    private static final double ROOT_PRIORITY = 1.5;
+    private static final double LINK_PRIORITY = 1.0;
+    private static final double SITEMAP_PRIORITY = 0.8;
+    private static final double REVISIT_PRIORITY = 0.4;
+    
     // Patterns for content filtering
     private static final Pattern SKIP_PATTERNS = Pattern.compile(
-        ".*\\.(css|js|png|jpg|jpeg|gif|svg|ico|pdf|zip|mp3|mp4|avi|mov)$", 
+        ".*\\.(css|js|png|jpg|jpeg|gif|svg|ico|zip|mp3|mp4|avi|mov)$", 
         Pattern.CASE_INSENSITIVE
     );
     
-    private static final Set<String> SKIP_SELECTORS = Set.of(
-        "nav", "header", "footer", "aside", "script", "style", 
-        ".navigation", ".menu", ".sidebar", ".ads", ".advertisement"
-    );
+    private static final Pattern PDF_PATTERN = Pattern.compile(".*\\.pdf$", Pattern.CASE_INSENSITIVE);
     
-    public WebsiteAnalysisService(WebsiteContentRepository websiteContentRepository) {
+    public WebsiteAnalysisService(WebsiteContentRepository websiteContentRepository,
+                                  WebsiteContentBatchRepository websiteContentBatchRepository,
+                                  DocumentIngestionService documentIngestionService,
+                                  CrawlJobRepository crawlJobRepository,
+                                  CrawlCheckpointRepository crawlCheckpointRepository,
+                                  @Value("${app.website-analysis.fetch-threads:32}") int fetchThreads,
+                                  @Value("${app.website-analysis.parse-threads:0}") int parseThreads,
+                                  @Value("${app.website-analysis.parse-queue-capacity:64}") int parseQueueCapacity) {
         this.websiteContentRepository = websiteContentRepository;
+        this.websiteContentBatchRepository = websiteContentBatchRepository;
+        this.documentIngestionService = documentIngestionService;
+        this.crawlJobRepository = crawlJobRepository;
+        this.crawlCheckpointRepository = crawlCheckpointRepository;
         this.restTemplate = new RestTemplate();
-        this.executorService = Executors.newFixedThreadPool(10);
+        this.executorService = Executors.newFixedThreadPool(fetchThreads);
+        this.parseExecutor = newParsePool(parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors(), 
+            parseQueueCapacity);
     }
     
     /**
-     * Analyze a website and extract content for chatbot training
+     * Fixed pool for the CPU-bound parse stage. When its queue is full the
+     * fetcher handing off a page blocks, so fetching cannot outrun parsing.
+     */
+    private static ThreadPoolExecutor newParsePool(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            (task, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Parse pool is shut down");
+                }
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for the parse queue", e);
+                }
+            });
+    }
+    
+    /**
+     * Analyze a website and extract content for chatbot training.
+     *
+     * Pages stored by a previous analysis are re-crawled with conditional
+     * requests; pages that answer 304 or whose body hash is unchanged are
+     * neither extracted nor re-indexed.
+     *
+     * The crawl is tracked as a {@link CrawlJob} whose frontier is
+     * checkpointed while it runs, so that it can be resumed after a restart.
      */
     public CompletableFuture<List<WebsiteContent>> analyzeWebsite(Chatbot chatbot) {
+        return analyzeWebsite(chatbot, null, null, null);
+    }
+    
+    /**
+     * Analyze a website within the given page, byte and time budget. Budgets
+     * that are null or above the configured maximum use the configured maximum.
+     *
+     * Only one crawl per chatbot runs at a time: a second start on this node
+     * is refused before it touches the database, and one racing on another
+     * node is refused by the unique index on running crawl jobs.
+     *
+     * @throws IllegalStateException if a crawl of the chatbot is already running
+     */
+    public CompletableFuture<List<WebsiteContent>> analyzeWebsite(Chatbot chatbot, Integer pageLimit, 
+                                                                  Long byteLimit, Integer minuteLimit) {
+        if (!crawlingChatbots.add(chatbot.getId())) {
+            throw new IllegalStateException("A crawl of chatbot " + chatbot.getId() + " is already running");
+        }
+        CrawlJob job;
+        try {
+            if (findRunningCrawl(chatbot).isPresent()) {
+                throw new IllegalStateException("A crawl of chatbot " + chatbot.getId() + " is already running");
+            }
+            supersedeInterruptedCrawls(chatbot);
+            job = crawlJobRepository.save(new CrawlJob(chatbot, nodeId, 
+                (int) withinLimit(pageLimit, maxPages), withinLimit(byteLimit, maxCrawlBytes), 
+                (int) withinLimit(minuteLimit, maxCrawlMinutes)));
+        } catch (DataIntegrityViolationException e) {
+            crawlingChatbots.remove(chatbot.getId());
+            throw new IllegalStateException("A crawl of chatbot " + chatbot.getId() + " was started on another node", e);
+        } catch (RuntimeException e) {
+            crawlingChatbots.remove(chatbot.getId());
+            throw e;
+        }
+        
         return CompletableFuture.supplyAsync(() -> {
-            logger.info("Starting website analysis for: {}", chatbot.getWebsiteUrl());
+            logger.info("Starting website analysis for: {} (crawl {})", chatbot.getWebsiteUrl(), job.getId());
             
-            Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
-            List<WebsiteContent> extractedContent = new ArrayList<>();
+            CrawlBudget budget = new CrawlBudget(job.getMaxPages(), job.getMaxBytes(), 
+                Duration.ofMinutes(job.getMaxDurationMinutes()));
+            CrawlSession session = newSession(chatbot, websiteContentRepository.findByChatbot(chatbot), budget);
+            attachCheckpoint(session, job.getId());
+            seedFrontier(session);
+            return session;
+        }, executorService).thenCompose(this::runWorkers).exceptionally(e -> {
+            logger.error("Error during website analysis", e);
+            finishCrawlJob(job.getId(), null, CrawlJob.CrawlStatus.FAILED, e.getMessage());
+            return new ArrayList<>();
+        }).whenComplete((contents, e) -> crawlingChatbots.remove(chatbot.getId()));
+    }
+    
+    /**
+     * Resume a crawl interrupted by a restart from its last checkpoint
+     */
+    public CompletableFuture<List<WebsiteContent>> resumeCrawl(CrawlJob job) {
+        Chatbot chatbot = job.getChatbot();
+        crawlingChatbots.add(chatbot.getId());
+        
+        return CompletableFuture.supplyAsync(() -> {
+            List<CrawlFrontierEntry> entries = crawlCheckpointRepository.findEntries(job.getId());
+            logger.info("Resuming crawl {} of {} with {} checkpointed URLs", 
+                job.getId(), chatbot.getWebsiteUrl(), entries.size());
             
-            try {
-                crawlWebsite(chatbot.getWebsiteUrl(), chatbot, visitedUrls, extractedContent, 0);
-                logger.info("Website analysis completed. Extracted {} pages", extractedContent.size());
-            } catch (Exception e) {
-                logger.error("Error during website analysis", e);
+            // Time spent before the interruption counts against the time budget
+            Duration elapsed = Duration.between(job.getStartedAt(), 
+                job.getCheckpointedAt() != null ? job.getCheckpointedAt() : job.getStartedAt());
+            CrawlBudget budget = new CrawlBudget(job.getMaxPages(), job.getMaxBytes(), 
+                Duration.ofMinutes(job.getMaxDurationMinutes()).minus(elapsed));
+            budget.restore(job.getPagesFetched(), job.getBytesFetched());
+            
+            CrawlSession session = newSession(chatbot, websiteContentRepository.findByChatbot(chatbot), budget);
+            session.setRobotsRules(fetchRobotsRules(chatbot.getWebsiteUrl()));
+            
+            // Restore before attaching the checkpoint so restored URLs are not written again
+            CrawlFrontier frontier = session.getFrontier();
+            for (CrawlFrontierEntry entry : entries) {
+                if (entry.getDone()) {
+                    frontier.markSeen(entry.getUrl());
+                } else {
+                    frontier.offer(entry.getUrl(), entry.getDepth(), entry.getPriority());
+                }
+            }
+            
+            attachCheckpoint(session, job.getId());
+            if (entries.isEmpty()) {
+                seedFrontier(session);
+            }
+            return session;
+        }, executorService).thenCompose(this::runWorkers).exceptionally(e -> {
+            logger.error("Error resuming crawl {}", job.getId(), e);
+            finishCrawlJob(job.getId(), null, CrawlJob.CrawlStatus.FAILED, e.getMessage());
+            return new ArrayList<>();
+        }).whenComplete((contents, e) -> crawlingChatbots.remove(chatbot.getId()));
+    }
+    
+    /**
+     * Resume crawls this node was running before it stopped, and crawls of
+     * nodes that stopped checkpointing
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedCrawls() {
+        try {
+            LocalDateTime staleBefore = LocalDateTime.now().minusMinutes(staleAfterMinutes);
+            for (CrawlJob job : crawlJobRepository.findByStatusWithChatbot(CrawlJob.CrawlStatus.RUNNING)) {
+                if (!activeCrawls.containsKey(job.getId()) && 
+                    crawlCheckpointRepository.claim(job.getId(), nodeId, staleBefore)) {
+                    resumeCrawl(job);
+                }
+            }
+        } catch (DataAccessException e) {
+            logger.error("Failed to resume interrupted crawls", e);
+        }
+    }
+    
+    /**
+     * Stop crawling and checkpoint running crawls so that they resume on
+     * restart. Pages whose fetch or parse is cut off stay incomplete in the
+     * checkpoint and are crawled again.
+     */
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        executorService.shutdownNow();
+        parseExecutor.shutdownNow();
+        activeCrawls.values().forEach(this::checkpoint);
+    }
+    
+    /**
+     * Cancel the running crawl of a chatbot. Fetches in progress are
+     * discarded: body reads stop at once, fetches still waiting for a
+     * connection or response headers at their request timeout. The pages
+     * crawled so far are kept. A crawl running on another node stops at its
+     * next checkpoint.
+     */
+    public boolean cancelCrawl(Chatbot chatbot) {
+        boolean cancelled = false;
+        for (CrawlJob job : crawlJobRepository.findByChatbotAndStatus(chatbot, CrawlJob.CrawlStatus.RUNNING)) {
+            CrawlSession session = activeCrawls.get(job.getId());
+            if (session != null) {
+                session.stop(CrawlSession.StopReason.CANCELLED);
+                cancelled = true;
+            } else if (crawlCheckpointRepository.cancel(job.getId())) {
+                crawlCheckpointRepository.deleteEntries(job.getId());
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            logger.info("Cancelled crawl of {}", chatbot.getWebsiteUrl());
+        }
+        return cancelled;
+    }
+    
+    /**
+     * The crawl of a chatbot that is running and still checkpointing, if any.
+     * A crawl that has not checkpointed yet counts from its start.
+     */
+    public Optional<CrawlJob> findRunningCrawl(Chatbot chatbot) {
+        return crawlJobRepository.findByChatbotAndStatus(chatbot, CrawlJob.CrawlStatus.RUNNING).stream()
+            .filter(job -> !isStale(job))
+            .findFirst();
+    }
+    
+    private boolean isStale(CrawlJob job) {
+        if (activeCrawls.containsKey(job.getId())) {
+            return false;
+        }
+        LocalDateTime lastSeen = job.getCheckpointedAt() != null ? job.getCheckpointedAt() : job.getStartedAt();
+        return lastSeen == null || lastSeen.isBefore(LocalDateTime.now().minusMinutes(staleAfterMinutes));
+    }
+    
+    /**
+     * Status of the most recent crawl of a chatbot, with live counters when it runs on this node
+     */
+    public Optional<Map<String, Object>> getCrawlStatus(Chatbot chatbot) {
+        return crawlJobRepository.findFirstByChatbotOrderByStartedAtDesc(chatbot).map(job -> {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("crawlId", job.getId());
+            status.put("status", job.getStatus());
+            status.put("nodeId", job.getNodeId());
+            status.put("startedAt", job.getStartedAt());
+            status.put("checkpointedAt", job.getCheckpointedAt());
+            status.put("finishedAt", job.getFinishedAt());
+            status.put("maxPages", job.getMaxPages());
+            status.put("maxBytes", job.getMaxBytes());
+            status.put("maxDurationMinutes", job.getMaxDurationMinutes());
+            
+            CrawlSession session = activeCrawls.get(job.getId());
+            if (session != null) {
+                status.put("pagesFetched", session.getPagesFetched());
+                status.put("bytesFetched", session.getBudget().getBytesFetched());
+                status.put("bytesInFlight", session.getBudget().getBytesInFlight());
+                status.put("pagesStored", pagesStored(session));
+                status.put("duplicatePages", session.getDuplicatePages());
+                status.put("queuedUrls", session.getFrontier().size());
+                status.put("pagesPerSecond", session.getPagesPerSecond());
+                status.put("bytesPerSecond", session.getBytesPerSecond());
+                status.put("parseCpuMillisPerPage", session.getParseCpuMillisPerPage());
+            } else {
+                status.put("pagesFetched", job.getPagesFetched());
+                status.put("bytesFetched", job.getBytesFetched());
+                status.put("pagesStored", job.getPagesStored());
+                status.put("duplicatePages", job.getDuplicatePages());
+                status.put("queuedUrls", job.isRunning() ? crawlCheckpointRepository.countPending(job.getId()) : 0);
+            }
+            if (job.getStopReason() != null) {
+                status.put("stopReason", job.getStopReason());
             }
+            if (job.getErrorMessage() != null) {
+                status.put("error", job.getErrorMessage());
+            }
+            return status;
+        });
+    }
+    
+    /**
+     * Re-crawl known pages of a chatbot without following their links.
+     * Returns the pages whose content changed.
+     */
+    public CompletableFuture<List<WebsiteContent>> recrawlPages(Chatbot chatbot, List<WebsiteContent> pages) {
+        return CompletableFuture.supplyAsync(() -> {
+            logger.debug("Re-crawling {} pages for chatbot {}", pages.size(), chatbot.getId());
+            
+            CrawlSession session = newSession(chatbot, pages, 
+                new CrawlBudget(pages.size(), maxCrawlBytes, Duration.ofMinutes(maxCrawlMinutes)));
+            session.setRobotsRules(fetchRobotsRules(chatbot.getWebsiteUrl()));
             
-            return extractedContent;
-        }, executorService);
+            session.getKnownContentByUrl().forEach((url, page) -> {
+                if (isValidUrl(url, session)) {
+                    session.getFrontier().offer(url, maxDepth, REVISIT_PRIORITY);
+                } else {
+                    markFailed(session, page);
+                }
+            });
+            return session;
+        }, executorService).thenCompose(this::runWorkers).exceptionally(e -> {
+            logger.error("Error during re-crawl for chatbot {}", chatbot.getId(), e);
+            return new ArrayList<>();
+        });
+    }
+    
+    private CrawlSession newSession(Chatbot chatbot, List<WebsiteContent> knownPages, CrawlBudget budget) {
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(chatbot.getWebsiteUrl(), trackingParameters);
+        RecrawlPolicy recrawlPolicy = new RecrawlPolicy(Duration.ofHours(minRecrawlIntervalHours), 
+            Duration.ofHours(maxRecrawlIntervalHours));
+        return new CrawlSession(chatbot, canonicalizer, recrawlPolicy, new CrawlWriteBuffer(writeBatchSize),
+            indexByUrl(knownPages, canonicalizer), budget);
+    }
+    
+    private static long withinLimit(Number requested, long limit) {
+        return requested != null && requested.longValue() > 0 ? Math.min(requested.longValue(), limit) : limit;
+    }
+    
+    /**
+     * Checkpoint the session's frontier changes to its crawl job
+     */
+    private void attachCheckpoint(CrawlSession session, long crawlJobId) {
+        session.setCheckpoint(new CrawlCheckpoint(crawlJobId, checkpointBatchSize, 
+            Duration.ofSeconds(checkpointIntervalSeconds), batch -> writeCheckpoint(session, batch)));
+        activeCrawls.put(crawlJobId, session);
+    }
+    
+    /**
+     * Persist a checkpoint batch. Buffered pages are written first, so a URL
+     * is never marked done before its content is stored.
+     */
+    private void writeCheckpoint(CrawlSession session, CrawlCheckpoint.Batch batch) {
+        flushWrites(session);
+        try {
+            if (!batch.getEntries().isEmpty()) {
+                crawlCheckpointRepository.insertEntries(batch.getCrawlJobId(), batch.getEntries());
+            }
+            if (!batch.getCompletedUrls().isEmpty()) {
+                crawlCheckpointRepository.markDone(batch.getCrawlJobId(), batch.getCompletedUrls());
+            }
+            boolean running = crawlCheckpointRepository.updateProgress(batch.getCrawlJobId(), 
+                session.getPagesFetched(), pagesStored(session), session.getDuplicatePages(), 
+                session.getBudget().getBytesFetched());
+            if (!running) {
+                // Cancelled through another node
+                session.stop(CrawlSession.StopReason.CANCELLED);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Failed to checkpoint crawl {} - {}", batch.getCrawlJobId(), e.getMessage());
+        }
+    }
+    
+    private void checkpoint(CrawlSession session) {
+        CrawlCheckpoint checkpoint = session.getCheckpoint();
+        if (checkpoint != null) {
+            checkpoint.flush();
+        }
+    }
+    
+    /**
+     * Record the outcome of a crawl job and drop its checkpointed frontier
+     */
+    private void finishCrawlJob(long crawlJobId, CrawlSession session, CrawlJob.CrawlStatus status, String error) {
+        activeCrawls.remove(crawlJobId);
+        try {
+            crawlCheckpointRepository.deleteEntries(crawlJobId);
+            crawlJobRepository.findById(crawlJobId).ifPresent(job -> {
+                if (session != null) {
+                    job.setPagesFetched(session.getPagesFetched());
+                    job.setBytesFetched(session.getBudget().getBytesFetched());
+                    job.setPagesStored(pagesStored(session));
+                    job.setDuplicatePages(session.getDuplicatePages());
+                    if (session.getStopReason() != null) {
+                        job.setStopReason(session.getStopReason().name());
+                    }
+                }
+                job.setCheckpointedAt(LocalDateTime.now());
+                job.finish(status, error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+                crawlJobRepository.save(job);
+            });
+        } catch (DataAccessException e) {
+            logger.error("Failed to record the end of crawl {}", crawlJobId, e);
+        }
+    }
+    
+    /**
+     * Mark running crawls of a chatbot that stopped checkpointing as failed before starting a new one
+     */
+    private void supersedeInterruptedCrawls(Chatbot chatbot) {
+        for (CrawlJob job : crawlJobRepository.findByChatbotAndStatus(chatbot, CrawlJob.CrawlStatus.RUNNING)) {
+            if (isStale(job)) {
+                finishCrawlJob(job.getId(), null, CrawlJob.CrawlStatus.FAILED, "Superseded by a new crawl");
+            }
+        }
+    }
+    
+    private static int pagesStored(CrawlSession session) {
+        CrawlWriteBuffer writes = session.getWriteBuffer();
+        return writes.getWritten(CrawlWriteBuffer.Kind.INSERTED) + writes.getWritten(CrawlWriteBuffer.Kind.UPDATED);
     }
     
     /**
-     * Recursively crawl website pages
+     * Run crawler workers until the frontier is exhausted, then flush pending writes
      */
-    private void crawlWebsite(String url, Chatbot chatbot, Set<String> visitedUrls, 
-                            List<WebsiteContent> extractedContent, int depth) {
+    private CompletableFuture<List<WebsiteContent>> runWorkers(CrawlSession session) {
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < crawlConcurrency; i++) {
+            workers.add(CompletableFuture.runAsync(() -> crawlWorker(session), executorService));
+        }
         
-        if (depth > maxDepth || visitedUrls.size() >= maxPages || visitedUrls.contains(url)) {
-            return;
+        return CompletableFuture.allOf(workers.toArray(new CompletableFuture[0]))
+            .handle((ignored, e) -> {
+                if (e != null) {
+                    logger.error("Error during website analysis", e);
+                }
+                flushWrites(session);
+                
+                CrawlCheckpoint checkpoint = session.getCheckpoint();
+                if (checkpoint != null && shuttingDown) {
+                    // Leave the job running so that it is resumed after the restart
+                    checkpoint.flush();
+                    return session.getExtractedContent();
+                }
+                if (checkpoint != null) {
+                    CrawlJob.CrawlStatus status = e != null ? CrawlJob.CrawlStatus.FAILED :
+                        session.getStopReason() == CrawlSession.StopReason.CANCELLED ? CrawlJob.CrawlStatus.CANCELLED :
+                        CrawlJob.CrawlStatus.COMPLETED;
+                    finishCrawlJob(checkpoint.getCrawlJobId(), session, status, e != null ? e.getMessage() : null);
+                }
+                
+                CrawlWriteBuffer writes = session.getWriteBuffer();
+                logger.info("Crawl of {} completed. {} pages inserted, {} updated, {} unchanged, {} duplicates", 
+                    session.getChatbot().getWebsiteUrl(),
+                    writes.getWritten(CrawlWriteBuffer.Kind.INSERTED), writes.getWritten(CrawlWriteBuffer.Kind.UPDATED),
+                    writes.getWritten(CrawlWriteBuffer.Kind.UNCHANGED), session.getDuplicatePages());
+                logger.info("Crawl of {} took {}s: {} pages/s, {} KB/s, {} ms parse CPU per page",
+                    session.getChatbot().getWebsiteUrl(), String.format("%.1f", session.getElapsedSeconds()),
+                    String.format("%.2f", session.getPagesPerSecond()), 
+                    String.format("%.1f", session.getBytesPerSecond() / 1024),
+                    String.format("%.2f", session.getParseCpuMillisPerPage()));
+                if (session.isStopped()) {
+                    logger.info("Crawl of {} stopped early: {}", session.getChatbot().getWebsiteUrl(), 
+                        session.getStopReason());
+                }
+                return session.getExtractedContent();
+            });
+    }
+    
+    /**
+     * Key stored pages by canonical URL, keeping the newest row per URL
+     */
+    private Map<String, WebsiteContent> indexByUrl(List<WebsiteContent> pages, UrlCanonicalizer canonicalizer) {
+        Map<String, WebsiteContent> knownContent = new ConcurrentHashMap<>();
+        for (WebsiteContent content : pages) {
+            String url = canonicalizer.canonicalize(content.getUrl());
+            knownContent.merge(url != null ? url : content.getUrl(), content, 
+                (a, b) -> a.getId() != null && b.getId() != null && a.getId() > b.getId() ? a : b);
+        }
+        return knownContent;
+    }
+    
+    /**
+     * Seed the frontier from robots.txt, sitemaps and previously known pages.
+     * Sitemap pages whose lastmod is newer than our last crawl come first so
+     * that they are not starved by the page budget.
+     */
+    private void seedFrontier(CrawlSession session) {
+        String rootUrl = session.getChatbot().getWebsiteUrl();
+        UrlCanonicalizer canonicalizer = session.getCanonicalizer();
+        CrawlFrontier frontier = session.getFrontier();
+        
+        session.setRobotsRules(fetchRobotsRules(rootUrl));
+        
+        String canonicalRoot = canonicalizer.canonicalize(rootUrl);
+        if (isValidUrl(canonicalRoot, session)) {
+            frontier.offer(canonicalRoot, 0, ROOT_PRIORITY);
+        }
+        
+        List<String> sitemapUrls = new ArrayList<>(session.getRobotsRules().getSitemaps());
+        if (sitemapUrls.isEmpty() && resolveUrl(rootUrl, "/sitemap.xml") != null) {
+            sitemapUrls.add(resolveUrl(rootUrl, "/sitemap.xml"));
         }
         
-        visitedUrls.add(url);
+        SitemapReader sitemapReader = new SitemapReader(userAgent, timeoutSeconds * 1000);
+        int sitemapEntries = sitemapReader.read(sitemapUrls, maxSitemapUrls, entry -> {
+            String url = canonicalizer.canonicalize(entry.getUrl());
+            if (!isValidUrl(url, session)) {
+                return;
+            }
+            double weight = entry.getPriority() != null ? entry.getPriority() : 0.5;
+            if (hasChangedSince(session.getKnownContent(url), entry.getLastModified())) {
+                frontier.offer(url, 1, CHANGED_PRIORITY + weight);
+            } else {
+                frontier.offer(url, 1, SITEMAP_PRIORITY + weight * 0.2);
+            }
+        });
+        logger.debug("Seeded {} sitemap entries for {}", sitemapEntries, rootUrl);
+        
+        // Pages behind a 304 are not parsed, so their links would otherwise be lost
+        for (String url : session.getKnownContentByUrl().keySet()) {
+            if (isValidUrl(url, session)) {
+                frontier.offer(url, 1, REVISIT_PRIORITY);
+            }
+        }
+    }
+    
+    /**
+     * Fetch and parse the site's robots.txt; a missing or unreadable file allows everything
+     */
+    private RobotsRules fetchRobotsRules(String rootUrl) {
+        String robotsUrl = resolveUrl(rootUrl, "/robots.txt");
+        if (robotsUrl == null) {
+            return RobotsRules.allowAll();
+        }
         
         try {
-            Document document = Jsoup.connect(url)
+            Connection.Response response = Jsoup.connect(robotsUrl)
                 .userAgent(userAgent)
                 .timeout(timeoutSeconds * 1000)
-                .followRedirects(true)
-                .get();
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .execute();
             
-            // Extract content from current page
-            WebsiteContent content = extractPageContent(chatbot, url, document);
-            if (content != null && isValidContent(content)) {
-                extractedContent.add(content);
-                websiteContentRepository.save(content);
-                logger.debug("Extracted content from: {}", url);
+            if (response.statusCode() == 200) {
+                return RobotsRules.parse(response.body(), userAgent);
             }
+            logger.debug("No robots.txt for {} - HTTP {}", rootUrl, response.statusCode());
             
-            // Find and crawl linked pages
-            if (depth < maxDepth) {
-                Elements links = document.select("a[href]");
-                List<CompletableFuture<Void>> futures = new ArrayList<>();
+        } catch (IOException e) {
+            logger.debug("Failed to read robots.txt for {} - {}", rootUrl, e.getMessage());
+        }
+        
+        return RobotsRules.allowAll();
+    }
+    
+    private String resolveUrl(String baseUrl, String path) {
+        try {
+            return new URL(new URL(baseUrl), path).toString();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Take tasks from the frontier and fetch them until the crawl is finished.
+     * Fetched pages are handed to the parse pool, which completes their tasks.
+     */
+    private void crawlWorker(CrawlSession session) {
+        CrawlFrontier frontier = session.getFrontier();
+        
+        try {
+            while (!frontier.isFinished() && !session.isStopped() && !shuttingDown) {
+                if (session.getBudget().isExpired()) {
+                    session.stop(CrawlSession.StopReason.TIME_BUDGET);
+                    break;
+                }
                 
-                for (Element link : links) {
-                    String href = link.attr("abs:href");
-                    if (isValidUrl(href, chatbot.getWebsiteUrl())) {
-                        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> 
-                            crawlWebsite(href, chatbot, visitedUrls, extractedContent, depth + 1)
-                        );
-                        futures.add(future);
-                    }
+                CrawlTask task = frontier.poll(FRONTIER_POLL_MILLIS);
+                if (task == null) {
+                    continue;
                 }
                 
-                // Wait for all parallel crawls to complete
-                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+                boolean handedOff = false;
+                try {
+                    if (session.tryAcquirePage()) {
+                        FetchedPage page = fetchPage(session, task);
+                        if (page != null) {
+                            handOff(session, page);
+                            handedOff = true;
+                        }
+                    } else {
+                        session.stop(CrawlSession.StopReason.PAGE_BUDGET);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Failed to crawl URL: {} - {}", task.getUrl(), e.getMessage());
+                } finally {
+                    // A fetch cut off by shutdown stays incomplete so that it is fetched again on resume
+                    if (!handedOff && !shuttingDown) {
+                        frontier.complete(task);
+                    }
+                }
             }
             
-        } catch (IOException e) {
-            logger.warn("Failed to crawl URL: {} - {}", url, e.getMessage());
+            // A stopped crawl ends before its frontier drains; let pages already fetched finish
+            session.awaitParsing();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
     
     /**
-     * Extract content from a single page
+     * Queue a fetched page for parsing, blocking while the parse queue is full
      */
-    private WebsiteContent extractPageContent(Chatbot chatbot, String url, Document document) {
+    private void handOff(CrawlSession session, FetchedPage page) {
+        session.beginParse();
         try {
-            // Remove unwanted elements
-            for (String selector : SKIP_SELECTORS) {
-                document.select(selector).remove();
-            }
+            parseExecutor.execute(() -> {
+                try {
+                    processPage(session, page);
+                } catch (Exception e) {
+                    logger.warn("Failed to process URL: {} - {}", page.getTask().getUrl(), e.getMessage());
+                } finally {
+                    if (!shuttingDown) {
+                        session.getFrontier().complete(page.getTask());
+                    }
+                    session.endParse();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            session.endParse();
+            throw e;
+        }
+    }
+    
+    /**
+     * Fetch a single page. Responses that need no parsing (not modified,
+     * errors, unsupported content) are handled here and yield null.
+     */
+    private FetchedPage fetchPage(CrawlSession session, CrawlTask task) {
+        String url = task.getUrl();
+        WebsiteContent previous = session.getKnownContent(url);
+        
+        // Reserve the body up front so that concurrent fetches cannot overshoot the byte budget
+        CrawlBudget budget = session.getBudget();
+        int pageLimit = PDF_PATTERN.matcher(url).matches() ? maxPdfBodyBytes() : maxBodyBytes;
+        long granted;
+        try {
+            granted = budget.reserveBytes(pageLimit, budget.getRemainingTime().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            session.releasePage();
+            return null;
+        }
+        if (granted == 0) {
+            session.releasePage();
+            session.stop(budget.isBytesExhausted()
+                ? CrawlSession.StopReason.BYTE_BUDGET : CrawlSession.StopReason.TIME_BUDGET);
+            return null;
+        }
+        byte[] body = null;
+        
+        try {
+            Connection connection = Jsoup.connect(url)
+                .userAgent(userAgent)
+                .timeout(fetchTimeoutMillis(session))
+                .followRedirects(true)
+                .ignoreHttpErrors(true)
+                .ignoreContentType(true)
+                .maxBodySize((int) granted);
             
-            // Extract title
-            String title = document.title();
-            if (title == null || title.trim().isEmpty()) {
-                title = extractTitleFromContent(document);
+            if (previous != null) {
+                if (previous.getEtag() != null) {
+                    connection.header("If-None-Match", previous.getEtag());
+                }
+                if (previous.getLastModified() != null) {
+                    connection.header("If-Modified-Since", previous.getLastModified());
+                }
             }
             
-            // Extract main content
-            String content = extractMainContent(document);
+            Connection.Response response;
+            String contentType;
+            session.beginFetch();
+            try {
+                response = connection.execute();
+                contentType = response.contentType() != null ? response.contentType().toLowerCase(Locale.ROOT) : "";
+                if (response.statusCode() < 300 && isSupportedContentType(contentType)) {
+                    body = response.bodyAsBytes();
+                }
+            } finally {
+                session.endFetch();
+            }
             
-            // Extract metadata
-            String metaDescription = extractMetaDescription(document);
-            String metaKeywords = extractMetaKeywords(document);
-            String language = extractLanguage(document);
+            if (session.isAborted()) {
+                logger.debug("Discarding {} - crawl stopped", url);
+                return null;
+            }
+            if (body != null && body.length >= granted && granted < pageLimit) {
+                // Cut off by the byte budget rather than by the page size limit: this fetch
+                // was granted all that was left, so the budget is now used up
+                session.stop(CrawlSession.StopReason.BYTE_BUDGET);
+                return null;
+            }
             
-            if (content == null || content.trim().length() < 100) {
-                return null; // Skip pages with insufficient content
+            if (response.statusCode() == HTTP_NOT_MODIFIED && previous != null) {
+                markUnchanged(session, previous, response);
+                logger.debug("Not modified: {}", url);
+                return null;
             }
             
-            WebsiteContent websiteContent = new WebsiteContent(chatbot, url, title, content);
-            websiteContent.setMetaDescription(metaDescription);
-            websiteContent.setMetaKeywords(metaKeywords);
-            websiteContent.setLanguage(language);
+            if (response.statusCode() >= 400) {
+                logger.warn("Failed to crawl URL: {} - HTTP {}", url, response.statusCode());
+                markFailed(session, previous);
+                return null;
+            }
             
-            return websiteContent;
+            if (body == null) {
+                logger.debug("Skipping {} - HTTP {}, content type {}", url, response.statusCode(), contentType);
+                return null;
+            }
+            return new FetchedPage(task, previous, response, body, contentType);
             
-        } catch (Exception e) {
-            logger.error("Error extracting content from: {}", url, e);
+        } catch (IOException e) {
+            // Failures caused by stopping the crawl or the node say nothing about the page
+            if (!session.isAborted() && !shuttingDown) {
+                logger.warn("Failed to crawl URL: {} - {}", url, e.getMessage());
+                markFailed(session, previous);
+            }
             return null;
+        } finally {
+            budget.settleBytes(granted, body != null ? body.length : 0);
         }
     }
     
     /**
-     * Extract main content from the page
+     * Parse a fetched page, store it if it changed and enqueue its links
      */
-    private String extractMainContent(Document document) {
-        // Try to find main content area
-        Element mainContent = document.select("main").first();
-        if (mainContent == null) {
-            mainContent = document.select("article").first();
+    private void processPage(CrawlSession session, FetchedPage page) {
+        CrawlTask task = page.getTask();
+        String url = task.getUrl();
+        Chatbot chatbot = session.getChatbot();
+        WebsiteContent previous = page.getPrevious();
+        Connection.Response response = page.getResponse();
+        
+        try {
+            if (page.getContentType().startsWith("application/pdf")) {
+                crawlPdf(session, url, previous, response, page.getBody());
+                return;
+            }
+            
+            String contentHash = sha256Hex(page.getBody());
+            long parseStart = currentThreadCpuNanos();
+            Document document = response.parse();
+            
+            // Collect links before extraction strips navigation from the document
+            List<String> links = task.getDepth() < maxDepth ? extractLinks(document, session) : List.of();
+            session.recordParse(currentThreadCpuNanos() - parseStart, true);
+            enqueueLinks(session, links, task.getDepth());
+            
+            // Store the page under its canonical URL (rel=canonical or redirect target)
+            String canonicalUrl = findCanonicalUrl(document, response, session);
+            if (canonicalUrl != null && !canonicalUrl.equals(url)) {
+                if (!session.getFrontier().markSeen(canonicalUrl)) {
+                    session.recordDuplicate();
+                    logger.debug("Skipping {} - canonical URL {} is crawled separately", url, canonicalUrl);
+                    return;
+                }
+                url = canonicalUrl;
+                if (session.getKnownContent(canonicalUrl) != null) {
+                    previous = session.getKnownContent(canonicalUrl);
+                }
+            }
+            
+            if (previous != null && contentHash.equals(previous.getContentHash())) {
+                markUnchanged(session, previous, response);
+                logger.debug("Unchanged content: {}", url);
+                return;
+            }
+            
+            long extractStart = currentThreadCpuNanos();
+            WebsiteContent content = extractPageContent(chatbot, url, document);
+            session.recordParse(currentThreadCpuNanos() - extractStart, false);
+            if (content == null || !isValidContent(content)) {
+                return;
+            }
+            
+            String textHash = sha256Hex(content.getContent().getBytes(StandardCharsets.UTF_8));
+            if (!session.registerFingerprint(textHash)) {
+                session.recordDuplicate();
+                logger.debug("Skipping {} - same text as another page", url);
+                return;
+            }
+            content.setTextHash(textHash);
+            
+            WebsiteContent stored = previous != null ? applyChanges(previous, content) : content;
+            applyCrawlMetadata(stored, response, contentHash);
+            session.getRecrawlPolicy().recordCheck(stored, true, baseRecrawlInterval(chatbot));
+            session.getExtractedContent().add(stored);
+            persist(session, previous != null ? CrawlWriteBuffer.Kind.UPDATED : CrawlWriteBuffer.Kind.INSERTED, stored);
+            logger.debug("Extracted content from: {}", url);
+            
+        } catch (IOException e) {
+            logger.warn("Failed to crawl URL: {} - {}", url, e.getMessage());
+            markFailed(session, previous);
         }
-        if (mainContent == null) {
-            mainContent = document.select(".content, .main-content, #content, #main").first();
+    }
+    
+    private static long currentThreadCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+    
+    private static boolean isSupportedContentType(String contentType) {
+        return contentType.isEmpty() || contentType.startsWith("application/pdf") || 
+            contentType.contains("html") || contentType.contains("xml");
+    }
+    
+    /**
+     * Request timeout, shortened so that no fetch outlives the crawl's time budget
+     */
+    private int fetchTimeoutMillis(CrawlSession session) {
+        long remaining = session.getBudget().getRemainingTime().toMillis();
+        return (int) Math.max(1, Math.min(timeoutSeconds * 1000L, remaining));
+    }
+    
+    /**
+     * Ingest a linked PDF into the vector store unless it is unchanged
+     */
+    private void crawlPdf(CrawlSession session, String url, WebsiteContent previous, 
+                          Connection.Response response, byte[] body) throws IOException {
+        String contentHash = sha256Hex(body);
+        
+        if (previous != null && contentHash.equals(previous.getContentHash())) {
+            markUnchanged(session, previous, response);
+            logger.debug("Unchanged document: {}", url);
+            return;
         }
-        if (mainContent == null) {
-            mainContent = document.body();
+        if (!session.registerFingerprint(contentHash)) {
+            session.recordDuplicate();
+            logger.debug("Skipping {} - same document as another URL", url);
+            return;
         }
         
-        // Extract text content
-        String content = mainContent.text();
+        Chatbot chatbot = session.getChatbot();
+        String fileName = url.substring(url.lastIndexOf('/') + 1);
+        DocumentIngestionService.IngestionResult result = 
+            documentIngestionService.ingestPdf(chatbot, url, fileName.isEmpty() ? url : fileName, body, previous);
         
-        // Clean up the content
-        content = content.replaceAll("\\s+", " ").trim();
+        WebsiteContent content = documentIngestionService.toContent(chatbot, url, result, previous);
+        applyCrawlMetadata(content, response, contentHash);
+        content.setTextHash(contentHash);
+        session.getRecrawlPolicy().recordCheck(content, true, baseRecrawlInterval(chatbot));
+        documentIngestionService.saveContent(content);
         
-        return content;
+        session.getExtractedContent().add(content);
+        session.getWriteBuffer().recordWritten(
+            previous != null ? CrawlWriteBuffer.Kind.UPDATED : CrawlWriteBuffer.Kind.INSERTED, 1);
+    }
+    
+    /**
+     * Body limit for PDF downloads, one byte over the ingestion limit so oversized files are detected
+     */
+    private int maxPdfBodyBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, documentIngestionService.getMaxBytes() + 1);
     }
     
     /**
-     * Extract title from content if page title is missing
+     * Find crawlable links on a page, in canonical form
      */
-    private String extractTitleFromContent(Document document) {
-        Element h1 = document.select("h1").first();
-        if (h1 != null) {
-            return h1.text();
+    private List<String> extractLinks(Document document, CrawlSession session) {
+        List<String> links = new ArrayList<>();
+        for (Element link : document.select("a[href]")) {
+            String href = session.getCanonicalizer().canonicalize(link.attr("abs:href"));
+            if (isValidUrl(href, session)) {
+                links.add(href);
+            }
         }
-        
-        Element title = document.select("title").first();
-        if (title != null) {
-            return title.text();
+        return links;
+    }
+    
+    private void enqueueLinks(CrawlSession session, List<String> links, int depth) {
+        for (String link : links) {
+            session.getFrontier().offer(link, depth + 1, LINK_PRIORITY - depth * 0.1);
         }
-        
-        return "Untitled Page";
     }
     
     /**
-     * Extract meta description
+     * The canonical URL declared by the page, or the URL we were redirected to
+     */
+    private String findCanonicalUrl(Document document, Connection.Response response, CrawlSession session) {
+        Element canonicalLink = document.selectFirst("link[rel=canonical][href]");
+        String candidate = canonicalLink != null ? canonicalLink.attr("abs:href") : response.url().toString();
+        String canonicalUrl = session.getCanonicalizer().canonicalize(candidate);
+        return isValidUrl(canonicalUrl, session) ? canonicalUrl : null;
+    }
+    
+    /**
+     * Record a re-crawl that found no change, keeping the stored content and index entry
+     */
+    private void markUnchanged(CrawlSession session, WebsiteContent previous, Connection.Response response) {
+        if (previous.getTextHash() != null) {
+            session.registerFingerprint(previous.getTextHash());
+        }
+        if (response.header("ETag") != null) {
+            previous.setEtag(response.header("ETag"));
+        }
+        if (response.header("Last-Modified") != null) {
+            previous.setLastModified(response.header("Last-Modified"));
+        }
+        previous.setLastCrawledAt(LocalDateTime.now());
+        session.getRecrawlPolicy().recordCheck(previous, false, baseRecrawlInterval(session.getChatbot()));
+        persist(session, CrawlWriteBuffer.Kind.UNCHANGED, previous);
+    }
+    
+    /**
+     * Back off a known page that could not be crawled so it does not stay due forever
+     */
+    private void markFailed(CrawlSession session, WebsiteContent previous) {
+        if (previous == null || previous.getId() == null) {
+            return;
+        }
+        session.getRecrawlPolicy().recordCheck(previous, false, baseRecrawlInterval(session.getChatbot()));
+        persist(session, CrawlWriteBuffer.Kind.UNCHANGED, previous);
+    }
+    
+    private Duration baseRecrawlInterval(Chatbot chatbot) {
+        Integer hours = chatbot.getRecrawlIntervalHours();
+        return Duration.ofHours(hours != null && hours > 0 ? hours : DEFAULT_RECRAWL_INTERVAL_HOURS);
+    }
+    
+    /**
+     * Buffer a page write, writing a JDBC batch once enough pages are pending
+     */
+    private void persist(CrawlSession session, CrawlWriteBuffer.Kind kind, WebsiteContent content) {
+        List<WebsiteContent> batch = session.getWriteBuffer().add(kind, content);
+        if (!batch.isEmpty()) {
+            writeBatch(session, kind, batch);
+        }
+    }
+    
+    /**
+     * Write everything still buffered for the crawl
+     */
+    private void flushWrites(CrawlSession session) {
+        session.getWriteBuffer().drainAll().forEach((kind, batch) -> writeBatch(session, kind, batch));
+    }
+    
+    private void writeBatch(CrawlSession session, CrawlWriteBuffer.Kind kind, List<WebsiteContent> batch) {
+        try {
+            switch (kind) {
+                case INSERTED -> websiteContentBatchRepository.insertAll(batch);
+                case UPDATED -> websiteContentBatchRepository.updateAll(batch);
+                case UNCHANGED -> websiteContentBatchRepository.touchAll(batch);
+            }
+            session.getWriteBuffer().recordWritten(kind, batch.size());
+        } catch (DataAccessException e) {
+            logger.error("Failed to write {} {} pages for chatbot {}", batch.size(), kind, session.getChatbot().getId(), e);
+        }
+    }
+    
+    /**
+     * Copy freshly extracted content onto the stored entity and queue it for re-indexing
      */
-    private String extractMetaDescription(Document document) {
-        Element metaDesc = document.select("meta[name=description]").first();
-        return metaDesc != null ? metaDesc.attr("content") : null;
+    private WebsiteContent applyChanges(WebsiteContent previous, WebsiteContent extracted) {
+        previous.setUrl(extracted.getUrl());
+        previous.setTitle(extracted.getTitle());
+        previous.setContent(extracted.getContent());
+        previous.setMetaDescription(extracted.getMetaDescription());
+        previous.setMetaKeywords(extracted.getMetaKeywords());
+        previous.setLanguage(extracted.getLanguage());
+        previous.setTextHash(extracted.getTextHash());
+        previous.setIsIndexed(false);
+        return previous;
     }
     
     /**
-     * Extract meta keywords
+     * Store the validators needed for the next conditional request
      */
-    private String extractMetaKeywords(Document document) {
-        Element metaKeywords = document.select("meta[name=keywords]").first();
-        return metaKeywords != null ? metaKeywords.attr("content") : null;
+    private void applyCrawlMetadata(WebsiteContent content, Connection.Response response, String contentHash) {
+        content.setEtag(response.header("ETag"));
+        content.setLastModified(response.header("Last-Modified"));
+        content.setContentHash(contentHash);
+        content.setLastCrawledAt(LocalDateTime.now());
     }
     
     /**
-     * Extract page language
+     * Whether the sitemap reports a modification after our last crawl of the page
      */
-    private String extractLanguage(Document document) {
-        Element html = document.select("html").first();
-        if (html != null) {
-            String lang = html.attr("lang");
-            if (!lang.isEmpty()) {
-                return lang.substring(0, 2); // Extract language code
+    private boolean hasChangedSince(WebsiteContent previous, Instant lastmod) {
+        if (previous == null || previous.getLastCrawledAt() == null) {
+            return true;
+        }
+        return lastmod != null && lastmod.isAfter(previous.getLastCrawledAt().atZone(ZoneId.systemDefault()).toInstant());
+    }
+    
+    private static String sha256Hex(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Extract content from a single page
+     */
+    private WebsiteContent extractPageContent(Chatbot chatbot, String url, Document document) {
+        try {
+            ExtractedPage page = new HtmlContentExtractor(maxTextLength).extract(document);
+            
+            if (page.getText().length() < 100) {
+                return null; // Skip pages with insufficient content
             }
+            if (page.isTruncated()) {
+                logger.debug("Truncated content of {} to {} characters", url, maxTextLength);
+            }
+            
+            WebsiteContent websiteContent = new WebsiteContent(chatbot, url, page.getTitle(), page.getText(), page.getWordCount());
+            websiteContent.setMetaDescription(page.getMetaDescription());
+            websiteContent.setMetaKeywords(page.getMetaKeywords());
+            websiteContent.setLanguage(page.getLanguage());
+            
+            return websiteContent;
+            
+        } catch (Exception e) {
+            logger.error("Error extracting content from: {}", url, e);
+            return null;
         }
-        return "en"; // Default to English
     }
     
     /**
-     * Check if URL is valid for crawling
+     * Check if URL is valid for crawling and allowed by robots.txt
      */
-    private boolean isValidUrl(String url, String baseUrl) {
+    private boolean isValidUrl(String url, CrawlSession session) {
         if (url == null || url.isEmpty()) {
             return false;
         }
         
         try {
             URL urlObj = new URL(url);
-            URL baseUrlObj = new URL(baseUrl);
+            URL baseUrlObj = new URL(session.getChatbot().getWebsiteUrl());
             
             // Check if it's the same domain
-            if (!urlObj.getHost().equals(baseUrlObj.getHost())) {
+            if (!urlObj.getHost().equalsIgnoreCase(baseUrlObj.getHost())) {
                 return false;
             }
             
@@ -270,7 +1169,7 @@ public class WebsiteAnalysisService {
                 return false;
             }
             
-            return true;
+            return session.getRobotsRules().isAllowed(urlObj);
             
         } catch (Exception e) {
             return false;
@@ -289,14 +1188,16 @@ public class WebsiteAnalysisService {
     /**
      * Get analysis statistics
      */
+    @ReplicaTransactional
     public Map<String, Object> getAnalysisStats(Chatbot chatbot) {
-        List<WebsiteContent> contents = websiteContentRepository.findByChatbot(chatbot);
+        // Aggregated in the database; no page rows or bodies are loaded
+        WebsiteContentRepository.ContentStats contentStats = websiteContentRepository.getContentStatsByChatbot(chatbot);
         
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalPages", contents.size());
-        stats.put("totalWords", contents.stream().mapToInt(WebsiteContent::getWordCount).sum());
-        stats.put("totalCharacters", contents.stream().mapToInt(WebsiteContent::getContentLength).sum());
-        stats.put("indexedPages", contents.stream().mapToInt(c -> c.getIsIndexed() ? 1 : 0).sum());
+        stats.put("totalPages", contentStats.getTotalPages() != null ? contentStats.getTotalPages() : 0L);
+        stats.put("totalWords", contentStats.getTotalWords() != null ? contentStats.getTotalWords() : 0L);
+        stats.put("totalCharacters", contentStats.getTotalCharacters() != null ? contentStats.getTotalCharacters() : 0L);
+        stats.put("indexedPages", contentStats.getIndexedPages() != null ? contentStats.getIndexedPages() : 0L);
         
         return stats;
     }
@@ -0,0 +1,165 @@
+package com.noupe.chatbot.service.analytics;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Log-linear histogram of latencies in milliseconds, in the spirit of
+ * HdrHistogram: values below 32 are counted exactly, larger values in 16
+ * linear sub-buckets per power of two, so every percentile is reported within
+ * about 6% of the recorded value while the histogram has a fixed size of 448
+ * counters (up to {@link Integer#MAX_VALUE} ms).
+ *
+ * Histograms can be merged, and are encoded to a few hundred bytes by storing
+ * only the non-empty buckets as varints.
+ */
+public class LatencyHistogram {
+    
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_TRACKABLE_VALUE = Integer.MAX_VALUE;
+    
+    static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_VALUE) + 1;
+    
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long maxValue;
+    
+    /**
+     * Count one value; negative values count as 0, values beyond the trackable range as the maximum
+     */
+    public synchronized void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), MAX_TRACKABLE_VALUE);
+        counts[indexOf(clamped)]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, clamped);
+    }
+    
+    /**
+     * Add all counts of another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        long[] otherCounts;
+        long otherMax;
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherMax = other.maxValue;
+        }
+        synchronized (this) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += otherCounts[i];
+                totalCount += otherCounts[i];
+            }
+            maxValue = Math.max(maxValue, otherMax);
+        }
+    }
+    
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+    
+    public synchronized long getMaxValue() {
+        return maxValue;
+    }
+    
+    /**
+     * Smallest recorded value such that the given percentage of all values is
+     * at or below it, reported as the upper end of its bucket; 0 when empty
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double fraction = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+        long target = Math.max(1, (long) Math.ceil(fraction * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return Math.min(highestValueOf(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+    
+    /**
+     * Compact binary form: the maximum, then (index gap, count) pairs of the non-empty buckets, all as varints
+     */
+    public synchronized byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarLong(out, maxValue);
+        int previous = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] > 0) {
+                writeVarLong(out, i - previous);
+                writeVarLong(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Rebuild a histogram from its {@link #encode()} form
+     */
+    public static LatencyHistogram decode(byte[] data) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int[] position = {0};
+        histogram.maxValue = readVarLong(data, position);
+        int index = -1;
+        while (position[0] < data.length) {
+            index += (int) readVarLong(data, position);
+            long count = readVarLong(data, position);
+            if (index < 0 || index >= BUCKET_COUNT) {
+                throw new IllegalArgumentException("Invalid histogram bucket: " + index);
+            }
+            histogram.counts[index] += count;
+            histogram.totalCount += count;
+        }
+        return histogram;
+    }
+    
+    static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    static long highestValueOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int offset = index - LINEAR_BUCKETS;
+        int shift = offset / SUB_BUCKETS + 1;
+        long subBucket = offset % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+    
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+    
+    private static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (position[0] >= data.length || shift > 63) {
+                throw new IllegalArgumentException("Truncated histogram data");
+            }
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.noupe.chatbot.service.archive;
+
+import java.time.LocalDateTime;
+
+/**
+ * Index entry of one conversation in an archive segment: the message time
+ * range and the position of its gzip member in the segment data file
+ */
+public record ArchiveIndexEntry(long conversationId, LocalDateTime firstMessageAt, LocalDateTime lastMessageAt,
+                                long messageCount, long offset, long length) {
+    
+    /**
+     * Whether any message of the conversation may fall into [from, to); either bound may be null
+     */
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return (from == null || !lastMessageAt.isBefore(from)) && (to == null || firstMessageAt.isBefore(to));
+    }
+    
+    String toLine() {
+        return conversationId + "\t" + firstMessageAt + "\t" + lastMessageAt + "\t" 
+            + messageCount + "\t" + offset + "\t" + length;
+    }
+    
+    static ArchiveIndexEntry parse(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Invalid archive index line: " + line);
+        }
+        return new ArchiveIndexEntry(Long.parseLong(fields[0]), LocalDateTime.parse(fields[1]), 
+            LocalDateTime.parse(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]), 
+            Long.parseLong(fields[5]));
+    }
+}
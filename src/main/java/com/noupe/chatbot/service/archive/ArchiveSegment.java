@@ -0,0 +1,81 @@
+package com.noupe.chatbot.service.archive;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A committed archive segment: a data file of concatenated gzip members,
+ * one per conversation, each holding the conversation's messages as NDJSON,
+ * and an index file with one {@link ArchiveIndexEntry} per conversation.
+ *
+ * A segment is only visible once its index exists, and the index is written
+ * last, so readers never see a partially written segment.
+ */
+public class ArchiveSegment {
+    
+    static final String DATA_SUFFIX = ".ndjson.gz";
+    static final String INDEX_SUFFIX = ".idx";
+    
+    private final Path dataFile;
+    private final Path indexFile;
+    
+    ArchiveSegment(Path directory, String name) {
+        this.dataFile = directory.resolve(name + DATA_SUFFIX);
+        this.indexFile = directory.resolve(name + INDEX_SUFFIX);
+    }
+    
+    /**
+     * Committed segments in a directory, oldest first; none if the directory does not exist
+     */
+    public static List<ArchiveSegment> list(Path directory) throws IOException {
+        List<ArchiveSegment> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(INDEX_SUFFIX))
+                .sorted()
+                .forEach(name -> segments.add(
+                    new ArchiveSegment(directory, name.substring(0, name.length() - INDEX_SUFFIX.length()))));
+        }
+        return segments;
+    }
+    
+    public List<ArchiveIndexEntry> readIndex() throws IOException {
+        List<ArchiveIndexEntry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                entries.add(ArchiveIndexEntry.parse(line));
+            }
+        }
+        return entries;
+    }
+    
+    /**
+     * Open the NDJSON messages of one conversation of this segment
+     */
+    public BufferedReader openConversation(ArchiveIndexEntry entry) throws IOException {
+        byte[] member = new byte[Math.toIntExact(entry.length())];
+        try (RandomAccessFile file = new RandomAccessFile(dataFile.toFile(), "r")) {
+            file.seek(entry.offset());
+            file.readFully(member);
+        }
+        return new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new ByteArrayInputStream(member)), StandardCharsets.UTF_8));
+    }
+    
+    Path getDataFile() {
+        return dataFile;
+    }
+    
+    Path getIndexFile() {
+        return indexFile;
+    }
+}
@@ -0,0 +1,138 @@
+package com.noupe.chatbot.service.archive;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes one {@link ArchiveSegment}. Messages must be appended grouped by
+ * conversation; every conversation becomes its own gzip member so that it
+ * can be read without decompressing the rest of the segment.
+ *
+ * Both files are written under temporary names and moved into place on
+ * {@link #commit()}, the index last. Closing an uncommitted writer deletes
+ * what was written.
+ */
+public class ArchiveSegmentWriter implements Closeable {
+    
+    private static final String TEMP_SUFFIX = ".tmp";
+    
+    private final ArchiveSegment segment;
+    private final Path tempDataFile;
+    private final CountingOutputStream data;
+    private final List<ArchiveIndexEntry> entries = new ArrayList<>();
+    
+    private GZIPOutputStream member;
+    private long conversationId;
+    private long memberOffset;
+    private long messageCount;
+    private LocalDateTime firstMessageAt;
+    private LocalDateTime lastMessageAt;
+    private boolean committed;
+    
+    public ArchiveSegmentWriter(Path directory, String name) throws IOException {
+        Files.createDirectories(directory);
+        this.segment = new ArchiveSegment(directory, name);
+        this.tempDataFile = segment.getDataFile().resolveSibling(segment.getDataFile().getFileName() + TEMP_SUFFIX);
+        this.data = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(tempDataFile), 64 * 1024));
+    }
+    
+    /**
+     * Append one message, serialized as a single JSON line without the line break
+     */
+    public void append(long conversationId, LocalDateTime createdAt, byte[] json) throws IOException {
+        if (member == null || conversationId != this.conversationId) {
+            finishMember();
+            this.memberOffset = data.count;
+            this.member = new GZIPOutputStream(data, 8192);
+            this.conversationId = conversationId;
+            this.messageCount = 0;
+            this.firstMessageAt = createdAt;
+        }
+        member.write(json);
+        member.write('\n');
+        messageCount++;
+        lastMessageAt = createdAt;
+    }
+    
+    public int getConversationCount() {
+        return entries.size() + (member != null ? 1 : 0);
+    }
+    
+    /**
+     * Make the segment visible to readers
+     */
+    public ArchiveSegment commit() throws IOException {
+        finishMember();
+        data.flush();
+        data.closeFile();
+        
+        Path tempIndexFile = segment.getIndexFile().resolveSibling(segment.getIndexFile().getFileName() + TEMP_SUFFIX);
+        try (BufferedWriter index = Files.newBufferedWriter(tempIndexFile, StandardCharsets.UTF_8)) {
+            for (ArchiveIndexEntry entry : entries) {
+                index.write(entry.toLine());
+                index.newLine();
+            }
+        }
+        Files.move(tempDataFile, segment.getDataFile(), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(tempIndexFile, segment.getIndexFile(), StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+        return segment;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            data.closeFile();
+            Files.deleteIfExists(tempDataFile);
+        }
+    }
+    
+    private void finishMember() throws IOException {
+        if (member == null) {
+            return;
+        }
+        member.finish();
+        entries.add(new ArchiveIndexEntry(conversationId, firstMessageAt, lastMessageAt, messageCount, 
+            memberOffset, data.count - memberOffset));
+        member = null;
+    }
+    
+    /**
+     * Tracks the position in the data file; closing it leaves the file open for the next member
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        
+        private long count;
+        
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        
+        @Override
+        public void close() {
+        }
+        
+        void closeFile() throws IOException {
+            out.close();
+        }
+    }
+}
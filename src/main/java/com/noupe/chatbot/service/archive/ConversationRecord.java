@@ -0,0 +1,107 @@
+package com.noupe.chatbot.service.archive;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.noupe.chatbot.model.CompressedText;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * One exported or archived message together with its conversation, as a
+ * flat record of {@link #COLUMNS} values. Numbers are longs, timestamps ISO
+ * strings, everything else strings; any value may be null.
+ */
+public final class ConversationRecord {
+    
+    public static final String[] COLUMNS = {
+        "conversationId", "sessionId", "userLanguage", "conversationStartedAt", "conversationEndedAt",
+        "messageId", "role", "type", "content", "responseTimeMs", "createdAt"
+    };
+    
+    private static final int CONVERSATION_ID = 0;
+    private static final int MESSAGE_ID = 5;
+    private static final int RESPONSE_TIME_MS = 9;
+    private static final int CREATED_AT = 10;
+    
+    private final Object[] values;
+    
+    private ConversationRecord(Object[] values) {
+        this.values = values;
+    }
+    
+    /**
+     * Read the current row of a result set with the columns selected by the export queries
+     */
+    public static ConversationRecord fromRow(ResultSet rs) throws SQLException {
+        return new ConversationRecord(new Object[] {
+            rs.getLong("conversation_id"),
+            rs.getString("session_id"),
+            rs.getString("user_language"),
+            toIsoString(rs.getTimestamp("conversation_created_at")),
+            toIsoString(rs.getTimestamp("conversation_ended_at")),
+            rs.getLong("message_id"),
+            rs.getBoolean("is_user_message") ? "user" : "assistant",
+            rs.getString("type"),
+            CompressedText.decode(rs.getBytes("stored_content"), rs.getString("content")),
+            rs.getLong("response_time_ms"),
+            toIsoString(rs.getTimestamp("created_at"))
+        });
+    }
+    
+    /**
+     * Read a record from the JSON object written by {@link #writeJson(JsonGenerator)}
+     */
+    public static ConversationRecord fromJson(JsonNode node) {
+        Object[] values = new Object[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            JsonNode value = node.get(COLUMNS[i]);
+            if (value == null || value.isNull()) {
+                continue;
+            }
+            boolean numeric = i == CONVERSATION_ID || i == MESSAGE_ID || i == RESPONSE_TIME_MS;
+            values[i] = numeric ? (Object) value.asLong() : value.asText();
+        }
+        return new ConversationRecord(values);
+    }
+    
+    /**
+     * Write the record as one JSON object
+     */
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            generator.writeFieldName(COLUMNS[i]);
+            if (values[i] == null) {
+                generator.writeNull();
+            } else if (values[i] instanceof Long number) {
+                generator.writeNumber(number);
+            } else {
+                generator.writeString(values[i].toString());
+            }
+        }
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Values in {@link #COLUMNS} order
+     */
+    public Object[] getValues() {
+        return values;
+    }
+    
+    public long getConversationId() {
+        return (Long) values[CONVERSATION_ID];
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return values[CREATED_AT] != null ? LocalDateTime.parse((String) values[CREATED_AT]) : null;
+    }
+    
+    private static String toIsoString(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+    }
+}
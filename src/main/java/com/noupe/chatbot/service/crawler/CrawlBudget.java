@@ -0,0 +1,144 @@
+package com.noupe.chatbot.service.crawler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Page, byte and wall-clock limits of a single crawl.
+ *
+ * Pages are counted when a fetch starts and bytes when its body has been
+ * read, and concurrent workers cannot overshoot either limit: before a fetch
+ * its worker reserves the most the body may take, and the body is cut off at
+ * that reservation. Reservations of fetches in progress count against the
+ * byte limit but not as fetched; a worker that finds them holding the rest of
+ * the budget waits for them to settle instead of giving up, so the byte limit
+ * ends a crawl only once bytes actually read have reached it.
+ */
+public class CrawlBudget {
+    
+    private final int maxPages;
+    private final long maxBytes;
+    private final Instant deadline;
+    private final AtomicInteger pagesFetched = new AtomicInteger();
+    // Bytes fetched plus the reservations of fetches in progress, guarded by this
+    private long bytesReserved;
+    private long bytesFetched;
+    
+    public CrawlBudget(int maxPages, long maxBytes, Duration maxDuration) {
+        this.maxPages = maxPages;
+        this.maxBytes = maxBytes;
+        this.deadline = Instant.now().plus(maxDuration);
+    }
+    
+    /**
+     * Reserve one page; returns false once the page limit is reached
+     */
+    public boolean tryAcquirePage() {
+        int current;
+        do {
+            current = pagesFetched.get();
+            if (current >= maxPages) {
+                return false;
+            }
+        } while (!pagesFetched.compareAndSet(current, current + 1));
+        return true;
+    }
+    
+    /**
+     * Give back a page reserved by {@link #tryAcquirePage} for a fetch that did not happen
+     */
+    public void releasePage() {
+        pagesFetched.decrementAndGet();
+    }
+    
+    /**
+     * Reserve the bytes of one fetch: {@code wanted}, or all that is left of
+     * the budget when that is less. While reservations of fetches in progress
+     * leave too little, waits up to {@code maxWaitMillis} for them to settle.
+     *
+     * @return the bytes granted; 0 once the byte limit has been used up (see
+     *         {@link #isBytesExhausted}) or when the wait ran out
+     */
+    public synchronized long reserveBytes(long wanted, long maxWaitMillis) throws InterruptedException {
+        long waitUntil = System.currentTimeMillis() + maxWaitMillis;
+        while (true) {
+            long granted = Math.min(wanted, maxBytes - bytesFetched);
+            if (granted <= 0) {
+                return 0;
+            }
+            // Only reservations in progress can leave less than what has not been fetched
+            if (maxBytes - bytesReserved >= granted) {
+                bytesReserved += granted;
+                return granted;
+            }
+            long wait = waitUntil - System.currentTimeMillis();
+            if (wait <= 0) {
+                return 0;
+            }
+            wait(wait);
+        }
+    }
+    
+    /**
+     * Settle a reservation once its fetch is done: count the bytes read as
+     * fetched and give back the part that was not read
+     */
+    public synchronized void settleBytes(long granted, long read) {
+        long used = Math.min(Math.max(read, 0), granted);
+        bytesFetched += used;
+        bytesReserved -= granted - used;
+        notifyAll();
+    }
+    
+    /**
+     * Whether the bytes read have reached the byte limit
+     */
+    public synchronized boolean isBytesExhausted() {
+        return bytesFetched >= maxBytes;
+    }
+    
+    /**
+     * Continue the accounting of an interrupted crawl
+     */
+    public synchronized void restore(int pages, long bytes) {
+        pagesFetched.set(pages);
+        bytesReserved = bytes;
+        bytesFetched = bytes;
+    }
+    
+    public boolean isExpired() {
+        return !Instant.now().isBefore(deadline);
+    }
+    
+    public Duration getRemainingTime() {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+    
+    public int getPagesFetched() {
+        return pagesFetched.get();
+    }
+    
+    /**
+     * Bytes of response bodies actually read
+     */
+    public synchronized long getBytesFetched() {
+        return bytesFetched;
+    }
+    
+    /**
+     * Bytes reserved by fetches in progress
+     */
+    public synchronized long getBytesInFlight() {
+        return Math.max(0, bytesReserved - bytesFetched);
+    }
+    
+    public int getMaxPages() {
+        return maxPages;
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,123 @@
+package com.noupe.chatbot.service.crawler;
+
+import com.noupe.chatbot.model.CrawlFrontierEntry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Records frontier changes of a resumable crawl and hands them to a writer in
+ * batches, once enough changes are buffered or the flush interval has passed.
+ *
+ * Batches are written one at a time and in order, so a URL is always stored
+ * before it is marked done.
+ */
+public class CrawlCheckpoint implements CrawlFrontier.Listener {
+    
+    private final long crawlJobId;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Consumer<Batch> writer;
+    private final Object flushLock = new Object();
+    
+    private List<CrawlFrontierEntry> entries = new ArrayList<>();
+    private List<String> completedUrls = new ArrayList<>();
+    private long lastFlushNanos = System.nanoTime();
+    
+    public CrawlCheckpoint(long crawlJobId, int batchSize, Duration flushInterval, Consumer<Batch> writer) {
+        this.crawlJobId = crawlJobId;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.writer = writer;
+    }
+    
+    @Override
+    public void onQueued(CrawlTask task) {
+        record(new CrawlFrontierEntry(task.getUrl(), task.getDepth(), task.getPriority(), false), null);
+    }
+    
+    @Override
+    public void onVisited(String url) {
+        record(new CrawlFrontierEntry(url, 0, 0, true), null);
+    }
+    
+    @Override
+    public void onCompleted(CrawlTask task) {
+        record(null, task.getUrl());
+    }
+    
+    private void record(CrawlFrontierEntry entry, String completedUrl) {
+        boolean due;
+        synchronized (this) {
+            if (entry != null) {
+                entries.add(entry);
+            }
+            if (completedUrl != null) {
+                completedUrls.add(completedUrl);
+            }
+            due = entries.size() + completedUrls.size() >= batchSize ||
+                System.nanoTime() - lastFlushNanos >= flushIntervalNanos;
+        }
+        if (due) {
+            flush();
+        }
+    }
+    
+    /**
+     * Write everything recorded so far
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Batch batch = drain();
+            if (!batch.isEmpty()) {
+                writer.accept(batch);
+            }
+        }
+    }
+    
+    private synchronized Batch drain() {
+        Batch batch = new Batch(crawlJobId, entries, completedUrls);
+        entries = new ArrayList<>();
+        completedUrls = new ArrayList<>();
+        lastFlushNanos = System.nanoTime();
+        return batch;
+    }
+    
+    public long getCrawlJobId() {
+        return crawlJobId;
+    }
+    
+    /**
+     * Frontier changes to persist: new entries first, then URLs that are done
+     */
+    public static class Batch {
+        
+        private final long crawlJobId;
+        private final List<CrawlFrontierEntry> entries;
+        private final List<String> completedUrls;
+        
+        Batch(long crawlJobId, List<CrawlFrontierEntry> entries, List<String> completedUrls) {
+            this.crawlJobId = crawlJobId;
+            this.entries = entries;
+            this.completedUrls = completedUrls;
+        }
+        
+        public boolean isEmpty() {
+            return entries.isEmpty() && completedUrls.isEmpty();
+        }
+        
+        public long getCrawlJobId() {
+            return crawlJobId;
+        }
+        
+        public List<CrawlFrontierEntry> getEntries() {
+            return entries;
+        }
+        
+        public List<String> getCompletedUrls() {
+            return completedUrls;
+        }
+    }
+}
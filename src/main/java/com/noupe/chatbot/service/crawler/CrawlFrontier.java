@@ -0,0 +1,114 @@
+package com.noupe.chatbot.service.crawler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Priority-ordered queue of URLs waiting to be crawled.
+ *
+ * Every URL is accepted at most once per crawl. The frontier also counts
+ * tasks that have been handed out but not completed yet, so that workers can
+ * tell a momentarily empty queue apart from a finished crawl.
+ */
+public class CrawlFrontier {
+    
+    private final PriorityBlockingQueue<CrawlTask> queue = new PriorityBlockingQueue<>();
+    private final Set<String> seenUrls = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Listener listener;
+    
+    /**
+     * Add a URL to the frontier unless it has been seen before
+     */
+    public boolean offer(String url, int depth, double priority) {
+        if (!seenUrls.add(url)) {
+            return false;
+        }
+        pending.incrementAndGet();
+        CrawlTask task = new CrawlTask(url, depth, priority, sequence.getAndIncrement());
+        queue.offer(task);
+        
+        Listener current = listener;
+        if (current != null) {
+            current.onQueued(task);
+        }
+        return true;
+    }
+    
+    /**
+     * Take the highest-priority task, waiting up to the given timeout
+     */
+    public CrawlTask poll(long timeoutMillis) throws InterruptedException {
+        return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Mark a task obtained from {@link #poll(long)} as done
+     */
+    public void complete(CrawlTask task) {
+        Listener current = listener;
+        if (current != null) {
+            current.onCompleted(task);
+        }
+        pending.decrementAndGet();
+    }
+    
+    /**
+     * A crawl is finished once the queue is empty and no task is in progress
+     */
+    public boolean isFinished() {
+        return pending.get() == 0;
+    }
+    
+    /**
+     * Claim a URL without queueing it, e.g. the canonical URL of a fetched page.
+     * Returns false if the URL was already seen.
+     */
+    public boolean markSeen(String url) {
+        if (!seenUrls.add(url)) {
+            return false;
+        }
+        
+        Listener current = listener;
+        if (current != null) {
+            current.onVisited(url);
+        }
+        return true;
+    }
+    
+    public boolean hasSeen(String url) {
+        return seenUrls.contains(url);
+    }
+    
+    public int size() {
+        return queue.size();
+    }
+    
+    /**
+     * Observe frontier changes, e.g. to checkpoint them. Set the listener
+     * after restoring a checkpoint so that restored URLs are not reported again.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Callbacks for frontier changes, invoked on the thread making the change
+     */
+    public interface Listener {
+        
+        void onQueued(CrawlTask task);
+        
+        /**
+         * A URL was claimed without being queued
+         */
+        void onVisited(String url);
+        
+        void onCompleted(CrawlTask task);
+    }
+}
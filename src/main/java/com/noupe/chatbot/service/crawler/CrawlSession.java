@@ -0,0 +1,270 @@
+package com.noupe.chatbot.service.crawler;
+
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.WebsiteContent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of a single website crawl, shared by all crawler workers
+ */
+public class CrawlSession {
+    
+    /**
+     * Why a crawl stopped before its frontier was exhausted. Aborting reasons
+     * also discard fetches in progress; the others let them finish.
+     */
+    public enum StopReason {
+        CANCELLED(true),
+        TIME_BUDGET(true),
+        PAGE_BUDGET(false),
+        BYTE_BUDGET(false);
+        
+        private final boolean aborting;
+        
+        StopReason(boolean aborting) {
+            this.aborting = aborting;
+        }
+        
+        public boolean isAborting() {
+            return aborting;
+        }
+    }
+    
+    private final Chatbot chatbot;
+    private final UrlCanonicalizer canonicalizer;
+    private final RecrawlPolicy recrawlPolicy;
+    private final CrawlWriteBuffer writeBuffer;
+    private final Map<String, WebsiteContent> knownContent;
+    private final CrawlBudget budget;
+    private final CrawlFrontier frontier = new CrawlFrontier();
+    private final List<WebsiteContent> extractedContent = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger duplicatePages = new AtomicInteger();
+    private final AtomicInteger pagesParsed = new AtomicInteger();
+    private final AtomicLong parseCpuNanos = new AtomicLong();
+    private final long startedNanos = System.nanoTime();
+    private final Set<String> contentFingerprints = ConcurrentHashMap.newKeySet();
+    private volatile RobotsRules robotsRules = RobotsRules.allowAll();
+    private volatile CrawlCheckpoint checkpoint;
+    private volatile StopReason stopReason;
+    private final Set<Thread> fetchingThreads = new HashSet<>();
+    private int pagesParsing;
+    
+    public CrawlSession(Chatbot chatbot, UrlCanonicalizer canonicalizer, RecrawlPolicy recrawlPolicy,
+                        CrawlWriteBuffer writeBuffer, Map<String, WebsiteContent> knownContent, CrawlBudget budget) {
+        this.chatbot = chatbot;
+        this.canonicalizer = canonicalizer;
+        this.recrawlPolicy = recrawlPolicy;
+        this.writeBuffer = writeBuffer;
+        this.knownContent = knownContent;
+        this.budget = budget;
+    }
+    
+    /**
+     * Reserve one page of the crawl budget; returns false once the budget is spent
+     */
+    public boolean tryAcquirePage() {
+        return budget.tryAcquirePage();
+    }
+    
+    /**
+     * Give back a page acquired for a fetch that did not happen
+     */
+    public void releasePage() {
+        budget.releasePage();
+    }
+    
+    /**
+     * Stop the crawl so that workers take no new tasks. The first reason
+     * wins, except that an aborting reason overrides a budget that merely ran out.
+     *
+     * An aborting stop interrupts the fetching threads. A fetch that is
+     * reading its body stops at the next read, but a platform thread waiting
+     * for the connection or the response headers does not react to the
+     * interrupt; such a fetch ends at its request timeout, which never
+     * exceeds the remaining time budget, and its response is discarded.
+     */
+    public synchronized void stop(StopReason reason) {
+        if (stopReason == null || (reason.isAborting() && !stopReason.isAborting())) {
+            stopReason = reason;
+        }
+        if (stopReason.isAborting()) {
+            fetchingThreads.forEach(Thread::interrupt);
+        }
+    }
+    
+    public boolean isStopped() {
+        return stopReason != null;
+    }
+    
+    /**
+     * Whether fetches in progress are to be discarded because the crawl was aborted
+     */
+    public boolean isAborted() {
+        StopReason reason = stopReason;
+        return reason != null && reason.isAborting();
+    }
+    
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+    
+    /**
+     * Register the calling thread as fetching, so that {@link #stop} can interrupt it
+     */
+    public synchronized void beginFetch() {
+        fetchingThreads.add(Thread.currentThread());
+    }
+    
+    /**
+     * Unregister the calling thread, clearing an interrupt caused by {@link #stop}
+     */
+    public synchronized void endFetch() {
+        fetchingThreads.remove(Thread.currentThread());
+        if (isAborted()) {
+            Thread.interrupted();
+        }
+    }
+    
+    /**
+     * Content stored for the URL by a previous crawl, or null
+     */
+    public WebsiteContent getKnownContent(String url) {
+        return knownContent.get(url);
+    }
+    
+    public void recordDuplicate() {
+        duplicatePages.incrementAndGet();
+    }
+    
+    /**
+     * Register the fingerprint of a page's text; returns false if another
+     * page of this crawl already had the same text
+     */
+    public boolean registerFingerprint(String fingerprint) {
+        return contentFingerprints.add(fingerprint);
+    }
+    
+    public Chatbot getChatbot() {
+        return chatbot;
+    }
+    
+    public UrlCanonicalizer getCanonicalizer() {
+        return canonicalizer;
+    }
+    
+    public RecrawlPolicy getRecrawlPolicy() {
+        return recrawlPolicy;
+    }
+    
+    public CrawlWriteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+    
+    public Map<String, WebsiteContent> getKnownContentByUrl() {
+        return knownContent;
+    }
+    
+    public RobotsRules getRobotsRules() {
+        return robotsRules;
+    }
+    
+    public void setRobotsRules(RobotsRules robotsRules) {
+        this.robotsRules = robotsRules;
+    }
+    
+    /**
+     * Checkpoint of a resumable crawl, or null for crawls that are not checkpointed
+     */
+    public CrawlCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+    
+    public void setCheckpoint(CrawlCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        frontier.setListener(checkpoint);
+    }
+    
+    public CrawlFrontier getFrontier() {
+        return frontier;
+    }
+    
+    public List<WebsiteContent> getExtractedContent() {
+        return extractedContent;
+    }
+    
+    public CrawlBudget getBudget() {
+        return budget;
+    }
+    
+    public int getPagesFetched() {
+        return budget.getPagesFetched();
+    }
+    
+    public int getDuplicatePages() {
+        return duplicatePages.get();
+    }
+    
+    /**
+     * Count a page handed to the parse stage
+     */
+    public synchronized void beginParse() {
+        pagesParsing++;
+    }
+    
+    public synchronized void endParse() {
+        pagesParsing--;
+        if (pagesParsing == 0) {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Wait until every page handed to the parse stage has been processed
+     */
+    public synchronized void awaitParsing() throws InterruptedException {
+        while (pagesParsing > 0) {
+            wait();
+        }
+    }
+    
+    /**
+     * Account CPU time spent parsing and extracting a page
+     */
+    public void recordParse(long cpuNanos, boolean newPage) {
+        parseCpuNanos.addAndGet(cpuNanos);
+        if (newPage) {
+            pagesParsed.incrementAndGet();
+        }
+    }
+    
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - startedNanos) / 1e9;
+    }
+    
+    public double getPagesPerSecond() {
+        double elapsed = getElapsedSeconds();
+        return elapsed > 0 ? getPagesFetched() / elapsed : 0;
+    }
+    
+    public double getBytesPerSecond() {
+        double elapsed = getElapsedSeconds();
+        return elapsed > 0 ? budget.getBytesFetched() / elapsed : 0;
+    }
+    
+    /**
+     * Average CPU time spent parsing and extracting one page, in milliseconds
+     */
+    public double getParseCpuMillisPerPage() {
+        int pages = pagesParsed.get();
+        return pages > 0 ? parseCpuNanos.get() / 1e6 / pages : 0;
+    }
+}
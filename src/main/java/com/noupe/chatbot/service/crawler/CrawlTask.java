@@ -0,0 +1,44 @@
+package com.noupe.chatbot.service.crawler;
+
+/**
+ * A single URL waiting in the crawl frontier.
+ *
+ * Tasks with a higher priority are crawled first; tasks with equal priority
+ * are crawled in the order they were discovered.
+ */
+public class CrawlTask implements Comparable<CrawlTask> {
+    
+    private final String url;
+    private final int depth;
+    private final double priority;
+    private final long sequence;
+    
+    public CrawlTask(String url, int depth, double priority, long sequence) {
+        this.url = url;
+        this.depth = depth;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+    
+    @Override
+    public int compareTo(CrawlTask other) {
+        int byPriority = Double.compare(other.priority, priority);
+        return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    public int getDepth() {
+        return depth;
+    }
+    
+    public double getPriority() {
+        return priority;
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+}
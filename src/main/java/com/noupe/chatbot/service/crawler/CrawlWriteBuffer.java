@@ -0,0 +1,73 @@
+package com.noupe.chatbot.service.crawler;
+
+import com.noupe.chatbot.model.WebsiteContent;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers the pages of one crawl until a full JDBC batch can be written,
+ * and counts what was written
+ */
+public class CrawlWriteBuffer {
+    
+    /**
+     * How a crawled page is persisted
+     */
+    public enum Kind {
+        INSERTED,
+        UPDATED,
+        UNCHANGED
+    }
+    
+    private final int batchSize;
+    private final Map<Kind, List<WebsiteContent>> pending = new EnumMap<>(Kind.class);
+    private final Map<Kind, AtomicInteger> written = new EnumMap<>(Kind.class);
+    
+    public CrawlWriteBuffer(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        for (Kind kind : Kind.values()) {
+            pending.put(kind, new ArrayList<>());
+            written.put(kind, new AtomicInteger());
+        }
+    }
+    
+    /**
+     * Buffer a page; returns a full batch to write, or an empty list
+     */
+    public synchronized List<WebsiteContent> add(Kind kind, WebsiteContent content) {
+        List<WebsiteContent> buffer = pending.get(kind);
+        buffer.add(content);
+        if (buffer.size() < batchSize) {
+            return List.of();
+        }
+        List<WebsiteContent> batch = new ArrayList<>(buffer);
+        buffer.clear();
+        return batch;
+    }
+    
+    /**
+     * Take everything still buffered, e.g. at the end of a crawl
+     */
+    public synchronized Map<Kind, List<WebsiteContent>> drainAll() {
+        Map<Kind, List<WebsiteContent>> batches = new EnumMap<>(Kind.class);
+        pending.forEach((kind, buffer) -> {
+            if (!buffer.isEmpty()) {
+                batches.put(kind, new ArrayList<>(buffer));
+                buffer.clear();
+            }
+        });
+        return batches;
+    }
+    
+    public void recordWritten(Kind kind, int count) {
+        written.get(kind).addAndGet(count);
+    }
+    
+    public int getWritten(Kind kind) {
+        return written.get(kind).get();
+    }
+}
@@ -0,0 +1,60 @@
+package com.noupe.chatbot.service.crawler;
+
+/**
+ * Text and metadata extracted from an HTML page
+ */
+public class ExtractedPage {
+    
+    private final String title;
+    private final String text;
+    private final int wordCount;
+    private final String metaDescription;
+    private final String metaKeywords;
+    private final String language;
+    private final boolean truncated;
+    
+    public ExtractedPage(String title, String text, int wordCount, String metaDescription,
+                         String metaKeywords, String language, boolean truncated) {
+        this.title = title;
+        this.text = text;
+        this.wordCount = wordCount;
+        this.metaDescription = metaDescription;
+        this.metaKeywords = metaKeywords;
+        this.language = language;
+        this.truncated = truncated;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    /**
+     * Main text with whitespace collapsed to single spaces
+     */
+    public String getText() {
+        return text;
+    }
+    
+    public int getWordCount() {
+        return wordCount;
+    }
+    
+    public String getMetaDescription() {
+        return metaDescription;
+    }
+    
+    public String getMetaKeywords() {
+        return metaKeywords;
+    }
+    
+    public String getLanguage() {
+        return language;
+    }
+    
+    /**
+     * Whether the text was cut off at the configured maximum length
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
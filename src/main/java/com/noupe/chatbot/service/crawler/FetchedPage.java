@@ -0,0 +1,52 @@
+package com.noupe.chatbot.service.crawler;
+
+import com.noupe.chatbot.model.WebsiteContent;
+import org.jsoup.Connection;
+
+/**
+ * A page whose body has been downloaded by the fetch stage and is waiting
+ * to be parsed by the parse stage
+ */
+public class FetchedPage {
+    
+    private final CrawlTask task;
+    private final WebsiteContent previous;
+    private final Connection.Response response;
+    private final byte[] body;
+    private final String contentType;
+    
+    public FetchedPage(CrawlTask task, WebsiteContent previous, Connection.Response response,
+                       byte[] body, String contentType) {
+        this.task = task;
+        this.previous = previous;
+        this.response = response;
+        this.body = body;
+        this.contentType = contentType;
+    }
+    
+    public CrawlTask getTask() {
+        return task;
+    }
+    
+    /**
+     * Content stored for the URL by a previous crawl, or null
+     */
+    public WebsiteContent getPrevious() {
+        return previous;
+    }
+    
+    public Connection.Response getResponse() {
+        return response;
+    }
+    
+    public byte[] getBody() {
+        return body;
+    }
+    
+    /**
+     * Lower-case content type, empty if the server sent none
+     */
+    public String getContentType() {
+        return contentType;
+    }
+}
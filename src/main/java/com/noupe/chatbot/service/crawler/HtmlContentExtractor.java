@@ -0,0 +1,294 @@
+package com.noupe.chatbot.service.crawler;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.Set;
+
+/**
+ * Extracts title, meta tags, language and main text from a page in a single
+ * traversal of the DOM.
+ *
+ * Navigation, scripts, ads and similar boilerplate are skipped during the
+ * walk instead of being removed from the document first. Text is collected
+ * with whitespace already collapsed and words counted on the fly, and every
+ * buffer stops growing at {@code maxTextLength} characters.
+ */
+public class HtmlContentExtractor {
+    
+    private static final Set<String> SKIP_TAGS = Set.of(
+        "nav", "header", "footer", "aside", "script", "style", "noscript", "template"
+    );
+    
+    private static final Set<String> SKIP_CLASSES = Set.of(
+        "navigation", "menu", "sidebar", "ads", "advertisement"
+    );
+    
+    private static final Set<String> CONTENT_CLASSES = Set.of("content", "main-content");
+    private static final Set<String> CONTENT_IDS = Set.of("content", "main");
+    
+    // Main content candidates in order of preference, body text is the fallback
+    private static final int MAIN = 0;
+    private static final int ARTICLE = 1;
+    private static final int CONTENT_BLOCK = 2;
+    private static final int CANDIDATES = 3;
+    
+    private final int maxTextLength;
+    
+    public HtmlContentExtractor(int maxTextLength) {
+        this.maxTextLength = maxTextLength;
+    }
+    
+    /**
+     * Extract text and metadata from a parsed document
+     */
+    public ExtractedPage extract(Document document) {
+        Walk walk = new Walk();
+        NodeTraversor.filter(walk, document);
+        
+        TextBuffer main = walk.body;
+        for (TextBuffer candidate : walk.candidates) {
+            if (candidate != null) {
+                main = candidate;
+                break;
+            }
+        }
+        
+        String title = walk.title != null ? walk.title.toString() : "";
+        if (title.isEmpty()) {
+            title = walk.heading != null && !walk.heading.isEmpty() ? walk.heading.toString() : "Untitled Page";
+        }
+        
+        return new ExtractedPage(title, main.toString(), main.getWordCount(), walk.metaDescription,
+            walk.metaKeywords, walk.language != null ? walk.language : "en", main.isTruncated());
+    }
+    
+    /**
+     * State of one traversal
+     */
+    private class Walk implements NodeFilter {
+        
+        private final TextBuffer body = new TextBuffer(maxTextLength);
+        private final TextBuffer[] candidates = new TextBuffer[CANDIDATES];
+        private final Element[] candidateElements = new Element[CANDIDATES];
+        private TextBuffer title;
+        private Element titleElement;
+        private TextBuffer heading;
+        private Element headingElement;
+        private String metaDescription;
+        private String metaKeywords;
+        private String language;
+        private boolean inBody;
+        
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (node instanceof TextNode textNode) {
+                appendText(textNode.getWholeText());
+                return FilterResult.CONTINUE;
+            }
+            if (!(node instanceof Element element)) {
+                return FilterResult.CONTINUE;
+            }
+            
+            String tag = element.normalName();
+            switch (tag) {
+                case "html" -> {
+                    String lang = element.attr("lang").trim();
+                    if (!lang.isEmpty()) {
+                        language = lang.length() > 2 ? lang.substring(0, 2) : lang;
+                    }
+                }
+                case "body" -> inBody = true;
+                case "title" -> {
+                    if (title == null) {
+                        title = new TextBuffer(maxTextLength);
+                        titleElement = element;
+                    }
+                }
+                case "meta" -> readMeta(element);
+                default -> { }
+            }
+            
+            if (!inBody) {
+                return FilterResult.CONTINUE;
+            }
+            
+            if (isBoilerplate(element)) {
+                return FilterResult.SKIP_ENTIRELY;
+            }
+            
+            if (tag.equals("h1") && heading == null) {
+                heading = new TextBuffer(maxTextLength);
+                headingElement = element;
+            }
+            
+            int rank = candidateRank(element, tag);
+            if (rank >= 0 && candidates[rank] == null) {
+                candidates[rank] = new TextBuffer(maxTextLength);
+                candidateElements[rank] = element;
+            }
+            
+            if (element.isBlock() || tag.equals("br")) {
+                appendBreak();
+            }
+            return FilterResult.CONTINUE;
+        }
+        
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            if (!(node instanceof Element element)) {
+                return FilterResult.CONTINUE;
+            }
+            
+            if (element == titleElement) {
+                titleElement = null;
+            }
+            if (element == headingElement) {
+                headingElement = null;
+            }
+            for (int i = 0; i < CANDIDATES; i++) {
+                if (element == candidateElements[i]) {
+                    candidateElements[i] = null;
+                }
+            }
+            if (inBody && element.isBlock()) {
+                appendBreak();
+            }
+            return FilterResult.CONTINUE;
+        }
+        
+        private void appendText(String text) {
+            if (titleElement != null) {
+                title.append(text);
+            }
+            if (!inBody) {
+                return;
+            }
+            body.append(text);
+            if (headingElement != null) {
+                heading.append(text);
+            }
+            for (int i = 0; i < CANDIDATES; i++) {
+                if (candidateElements[i] != null) {
+                    candidates[i].append(text);
+                }
+            }
+        }
+        
+        private void appendBreak() {
+            body.appendBreak();
+            for (int i = 0; i < CANDIDATES; i++) {
+                if (candidateElements[i] != null) {
+                    candidates[i].appendBreak();
+                }
+            }
+        }
+        
+        private void readMeta(Element element) {
+            String name = element.attr("name");
+            if (metaDescription == null && name.equalsIgnoreCase("description")) {
+                metaDescription = element.attr("content");
+            } else if (metaKeywords == null && name.equalsIgnoreCase("keywords")) {
+                metaKeywords = element.attr("content");
+            }
+        }
+    }
+    
+    private static boolean isBoilerplate(Element element) {
+        if (SKIP_TAGS.contains(element.normalName())) {
+            return true;
+        }
+        if (!element.hasAttr("class")) {
+            return false;
+        }
+        for (String className : element.classNames()) {
+            if (SKIP_CLASSES.contains(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static int candidateRank(Element element, String tag) {
+        if (tag.equals("main")) {
+            return MAIN;
+        }
+        if (tag.equals("article")) {
+            return ARTICLE;
+        }
+        if (CONTENT_IDS.contains(element.id())) {
+            return CONTENT_BLOCK;
+        }
+        if (element.hasAttr("class")) {
+            for (String className : element.classNames()) {
+                if (CONTENT_CLASSES.contains(className)) {
+                    return CONTENT_BLOCK;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Appends text with whitespace collapsed, counting words as it goes
+     */
+    private static class TextBuffer {
+        
+        private final StringBuilder text = new StringBuilder();
+        private final int maxLength;
+        private boolean pendingSpace;
+        private boolean truncated;
+        private int wordCount;
+        
+        TextBuffer(int maxLength) {
+            this.maxLength = maxLength;
+        }
+        
+        void append(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (Character.isWhitespace(c) || c == '\u00a0') {
+                    pendingSpace = true;
+                    continue;
+                }
+                if (text.length() >= maxLength) {
+                    truncated = true;
+                    return;
+                }
+                if (text.length() == 0) {
+                    wordCount++;
+                } else if (pendingSpace) {
+                    text.append(' ');
+                    wordCount++;
+                }
+                pendingSpace = false;
+                text.append(c);
+            }
+        }
+        
+        void appendBreak() {
+            pendingSpace = true;
+        }
+        
+        boolean isEmpty() {
+            return text.length() == 0;
+        }
+        
+        boolean isTruncated() {
+            return truncated;
+        }
+        
+        int getWordCount() {
+            return wordCount;
+        }
+        
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.noupe.chatbot.service.crawler;
+
+import com.noupe.chatbot.model.WebsiteContent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Learns how often each page changes and schedules its next re-crawl.
+ *
+ * A page starts at its chatbot's re-crawl interval. Every check that finds a
+ * change halves the interval, every unchanged check stretches it by half,
+ * within the configured bounds. The next crawl time is jittered so that
+ * pages crawled together do not all fall due in the same minute.
+ */
+public class RecrawlPolicy {
+    
+    private static final double JITTER = 0.1;
+    
+    private final long minIntervalMinutes;
+    private final long maxIntervalMinutes;
+    
+    public RecrawlPolicy(Duration minInterval, Duration maxInterval) {
+        this.minIntervalMinutes = Math.max(1, minInterval.toMinutes());
+        this.maxIntervalMinutes = Math.max(this.minIntervalMinutes, maxInterval.toMinutes());
+    }
+    
+    /**
+     * Record a crawl of the page and set its next crawl time
+     *
+     * @param changed whether the crawl found new content
+     * @param baseInterval the chatbot's configured re-crawl interval, used for new pages
+     */
+    public void recordCheck(WebsiteContent page, boolean changed, Duration baseInterval) {
+        Integer current = page.getRecrawlIntervalMinutes();
+        long interval;
+        if (current == null) {
+            interval = baseInterval.toMinutes();
+        } else if (changed) {
+            interval = current / 2;
+        } else {
+            interval = current + current / 2;
+        }
+        interval = Math.max(minIntervalMinutes, Math.min(maxIntervalMinutes, interval));
+        
+        page.setCheckCount(page.getCheckCount() != null ? page.getCheckCount() + 1 : 1);
+        if (changed) {
+            page.setChangeCount(page.getChangeCount() != null ? page.getChangeCount() + 1 : 1);
+        }
+        page.setRecrawlIntervalMinutes((int) interval);
+        
+        double jitter = 1.0 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * JITTER;
+        page.setNextCrawlAt(LocalDateTime.now().plusMinutes(Math.round(interval * jitter)));
+    }
+}
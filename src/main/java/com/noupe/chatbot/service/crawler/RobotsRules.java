@@ -0,0 +1,183 @@
+package com.noupe.chatbot.service.crawler;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed robots.txt rules for our crawler's user agent.
+ *
+ * Follows RFC 9309: the group naming our product token wins over the
+ * {@code *} group, the longest matching rule decides, and Allow wins ties.
+ * {@code *} and {@code $} wildcards are supported.
+ */
+public class RobotsRules {
+    
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), List.of());
+    
+    private final List<Rule> rules;
+    private final List<String> sitemaps;
+    
+    private RobotsRules(List<Rule> rules, List<String> sitemaps) {
+        this.rules = rules;
+        this.sitemaps = sitemaps;
+    }
+    
+    /**
+     * Rules used when a site has no robots.txt or it cannot be read
+     */
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+    
+    /**
+     * Parse robots.txt content for the given user agent string
+     */
+    public static RobotsRules parse(String content, String userAgent) {
+        String productToken = productToken(userAgent);
+        List<Rule> specificRules = new ArrayList<>();
+        List<Rule> wildcardRules = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        
+        boolean inAgentLines = false;
+        boolean groupIsSpecific = false;
+        boolean groupIsWildcard = false;
+        
+        for (String rawLine : content.split("\\r?\\n|\\r")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            
+            switch (field) {
+                case "user-agent" -> {
+                    if (!inAgentLines) {
+                        groupIsSpecific = false;
+                        groupIsWildcard = false;
+                        inAgentLines = true;
+                    }
+                    if (value.equals("*")) {
+                        groupIsWildcard = true;
+                    } else {
+                        // The whole product token must match, case-insensitively
+                        String agent = productToken(value);
+                        if (!agent.isEmpty() && agent.equalsIgnoreCase(productToken)) {
+                            groupIsSpecific = true;
+                        }
+                    }
+                }
+                case "allow", "disallow" -> {
+                    inAgentLines = false;
+                    if (value.isEmpty()) {
+                        continue; // An empty Disallow allows everything
+                    }
+                    Rule rule = new Rule(value, field.equals("allow"));
+                    if (groupIsSpecific) {
+                        specificRules.add(rule);
+                    } else if (groupIsWildcard) {
+                        wildcardRules.add(rule);
+                    }
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                }
+                default -> inAgentLines = false;
+            }
+        }
+        
+        List<Rule> rules = !specificRules.isEmpty() ? specificRules : wildcardRules;
+        return new RobotsRules(Collections.unmodifiableList(rules), Collections.unmodifiableList(sitemaps));
+    }
+    
+    /**
+     * Check whether the URL may be crawled
+     */
+    public boolean isAllowed(URL url) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+        
+        String path = url.getPath().isEmpty() ? "/" : url.getPath();
+        if (url.getQuery() != null) {
+            path = path + "?" + url.getQuery();
+        }
+        
+        Rule decidingRule = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (decidingRule == null 
+                    || rule.length() > decidingRule.length()
+                    || (rule.length() == decidingRule.length() && rule.allow))) {
+                decidingRule = rule;
+            }
+        }
+        return decidingRule == null || decidingRule.allow;
+    }
+    
+    /**
+     * Sitemap URLs announced in robots.txt
+     */
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+    
+    /**
+     * "AI-Chatbot-Crawler/1.0 (+info)" becomes "ai-chatbot-crawler"
+     */
+    private static String productToken(String userAgent) {
+        String token = userAgent == null ? "" : userAgent.trim();
+        int end = 0;
+        while (end < token.length() && (Character.isLetter(token.charAt(end)) 
+                || token.charAt(end) == '-' || token.charAt(end) == '_')) {
+            end++;
+        }
+        return token.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+    
+    private static class Rule {
+        
+        private final String pathPattern;
+        private final boolean allow;
+        private final Pattern regex;
+        
+        Rule(String pathPattern, boolean allow) {
+            this.pathPattern = pathPattern;
+            this.allow = allow;
+            this.regex = toRegex(pathPattern);
+        }
+        
+        boolean matches(String path) {
+            return regex.matcher(path).lookingAt();
+        }
+        
+        int length() {
+            return pathPattern.length();
+        }
+        
+        private static Pattern toRegex(String pathPattern) {
+            boolean anchored = pathPattern.endsWith("$");
+            String body = anchored ? pathPattern.substring(0, pathPattern.length() - 1) : pathPattern;
+            
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (regex.length() > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            if (anchored) {
+                regex.append("$");
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.noupe.chatbot.service.crawler;
+
+import java.time.Instant;
+
+/**
+ * A page listed in a sitemap
+ */
+public class SitemapEntry {
+    
+    private final String url;
+    private final Instant lastModified;
+    private final Double priority;
+    
+    public SitemapEntry(String url, Instant lastModified, Double priority) {
+        this.url = url;
+        this.lastModified = lastModified;
+        this.priority = priority;
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    /**
+     * The sitemap lastmod, or null when absent or unparseable
+     */
+    public Instant getLastModified() {
+        return lastModified;
+    }
+    
+    /**
+     * The sitemap priority between 0.0 and 1.0, or null when absent
+     */
+    public Double getPriority() {
+        return priority;
+    }
+}
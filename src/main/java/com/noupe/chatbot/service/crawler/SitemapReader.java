@@ -0,0 +1,184 @@
+package com.noupe.chatbot.service.crawler;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for XML sitemaps.
+ *
+ * Sitemaps are parsed with StAX straight from the network stream, so even
+ * sitemaps with tens of thousands of entries are never held in memory.
+ * Sitemap index files are followed breadth-first and gzipped sitemaps are
+ * detected by their magic bytes.
+ */
+public class SitemapReader {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SitemapReader.class);
+    
+    private static final int MAX_SITEMAP_FILES = 50;
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+    
+    private final String userAgent;
+    private final int timeoutMillis;
+    private final XMLInputFactory xmlInputFactory;
+    
+    public SitemapReader(String userAgent, int timeoutMillis) {
+        this.userAgent = userAgent;
+        this.timeoutMillis = timeoutMillis;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+    
+    /**
+     * Read the given sitemaps and any sitemaps they reference, passing each
+     * page entry to the consumer. Returns the number of entries read.
+     */
+    public int read(Iterable<String> sitemapUrls, int maxEntries, Consumer<SitemapEntry> consumer) {
+        Deque<String> pending = new ArrayDeque<>();
+        Set<String> seen = new HashSet<>();
+        for (String sitemapUrl : sitemapUrls) {
+            if (seen.add(sitemapUrl)) {
+                pending.add(sitemapUrl);
+            }
+        }
+        
+        int entries = 0;
+        int files = 0;
+        while (!pending.isEmpty() && entries < maxEntries && files < MAX_SITEMAP_FILES) {
+            String sitemapUrl = pending.poll();
+            files++;
+            
+            try (InputStream in = open(sitemapUrl)) {
+                entries += parse(in, maxEntries - entries, consumer, nested -> {
+                    if (seen.add(nested)) {
+                        pending.add(nested);
+                    }
+                });
+            } catch (IOException | XMLStreamException e) {
+                logger.debug("Failed to read sitemap {} - {}", sitemapUrl, e.getMessage());
+            }
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Parse one sitemap or sitemap index document
+     */
+    int parse(InputStream in, int maxEntries, Consumer<SitemapEntry> consumer,
+              Consumer<String> nestedSitemaps) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+        int entries = 0;
+        
+        try {
+            String loc = null;
+            String lastmod = null;
+            String priority = null;
+            
+            while (reader.hasNext() && entries < maxEntries) {
+                int event = reader.next();
+                
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "url", "sitemap" -> {
+                            loc = null;
+                            lastmod = null;
+                            priority = null;
+                        }
+                        case "loc" -> loc = reader.getElementText().trim();
+                        case "lastmod" -> lastmod = reader.getElementText().trim();
+                        case "priority" -> priority = reader.getElementText().trim();
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && loc != null && !loc.isEmpty()) {
+                    if (reader.getLocalName().equals("url")) {
+                        consumer.accept(new SitemapEntry(loc, parseLastmod(lastmod), parsePriority(priority)));
+                        entries++;
+                        loc = null;
+                    } else if (reader.getLocalName().equals("sitemap")) {
+                        nestedSitemaps.accept(loc);
+                        loc = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Open a sitemap as a stream, unwrapping gzip when the body is compressed
+     */
+    private InputStream open(String sitemapUrl) throws IOException {
+        Connection.Response response = Jsoup.connect(sitemapUrl)
+            .userAgent(userAgent)
+            .timeout(timeoutMillis)
+            .ignoreContentType(true)
+            .maxBodySize(0)
+            .execute();
+        
+        BufferedInputStream in = response.bodyStream();
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        
+        if (first == GZIP_MAGIC_FIRST && second == GZIP_MAGIC_SECOND) {
+            return new GZIPInputStream(in);
+        }
+        return in;
+    }
+    
+    /**
+     * Parse a W3C datetime as used by sitemap lastmod (date or full timestamp)
+     */
+    static Instant parseLastmod(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+    
+    private static Double parsePriority(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Math.max(0.0, Math.min(1.0, Double.parseDouble(value)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
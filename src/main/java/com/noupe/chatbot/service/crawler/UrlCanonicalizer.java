@@ -0,0 +1,152 @@
+package com.noupe.chatbot.service.crawler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalizes URLs so that trivially different spellings of the same page
+ * share one frontier entry and one stored row.
+ *
+ * Scheme and host are lower-cased, default ports, fragments and trailing
+ * slashes are dropped, dot segments are resolved and tracking parameters are
+ * removed. The remaining query parameters are sorted. URLs on the crawl's own
+ * host take the scheme of the root URL, so http and https links collapse.
+ */
+public class UrlCanonicalizer {
+    
+    private final String rootScheme;
+    private final String rootHost;
+    private final List<String> exactParameters = new ArrayList<>();
+    private final List<String> parameterPrefixes = new ArrayList<>();
+    
+    /**
+     * @param rootUrl the URL the crawl starts from
+     * @param trackingParameters query parameter names to strip; a trailing {@code *} matches a prefix
+     */
+    public UrlCanonicalizer(String rootUrl, Collection<String> trackingParameters) {
+        URI root = toUri(rootUrl);
+        this.rootScheme = root != null && root.getScheme() != null ? root.getScheme().toLowerCase(Locale.ROOT) : null;
+        this.rootHost = root != null && root.getHost() != null ? normalizeHost(root.getHost()) : null;
+        
+        for (String parameter : trackingParameters) {
+            String name = parameter.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                parameterPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                exactParameters.add(name);
+            }
+        }
+    }
+    
+    /**
+     * Canonical form of an absolute http(s) URL, or null if the URL cannot be crawled
+     */
+    public String canonicalize(String url) {
+        URI uri = toUri(url);
+        if (uri == null || uri.getScheme() == null || uri.getHost() == null) {
+            return null;
+        }
+        
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        
+        int port = uri.getPort();
+        if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+            port = -1;
+        }
+        
+        String host = normalizeHost(uri.getHost());
+        if (port == -1 && host.equals(rootHost) && rootScheme != null) {
+            scheme = rootScheme;
+        }
+        
+        String path = uri.normalize().getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        } else if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        
+        StringBuilder canonical = new StringBuilder(url.length())
+            .append(scheme).append("://").append(host);
+        if (port != -1) {
+            canonical.append(':').append(port);
+        }
+        canonical.append(path);
+        
+        String query = filterQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        
+        return canonical.toString();
+    }
+    
+    /**
+     * Drop tracking and empty parameters and sort the rest
+     */
+    private String filterQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        
+        List<String> kept = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = (equals >= 0 ? pair.substring(0, equals) : pair).toLowerCase(Locale.ROOT);
+            if (!isTrackingParameter(name)) {
+                kept.add(pair);
+            }
+        }
+        
+        kept.sort(null);
+        return String.join("&", kept);
+    }
+    
+    private boolean isTrackingParameter(String name) {
+        if (exactParameters.contains(name)) {
+            return true;
+        }
+        for (String prefix : parameterPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String normalizeHost(String host) {
+        String normalized = host.toLowerCase(Locale.ROOT);
+        return normalized.endsWith(".") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+    
+    /**
+     * Parse a URL, re-encoding it when it contains characters URI rejects (spaces, unicode)
+     */
+    private static URI toUri(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        try {
+            return new URI(url.trim());
+        } catch (URISyntaxException e) {
+            try {
+                URL parsed = new URL(url.trim());
+                return new URI(parsed.getProtocol(), parsed.getUserInfo(), parsed.getHost(), parsed.getPort(),
+                    parsed.getPath(), parsed.getQuery(), null);
+            } catch (Exception ignored) {
+                return null;
+            }
+        }
+    }
+}
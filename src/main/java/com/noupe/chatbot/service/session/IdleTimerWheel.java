@@ -0,0 +1,145 @@
+package com.noupe.chatbot.service.session;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashed timer wheel that finds keys which have not been touched for an idle
+ * timeout.
+ *
+ * The wheel has one slot per tick and spans the whole timeout, so every key
+ * sits in exactly one slot and no round counting is needed. Touching a known
+ * key only records the time and costs O(1) without locking; the key is moved
+ * lazily when its slot comes round and it turns out to have been active since.
+ * Advancing the wheel visits only the slots of the elapsed ticks, so the cost
+ * of finding idle keys does not depend on how many keys are tracked.
+ */
+public class IdleTimerWheel<K> {
+    
+    private final long idleTimeoutMillis;
+    private final long tickMillis;
+    private final ArrayDeque<Entry<K>>[] slots;
+    private final Map<K, Entry<K>> entries = new ConcurrentHashMap<>();
+    
+    private long currentTick;
+    
+    @SuppressWarnings("unchecked")
+    public IdleTimerWheel(long idleTimeoutMillis, long tickMillis, long nowMillis) {
+        if (idleTimeoutMillis <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("Idle timeout and tick must be positive");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayDeque[Math.toIntExact(idleTimeoutMillis / tickMillis + 2)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+    
+    /**
+     * Record activity of a key, starting to track it if it is new
+     */
+    public void touch(K key, long nowMillis) {
+        while (true) {
+            Entry<K> entry = entries.get(key);
+            if (entry == null) {
+                Entry<K> created = new Entry<>(key, nowMillis);
+                if (entries.putIfAbsent(key, created) == null) {
+                    synchronized (slots) {
+                        schedule(created);
+                    }
+                    return;
+                }
+                continue;
+            }
+            entry.lastActivityMillis = Math.max(entry.lastActivityMillis, nowMillis);
+            if (!entry.removed) {
+                return;
+            }
+            // Expired concurrently; track the key again
+            entries.remove(key, entry);
+        }
+    }
+    
+    /**
+     * Stop tracking a key
+     */
+    public void remove(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry != null) {
+            entry.removed = true;
+        }
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Move the wheel to the given time and remove every key that has been idle for the timeout
+     *
+     * @return the removed keys with their last activity
+     */
+    public List<Expired<K>> advance(long nowMillis) {
+        List<Expired<K>> expired = new ArrayList<>();
+        synchronized (slots) {
+            long targetTick = nowMillis / tickMillis;
+            // After a long pause every slot is due once
+            long firstTick = Math.max(currentTick + 1, targetTick - slots.length + 1);
+            currentTick = targetTick;
+            for (long tick = firstTick; tick <= targetTick; tick++) {
+                ArrayDeque<Entry<K>> slot = slots[slotIndex(tick)];
+                int due = slot.size();
+                for (int i = 0; i < due; i++) {
+                    Entry<K> entry = slot.poll();
+                    if (entry.removed) {
+                        continue;
+                    }
+                    long lastActivity = entry.lastActivityMillis;
+                    if (lastActivity + idleTimeoutMillis > nowMillis) {
+                        schedule(entry);
+                    } else if (entries.remove(entry.key, entry)) {
+                        entry.removed = true;
+                        expired.add(new Expired<>(entry.key, lastActivity));
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+    
+    /**
+     * Put an entry into the slot of its deadline, at the earliest the next tick; caller holds the slots lock
+     */
+    private void schedule(Entry<K> entry) {
+        long deadline = entry.lastActivityMillis + idleTimeoutMillis;
+        long tick = Math.max((deadline + tickMillis - 1) / tickMillis, currentTick + 1);
+        slots[slotIndex(tick)].add(entry);
+    }
+    
+    private int slotIndex(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+    
+    /**
+     * A key that was idle for the timeout, with the time it was last touched
+     */
+    public record Expired<K>(K key, long lastActivityMillis) {
+    }
+    
+    private static class Entry<K> {
+        
+        private final K key;
+        private volatile long lastActivityMillis;
+        private volatile boolean removed;
+        
+        Entry(K key, long lastActivityMillis) {
+            this.key = key;
+            this.lastActivityMillis = lastActivityMillis;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.noupe.chatbot.service.session;
+
+import java.util.List;
+
+/**
+ * Published after conversations were ended for inactivity, so that
+ * per-session state can be released
+ */
+public record SessionsEndedEvent(List<EndedSession> sessions) {
+    
+    /**
+     * A chat session whose conversation was ended
+     */
+    public record EndedSession(long conversationId, long chatbotId, String sessionId) {
+    }
+}
@@ -0,0 +1,135 @@
+-- Tables as mapped by the JPA entities. PostgreSQL only: later migrations use setval(),
+-- SET LOCAL and partial indexes. Development on H2 creates the schema from the entities instead.
+
+CREATE TABLE chatbots (
+    id                          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name                        VARCHAR(255) NOT NULL,
+    website_url                 VARCHAR(255) NOT NULL,
+    description                 TEXT,
+    primary_language            VARCHAR(255) NOT NULL,
+    custom_prompt               TEXT,
+    branding_config             TEXT,
+    is_active                   BOOLEAN NOT NULL,
+    embed_code                  VARCHAR(255) NOT NULL,
+    recrawl_enabled             BOOLEAN NOT NULL,
+    recrawl_interval_hours      INTEGER NOT NULL,
+    conversation_retention_days INTEGER,
+    created_at                  TIMESTAMP(6) NOT NULL,
+    updated_at                  TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE chatbot_languages (
+    chatbot_id BIGINT NOT NULL REFERENCES chatbots (id),
+    language   VARCHAR(255)
+);
+
+CREATE TABLE conversations (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    chatbot_id    BIGINT NOT NULL REFERENCES chatbots (id),
+    session_id    VARCHAR(100) NOT NULL,
+    user_language VARCHAR(100),
+    user_ip       VARCHAR(45),
+    user_agent    VARCHAR(500),
+    is_active     BOOLEAN NOT NULL,
+    created_at    TIMESTAMP(6) NOT NULL,
+    ended_at      TIMESTAMP(6)
+);
+
+CREATE INDEX idx_conversations_chatbot_ended ON conversations (chatbot_id, is_active, ended_at);
+
+CREATE TABLE messages (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    conversation_id  BIGINT NOT NULL REFERENCES conversations (id),
+    type             VARCHAR(255) NOT NULL,
+    content          TEXT NOT NULL,
+    metadata         TEXT,
+    response_time_ms INTEGER NOT NULL,
+    is_user_message  BOOLEAN NOT NULL,
+    created_at       TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE website_contents (
+    id                       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    chatbot_id               BIGINT NOT NULL REFERENCES chatbots (id),
+    url                      VARCHAR(1000) NOT NULL,
+    title                    VARCHAR(500) NOT NULL,
+    meta_keywords            VARCHAR(1000),
+    language                 VARCHAR(100),
+    content_length           INTEGER NOT NULL,
+    word_count               INTEGER NOT NULL,
+    is_indexed               BOOLEAN NOT NULL,
+    vector_id                TEXT,
+    etag                     VARCHAR(500),
+    last_modified            VARCHAR(100),
+    content_hash             VARCHAR(64),
+    text_hash                VARCHAR(64),
+    last_crawled_at          TIMESTAMP(6),
+    next_crawl_at            TIMESTAMP(6),
+    recrawl_interval_minutes INTEGER,
+    check_count              INTEGER NOT NULL,
+    change_count             INTEGER NOT NULL,
+    created_at               TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_website_contents_chatbot_url UNIQUE (chatbot_id, url)
+);
+
+CREATE TABLE website_content_bodies (
+    content_id       BIGINT PRIMARY KEY REFERENCES website_contents (id) ON DELETE CASCADE,
+    content          TEXT,
+    meta_description TEXT
+);
+
+CREATE TABLE crawl_jobs (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    chatbot_id           BIGINT NOT NULL REFERENCES chatbots (id) ON DELETE CASCADE,
+    status               VARCHAR(20) NOT NULL,
+    node_id              VARCHAR(100),
+    pages_fetched        INTEGER NOT NULL,
+    pages_stored         INTEGER NOT NULL,
+    duplicate_pages      INTEGER NOT NULL,
+    bytes_fetched        BIGINT NOT NULL,
+    max_pages            INTEGER NOT NULL,
+    max_bytes            BIGINT NOT NULL,
+    max_duration_minutes INTEGER NOT NULL,
+    stop_reason          VARCHAR(20),
+    error_message        VARCHAR(1000),
+    started_at           TIMESTAMP(6) NOT NULL,
+    checkpointed_at      TIMESTAMP(6),
+    finished_at          TIMESTAMP(6)
+);
+
+CREATE INDEX idx_crawl_jobs_chatbot_started ON crawl_jobs (chatbot_id, started_at);
+CREATE INDEX idx_crawl_jobs_status ON crawl_jobs (status);
+
+CREATE TABLE crawl_frontier_entries (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    crawl_job_id BIGINT NOT NULL REFERENCES crawl_jobs (id) ON DELETE CASCADE,
+    url          VARCHAR(1000) NOT NULL,
+    depth        INTEGER NOT NULL,
+    priority     DOUBLE PRECISION NOT NULL,
+    done         BOOLEAN NOT NULL,
+    CONSTRAINT uk_crawl_frontier_job_url UNIQUE (crawl_job_id, url)
+);
+
+CREATE TABLE analytics_rollups (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    chatbot_id   BIGINT NOT NULL REFERENCES chatbots (id) ON DELETE CASCADE,
+    granularity  VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP(6) NOT NULL,
+    metric       VARCHAR(30) NOT NULL,
+    dimension    VARCHAR(50) NOT NULL,
+    amount       BIGINT NOT NULL,
+    CONSTRAINT uk_analytics_rollups_key UNIQUE (chatbot_id, granularity, bucket_start, metric, dimension)
+);
+
+CREATE TABLE latency_snapshots (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    chatbot_id       BIGINT NOT NULL REFERENCES chatbots (id) ON DELETE CASCADE,
+    interval_start   TIMESTAMP(6) NOT NULL,
+    interval_seconds INTEGER NOT NULL,
+    sample_count     BIGINT NOT NULL,
+    max_value_ms     BIGINT NOT NULL,
+    histogram        BYTEA NOT NULL
+);
+
+CREATE INDEX idx_latency_snapshots_chatbot_interval ON latency_snapshots (chatbot_id, interval_start);
+CREATE INDEX idx_latency_snapshots_interval ON latency_snapshots (interval_start);
@@ -0,0 +1,18 @@
+-- Indexes and unique constraints for the lookups on the chat, history and widget paths.
+
+-- Conversation of a session, looked up by every chat message; one conversation per session
+ALTER TABLE conversations
+    ADD CONSTRAINT uk_conversations_chatbot_session UNIQUE (chatbot_id, session_id);
+
+-- Message history pages, keyset-paginated by (created_at, id) within a conversation
+CREATE INDEX idx_messages_conversation_created ON messages (conversation_id, created_at, id);
+
+-- Widget bootstrap by embed code
+ALTER TABLE chatbots
+    ADD CONSTRAINT uk_chatbots_embed_code UNIQUE (embed_code);
+
+-- Pages of a chatbot by URL are covered by uk_website_contents_chatbot_url; pages due for re-crawl
+CREATE INDEX idx_website_contents_next_crawl ON website_contents (next_crawl_at);
+
+-- Supported languages loaded with a chatbot
+CREATE INDEX idx_chatbot_languages_chatbot ON chatbot_languages (chatbot_id);
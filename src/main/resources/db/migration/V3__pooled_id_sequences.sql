@@ -0,0 +1,15 @@
+-- Chatbots, conversations and messages get their ids from sequences instead of identity columns, so that
+-- Hibernate can allocate ids in blocks of 50 (pooled optimizer) and batch the inserts.
+-- Each sequence starts so that its first block lies above the existing ids.
+
+CREATE SEQUENCE chatbots_seq INCREMENT BY 50;
+SELECT setval('chatbots_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM chatbots), false);
+ALTER TABLE chatbots ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE conversations_seq INCREMENT BY 50;
+SELECT setval('conversations_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM conversations), false);
+ALTER TABLE conversations ALTER COLUMN id DROP IDENTITY;
+
+CREATE SEQUENCE messages_seq INCREMENT BY 50;
+SELECT setval('messages_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM messages), false);
+ALTER TABLE messages ALTER COLUMN id DROP IDENTITY;
@@ -0,0 +1,9 @@
+-- Shard map: the database holding the conversations and messages of a chatbot.
+-- Chatbots without a row keep their conversations in this (the primary) database.
+
+CREATE TABLE tenant_shards (
+    chatbot_id BIGINT PRIMARY KEY,
+    shard      VARCHAR(50) NOT NULL,
+    state      VARCHAR(20) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,14 @@
+-- Message and page text is stored in the application's compressed text format: a format byte
+-- (0 = plain UTF-8, 1 = DEFLATE) followed by the text, in a new stored_content column.
+-- Adding a nullable column and dropping NOT NULL only change the catalog, so neither table is rewritten;
+-- the lock timeout keeps the brief exclusive locks from queueing traffic behind a long transaction.
+-- Existing rows keep their text in the content column, which the application reads until the compression
+-- backfill has moved it over in small batches. The content columns are dropped by a later migration, once
+-- the backfill has reported every database done.
+
+SET LOCAL lock_timeout = '10s';
+
+ALTER TABLE messages ADD COLUMN stored_content BYTEA;
+ALTER TABLE messages ALTER COLUMN content DROP NOT NULL;
+
+ALTER TABLE website_content_bodies ADD COLUMN stored_content BYTEA;
@@ -0,0 +1,8 @@
+-- At most one running crawl per chatbot, so that two nodes starting a crawl at the same time cannot both succeed.
+-- Older running jobs left behind by earlier versions are marked as failed first.
+
+UPDATE crawl_jobs SET status = 'FAILED', finished_at = now(), error_message = 'Superseded by a new crawl'
+WHERE status = 'RUNNING'
+  AND id NOT IN (SELECT MAX(id) FROM crawl_jobs WHERE status = 'RUNNING' GROUP BY chatbot_id);
+
+CREATE UNIQUE INDEX uk_crawl_jobs_running_chatbot ON crawl_jobs (chatbot_id) WHERE status = 'RUNNING';
@@ -0,0 +1,7 @@
+-- Conversations and messages stored before analytics rollups were maintained are added to the all-time rollups
+-- once per chatbot, on the first analytics read. Events from now on are counted by the chat path.
+-- Chatbots created later start with NULL and are never seeded.
+
+ALTER TABLE chatbots ADD COLUMN analytics_seed_before TIMESTAMP(6);
+
+UPDATE chatbots SET analytics_seed_before = now();
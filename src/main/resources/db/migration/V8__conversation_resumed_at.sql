@@ -0,0 +1,4 @@
+-- When a session ended for inactivity was resumed, so that its duration is measured from there.
+-- A nullable column without a default only changes the catalog.
+
+ALTER TABLE conversations ADD COLUMN resumed_at TIMESTAMP(6);
@@ -0,0 +1,35 @@
+-- Conversation storage of a shard database. The tables match those of the primary, except that
+-- chatbots live in the primary only, so chatbot_id has no foreign key.
+-- Each shard draws ids from its own range starting at ${idBase}, so conversations and messages keep
+-- their ids when a chatbot is moved between databases.
+
+CREATE TABLE conversations (
+    id            BIGINT PRIMARY KEY,
+    chatbot_id    BIGINT NOT NULL,
+    session_id    VARCHAR(100) NOT NULL,
+    user_language VARCHAR(100),
+    user_ip       VARCHAR(45),
+    user_agent    VARCHAR(500),
+    is_active     BOOLEAN NOT NULL,
+    created_at    TIMESTAMP(6) NOT NULL,
+    ended_at      TIMESTAMP(6),
+    CONSTRAINT uk_conversations_chatbot_session UNIQUE (chatbot_id, session_id)
+);
+
+CREATE INDEX idx_conversations_chatbot_ended ON conversations (chatbot_id, is_active, ended_at);
+
+CREATE TABLE messages (
+    id               BIGINT PRIMARY KEY,
+    conversation_id  BIGINT NOT NULL REFERENCES conversations (id),
+    type             VARCHAR(255) NOT NULL,
+    content          TEXT NOT NULL,
+    metadata         TEXT,
+    response_time_ms INTEGER NOT NULL,
+    is_user_message  BOOLEAN NOT NULL,
+    created_at       TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_messages_conversation_created ON messages (conversation_id, created_at, id);
+
+CREATE SEQUENCE conversations_seq START WITH ${idBase} INCREMENT BY 50;
+CREATE SEQUENCE messages_seq START WITH ${idBase} INCREMENT BY 50;
@@ -0,0 +1,6 @@
+-- Message text in the application's compressed text format, as in V5 of the primary.
+
+SET LOCAL lock_timeout = '10s';
+
+ALTER TABLE messages ADD COLUMN stored_content BYTEA;
+ALTER TABLE messages ALTER COLUMN content DROP NOT NULL;
@@ -0,0 +1,3 @@
+-- When a session ended for inactivity was resumed, as in V8 of the primary.
+
+ALTER TABLE conversations ADD COLUMN resumed_at TIMESTAMP(6);
@@ -0,0 +1,156 @@
+package com.noupe.chatbot.config;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing between two databases, a primary and a replica, each holding a
+ * marker row that tells which one a query ran on.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=" + ReadWriteRoutingTest.PRIMARY_URL,
+    "app.datasource.replica.jdbc-url=" + ReadWriteRoutingTest.REPLICA_URL,
+    "app.datasource.replica.username=sa",
+    "app.datasource.replica.password=",
+    "app.datasource.replica-routing.lag-query=SELECT lag_seconds FROM routing_marker",
+    "app.datasource.replica-routing.max-lag-seconds=5",
+    // The test checks the lag itself
+    "app.datasource.replica-routing.lag-check-interval-ms=3600000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DataSourceRoutingConfig.class, ReadWriteRoutingTest.Reads.class, ReadWriteRoutingTest.Writes.class})
+class ReadWriteRoutingTest {
+    
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    
+    @Autowired
+    private Reads reads;
+    
+    @Autowired
+    private Writes writes;
+    
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+    
+    @BeforeAll
+    static void createMarkers() {
+        createMarker(PRIMARY_URL, "primary");
+        createMarker(REPLICA_URL, "replica");
+    }
+    
+    @BeforeEach
+    void replicaInSync() {
+        setReplicaLag(0);
+    }
+    
+    @Test
+    void replicaTransactionReadsFromReplica() {
+        assertEquals("replica", reads.onReplica());
+    }
+    
+    @Test
+    void readWriteTransactionReadsFromPrimary() {
+        assertEquals("primary", writes.inWriteTransaction());
+    }
+    
+    @Test
+    void plainReadOnlyTransactionReadsFromPrimary() {
+        assertEquals("primary", reads.readOnly());
+    }
+    
+    @Test
+    void readWithoutTransactionGoesToPrimary() {
+        assertEquals("primary", reads.withoutTransaction());
+    }
+    
+    @Test
+    void replicaTransactionJoiningWriteTransactionStaysOnPrimary() {
+        assertEquals("primary", writes.replicaReadInsideWrite());
+    }
+    
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        setReplicaLag(60);
+        assertEquals("primary", reads.onReplica());
+        
+        setReplicaLag(1);
+        assertEquals("replica", reads.onReplica());
+    }
+    
+    private void setReplicaLag(double seconds) {
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""))
+            .update("UPDATE routing_marker SET lag_seconds = ?", seconds);
+        replicaLagMonitor.check();
+    }
+    
+    private static void createMarker(String url, String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(20), lag_seconds DOUBLE PRECISION)");
+        jdbcTemplate.update("DELETE FROM routing_marker");
+        jdbcTemplate.update("INSERT INTO routing_marker (name, lag_seconds) VALUES (?, 0)", name);
+    }
+    
+    /**
+     * Reads the marker of the database a query runs on
+     */
+    static class Reads {
+        
+        private final JdbcTemplate jdbcTemplate;
+        
+        Reads(DataSource dataSource) {
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+        
+        @ReplicaTransactional
+        public String onReplica() {
+            return marker();
+        }
+        
+        @Transactional(readOnly = true)
+        public String readOnly() {
+            return marker();
+        }
+        
+        public String withoutTransaction() {
+            return marker();
+        }
+        
+        public String marker() {
+            return jdbcTemplate.queryForObject("SELECT name FROM routing_marker", String.class);
+        }
+    }
+    
+    static class Writes {
+        
+        private final Reads reads;
+        
+        Writes(Reads reads) {
+            this.reads = reads;
+        }
+        
+        @Transactional
+        public String inWriteTransaction() {
+            return reads.marker();
+        }
+        
+        @Transactional
+        public String replicaReadInsideWrite() {
+            return reads.onReplica();
+        }
+    }
+}
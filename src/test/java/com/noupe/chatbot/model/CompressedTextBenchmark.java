@@ -0,0 +1,133 @@
+package com.noupe.chatbot.model;
+
+import com.noupe.chatbot.service.crawler.FixturePages;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Storage saved by {@link CompressedText} and its write and read cost,
+ * against storing the same text as plain UTF-8.
+ *
+ * By default uses a short question, a chat answer of 1.5 KB and the text of
+ * a 100 KB crawled page. Real texts can be used instead by pointing
+ * {@code benchmark.texts} at a directory of {@code .txt} files:
+ *
+ * <pre>
+ *   mvn test -Dtest=CompressedTextBenchmark -Dbenchmark.texts=/path/to/texts
+ * </pre>
+ *
+ * The storage figures are for the column value itself; PostgreSQL may in
+ * addition compress plain TEXT values above about 2 KB when it moves them
+ * out of line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressedTextBenchmark {
+    
+    private static final String TEXTS_PROPERTY = "benchmark.texts";
+    private static final List<String> GENERATED = List.of("question", "answer", "page");
+    
+    @Param({"question", "answer", "page"})
+    public String text;
+    
+    private String value;
+    private byte[] stored;
+    private byte[] utf8;
+    
+    @Setup
+    public void loadText() throws IOException {
+        value = load(text);
+        stored = CompressedText.encode(value);
+        utf8 = value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public byte[] encode() {
+        return CompressedText.encode(value);
+    }
+    
+    @Benchmark
+    public String decode() {
+        return CompressedText.decode(stored);
+    }
+    
+    @Benchmark
+    public byte[] encodePlain() {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public String decodePlain() {
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    void run() throws IOException, RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(CompressedTextBenchmark.class.getName() + "\\.");
+        
+        List<String> texts = GENERATED;
+        String textsDir = System.getProperty(TEXTS_PROPERTY);
+        if (textsDir != null) {
+            try (Stream<Path> files = Files.list(Paths.get(textsDir))) {
+                texts = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".txt"))
+                    .sorted()
+                    .toList();
+            }
+            options.param("text", texts.toArray(String[]::new))
+                .jvmArgsAppend("-D" + TEXTS_PROPERTY + "=" + textsDir);
+        }
+        
+        long totalPlain = 0;
+        long totalStored = 0;
+        for (String name : texts) {
+            String sample = load(name);
+            int plain = sample.getBytes(StandardCharsets.UTF_8).length;
+            int encoded = CompressedText.encode(sample).length;
+            totalPlain += plain;
+            totalStored += encoded;
+            System.out.printf("%s: %d bytes as UTF-8, %d stored (%.0f%% saved)%n",
+                name, plain, encoded, 100.0 * (plain - encoded) / plain);
+        }
+        System.out.printf("All texts: %d bytes as UTF-8, %d stored (%.0f%% saved)%n",
+            totalPlain, totalStored, 100.0 * (totalPlain - totalStored) / totalPlain);
+        
+        new Runner(options.build()).run();
+    }
+    
+    private static String load(String name) throws IOException {
+        return switch (name) {
+            case "question" -> "How long does shipping to my country take, and can I track the order?";
+            case "answer" -> pageText(1, 1_500);
+            case "page" -> pageText(2, 100_000);
+            default -> Files.readString(Paths.get(System.getProperty(TEXTS_PROPERTY), name), StandardCharsets.UTF_8);
+        };
+    }
+    
+    /**
+     * Visible text of a generated page, cut to the given length
+     */
+    private static String pageText(long seed, int length) {
+        String text = Jsoup.parse(FixturePages.page(seed, "Fixture page", length * 2, List.of())).body().text();
+        return text.substring(0, Math.min(length, text.length()));
+    }
+}
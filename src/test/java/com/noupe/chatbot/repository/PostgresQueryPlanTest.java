@@ -0,0 +1,53 @@
+package com.noupe.chatbot.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hot lookups of {@link QueryPlanTest} use their index on PostgreSQL,
+ * with the schema applied by the db/migration scripts as in production.
+ *
+ * The tables are empty, so sequential scans are turned off: the test checks
+ * that a usable index exists, not the planner's choice for a given table size.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PostgresQueryPlanTest {
+    
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+    
+    private static JdbcTemplate jdbcTemplate;
+    
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+            .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+            .locations("classpath:db/migration")
+            .load()
+            .migrate();
+        
+        // One connection, so the planner setting applies to every EXPLAIN
+        jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(
+            postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword(), true));
+        jdbcTemplate.execute("SET enable_seqscan = off");
+    }
+    
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("com.noupe.chatbot.repository.QueryPlanTest#hotQueries")
+    void usesIndex(String name, String sql, String index) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+        String text = String.join("\n", plan);
+        assertTrue(text.contains(index), () -> name + " does not use " + index + ":\n" + text);
+    }
+}
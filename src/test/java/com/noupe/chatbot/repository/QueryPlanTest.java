@@ -0,0 +1,65 @@
+package com.noupe.chatbot.repository;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hot lookups of the chat, history, widget and crawl paths use their
+ * index on H2, with the schema created from the entities as in development.
+ * {@link PostgresQueryPlanTest} checks the same queries against the migrated
+ * PostgreSQL schema.
+ */
+@DataJpaTest
+class QueryPlanTest {
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    /**
+     * The SQL of the repository queries, with literals for the parameters,
+     * and the index each has to use
+     */
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+            Arguments.of("conversation of a session",
+                "SELECT c.id FROM conversations c WHERE c.chatbot_id = 1 AND c.session_id = 'session-1'",
+                "uk_conversations_chatbot_session"),
+            Arguments.of("latest messages",
+                "SELECT m.id, m.type, m.stored_content, m.content, m.is_user_message, m.created_at " +
+                "FROM messages m WHERE m.conversation_id = 1 ORDER BY m.created_at DESC, m.id DESC LIMIT 20",
+                "idx_messages_conversation_created"),
+            Arguments.of("earlier messages",
+                "SELECT m.id, m.type, m.stored_content, m.content, m.is_user_message, m.created_at " +
+                "FROM messages m WHERE m.conversation_id = 1 AND (m.created_at < TIMESTAMP '2024-01-01 00:00:00' " +
+                "OR (m.created_at = TIMESTAMP '2024-01-01 00:00:00' AND m.id < 100)) " +
+                "ORDER BY m.created_at DESC, m.id DESC LIMIT 20",
+                "idx_messages_conversation_created"),
+            Arguments.of("chatbot by embed code",
+                "SELECT c.id FROM chatbots c WHERE c.embed_code = 'embed-1'",
+                "uk_chatbots_embed_code"),
+            Arguments.of("page of a chatbot by URL",
+                "SELECT w.id FROM website_contents w WHERE w.chatbot_id = 1 AND w.url = 'https://fixture.test/'",
+                "uk_website_contents_chatbot_url")
+        );
+    }
+    
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void usesIndex(String name, String sql, String index) {
+        List<String> plan = new JdbcTemplate(dataSource).queryForList("EXPLAIN " + sql, String.class);
+        String text = String.join("\n", plan);
+        // H2 names the index backing a unique constraint after the constraint
+        assertTrue(text.toLowerCase(Locale.ROOT).contains(index), () -> name + " does not use " + index + ":\n" + text);
+    }
+}
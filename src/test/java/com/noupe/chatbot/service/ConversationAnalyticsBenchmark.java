@@ -0,0 +1,216 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.CompressedText;
+import com.noupe.chatbot.model.Conversation;
+import com.noupe.chatbot.repository.ChatbotRepository;
+import com.noupe.chatbot.repository.ConversationRepository;
+import com.noupe.chatbot.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Conversation analytics of a chatbot with a million messages.
+ *
+ * Compares loading every conversation and its messages, as analytics did
+ * before, with the aggregate queries that now count the history once, and
+ * with the rollup read that serves analytics afterwards. Runs on the
+ * in-memory development database unless pointed elsewhere:
+ *
+ * <pre>
+ *   mvn test -Dtest=ConversationAnalyticsBenchmark -Dbenchmark.analytics.messages=1000000 \
+ *       -Dbenchmark.analytics.messages-per-conversation=20 -Dbenchmark.analytics.legacy=true
+ * </pre>
+ *
+ * The legacy run holds every message entity in memory; give the test JVM a
+ * large heap or turn it off.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "app.recrawl.enabled=false",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.format_sql=false"
+})
+class ConversationAnalyticsBenchmark {
+    
+    private static final String PREFIX = "benchmark.analytics.";
+    private static final long ID_BASE = 1_000_000_000L;
+    private static final int BATCH_SIZE = 1000;
+    private static final String[] LANGUAGES = {"en", "es", "de", "fr", null};
+    
+    @MockBean
+    private VectorStore vectorStore;
+    
+    @Autowired
+    private AiChatbotService aiChatbotService;
+    
+    @Autowired
+    private ChatbotRepository chatbotRepository;
+    
+    @Autowired
+    private ConversationRepository conversationRepository;
+    
+    @Autowired
+    private MessageRepository messageRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Test
+    void analytics() {
+        int messages = Integer.getInteger(PREFIX + "messages", 1_000_000);
+        int perConversation = Integer.getInteger(PREFIX + "messages-per-conversation", 20);
+        boolean legacy = Boolean.parseBoolean(System.getProperty(PREFIX + "legacy", "true"));
+        int reads = Integer.getInteger(PREFIX + "reads", 100);
+        
+        Chatbot chatbot = chatbotRepository.save(new Chatbot("Analytics fixture", "https://fixture.test"));
+        long seedStart = System.nanoTime();
+        int conversations = insertHistory(chatbot, messages, perConversation);
+        System.out.printf("Inserted %d conversations and %d messages in %.1f s%n",
+            conversations, messages, (System.nanoTime() - seedStart) / 1e9);
+        
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        
+        if (legacy) {
+            measure("Entity loading (before)", () -> readOnly.execute(status -> loadEntities(chatbot)));
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        measure("Aggregate queries", () -> readOnly.execute(status -> Arrays.asList(
+            conversationRepository.countConversationsByChatbot(chatbot, now),
+            conversationRepository.getTotalDurationSecondsByChatbot(chatbot, now),
+            conversationRepository.countByChatbotGroupByLanguage(chatbot, now),
+            messageRepository.countMessagesByChatbot(chatbot, now),
+            messageRepository.countAiMessagesByResponseTime(chatbot, now))));
+        
+        jdbcTemplate.update("UPDATE chatbots SET analytics_seed_before = ? WHERE id = ?",
+            Timestamp.valueOf(LocalDateTime.now()), chatbot.getId());
+        Map<String, Object> seeded = measure("First read, seeding the rollups",
+            () -> aiChatbotService.getConversationAnalytics(chatbot.getId()));
+        assertEquals((long) messages, ((Number) seeded.get("totalMessages")).longValue());
+        assertEquals((long) conversations, ((Number) seeded.get("totalConversations")).longValue());
+        
+        measure("Rollup reads (" + reads + ")", () -> {
+            Map<String, Object> analytics = null;
+            for (int i = 0; i < reads; i++) {
+                analytics = aiChatbotService.getConversationAnalytics(chatbot.getId());
+            }
+            return analytics;
+        });
+    }
+    
+    /**
+     * Analytics as computed before the aggregate queries, from every
+     * conversation entity and its lazily loaded messages
+     */
+    private Map<String, Object> loadEntities(Chatbot chatbot) {
+        List<Conversation> conversations = conversationRepository.findByChatbot(chatbot);
+        return Map.of(
+            "totalConversations", conversations.size(),
+            "totalMessages", conversations.stream().mapToInt(Conversation::getMessageCount).sum(),
+            "averageDurationMinutes", conversations.stream()
+                .filter(c -> c.getEndedAt() != null)
+                .mapToLong(Conversation::getDurationInMinutes)
+                .average()
+                .orElse(0.0),
+            "languageDistribution", conversations.stream()
+                .filter(c -> c.getUserLanguage() != null)
+                .collect(Collectors.groupingBy(Conversation::getUserLanguage, Collectors.counting())));
+    }
+    
+    /**
+     * Insert conversations with alternating user and AI messages, bypassing
+     * the rollups so that the history has to be counted
+     */
+    private int insertHistory(Chatbot chatbot, int messages, int perConversation) {
+        Random random = new Random(42);
+        byte[] question = CompressedText.encode("How long does shipping to my country take?");
+        byte[] answer = CompressedText.encode(("Orders ship within two days and arrive in about a week, " +
+            "depending on the destination country. ").repeat(8));
+        LocalDateTime start = LocalDateTime.now().minusDays(90);
+        
+        int conversations = (messages + perConversation - 1) / perConversation;
+        List<Object[]> conversationRows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> messageRows = new ArrayList<>(BATCH_SIZE);
+        long messageId = ID_BASE;
+        int remaining = messages;
+        
+        for (int c = 0; c < conversations; c++) {
+            long conversationId = ID_BASE + c;
+            LocalDateTime createdAt = start.plusSeconds(c * 60L);
+            int count = Math.min(perConversation, remaining);
+            remaining -= count;
+            boolean ended = c % 5 != 0;
+            conversationRows.add(new Object[]{conversationId, chatbot.getId(), "session-" + c,
+                LANGUAGES[c % LANGUAGES.length], !ended, Timestamp.valueOf(createdAt),
+                ended ? Timestamp.valueOf(createdAt.plusMinutes(1 + random.nextInt(30))) : null});
+            
+            for (int m = 0; m < count; m++) {
+                boolean user = m % 2 == 0;
+                messageRows.add(new Object[]{messageId++, conversationId, "TEXT", user ? question : answer,
+                    user ? 0 : 200 + random.nextInt(5000), user, Timestamp.valueOf(createdAt.plusSeconds(m * 5L))});
+                if (messageRows.size() == BATCH_SIZE) {
+                    flush(conversationRows, messageRows);
+                }
+            }
+        }
+        flush(conversationRows, messageRows);
+        return conversations;
+    }
+    
+    private void flush(List<Object[]> conversationRows, List<Object[]> messageRows) {
+        if (!conversationRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO conversations (id, chatbot_id, session_id, user_language, " +
+                "is_active, created_at, ended_at) VALUES (?, ?, ?, ?, ?, ?, ?)", conversationRows);
+            conversationRows.clear();
+        }
+        if (!messageRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO messages (id, conversation_id, type, stored_content, " +
+                "response_time_ms, is_user_message, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)", messageRows);
+            messageRows.clear();
+        }
+    }
+    
+    private static <T> T measure(String name, Supplier<T> work) {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        T result = work.get();
+        double millis = (System.nanoTime() - start) / 1e6;
+        
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%s: %.1f ms, peak heap %d MB%n", name, millis, peakHeap / (1024 * 1024));
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.repository.ChatbotRepository;
+import com.noupe.chatbot.repository.WebsiteContentRepository;
+import com.noupe.chatbot.service.crawler.FixtureSite;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crawl throughput of {@link WebsiteAnalysisService} against a generated site
+ * served from the loopback interface, so it runs offline. The vector store is
+ * mocked; everything else, including the database writes, is the real thing.
+ *
+ * The site shape is set with system properties:
+ *
+ * <pre>
+ *   mvn test -Dtest=CrawlThroughputBenchmark -Dbenchmark.crawl.pages=2000 \
+ *       -Dbenchmark.crawl.fan-out=20 -Dbenchmark.crawl.page-bytes=50000 \
+ *       -Dbenchmark.crawl.latency-ms=50 -Dbenchmark.crawl.error-rate=0.05
+ * </pre>
+ *
+ * Reports pages/s, bytes/s, CPU per page, peak heap and the number of pages
+ * the server was asked for more than once.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "app.website-analysis.max-pages=1000000",
+    "app.website-analysis.max-depth=100",
+    "app.recrawl.enabled=false",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.format_sql=false"
+})
+class CrawlThroughputBenchmark {
+    
+    private static final String PREFIX = "benchmark.crawl.";
+    
+    @MockBean
+    private VectorStore vectorStore;
+    
+    @Autowired
+    private WebsiteAnalysisService websiteAnalysisService;
+    
+    @Autowired
+    private ChatbotRepository chatbotRepository;
+    
+    @Autowired
+    private WebsiteContentRepository websiteContentRepository;
+    
+    @Test
+    void crawl() throws Exception {
+        int pages = Integer.getInteger(PREFIX + "pages", 500);
+        int fanOut = Integer.getInteger(PREFIX + "fan-out", 10);
+        int pageBytes = Integer.getInteger(PREFIX + "page-bytes", 20_000);
+        long latencyMs = Long.getLong(PREFIX + "latency-ms", 20L);
+        double errorRate = Double.parseDouble(System.getProperty(PREFIX + "error-rate", "0.02"));
+        
+        try (FixtureSite site = new FixtureSite(pages, fanOut, pageBytes, latencyMs, errorRate)) {
+            Chatbot chatbot = chatbotRepository.save(new Chatbot("Fixture", site.getBaseUrl()));
+            
+            com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            long cpuStart = os.getProcessCpuTime();
+            long start = System.nanoTime();
+            
+            websiteAnalysisService.analyzeWebsite(chatbot, pages, null, null).get(30, TimeUnit.MINUTES);
+            
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long cpuNanos = os.getProcessCpuTime() - cpuStart;
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+            
+            int fetched = site.getDistinctPagesFetched();
+            long stored = websiteContentRepository.countByChatbot(chatbot);
+            Map<String, Object> status = websiteAnalysisService.getCrawlStatus(chatbot).orElseThrow();
+            
+            System.out.printf("Site: %d pages, fan-out %d, %d bytes per page, %d ms latency, %d error pages%n",
+                pages, fanOut, pageBytes, latencyMs, site.getErrorPages());
+            System.out.printf("Crawl: %s in %.1f s, %d pages fetched, %d stored%n",
+                status.get("status"), seconds, fetched, stored);
+            System.out.printf("Throughput: %.1f pages/s, %.0f KB/s%n",
+                fetched / seconds, site.getBytesServed() / 1024.0 / seconds);
+            System.out.printf("CPU per page: %.2f ms (whole process)%n", cpuNanos / 1e6 / Math.max(1, fetched));
+            System.out.printf("Peak heap: %d MB%n", peakHeap / (1024 * 1024));
+            System.out.printf("Duplicate fetches: %d%n", site.getDuplicateFetches());
+            
+            assertTrue(stored > 0, "The crawl stored no pages");
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.Conversation;
+import com.noupe.chatbot.model.Message;
+import com.noupe.chatbot.model.WebsiteContent;
+import com.noupe.chatbot.repository.ChatbotRepository;
+import com.noupe.chatbot.repository.WebsiteContentBatchRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chat and crawl write throughput on PostgreSQL with and without JDBC
+ * batching, using the production profile and its migrated schema.
+ *
+ * Before sequence-generated ids every insert was its own statement. That is
+ * reproduced by setting the Hibernate session's JDBC batch size to 1 for the
+ * chat entities, and by writing crawled pages in batches of one, as with
+ * {@code app.website-analysis.write-batch-size=1}. The identity columns also
+ * returned the new id from each insert; the one sequence call per 50 ids
+ * left in the "before" runs is noise next to that.
+ *
+ * <pre>
+ *   mvn test -Dtest=PersistenceBatchingBenchmark -Dbenchmark.persistence.conversations=2000 \
+ *       -Dbenchmark.persistence.pages=5000
+ * </pre>
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = "app.recrawl.enabled=false")
+@ActiveProfiles("prod")
+class PersistenceBatchingBenchmark {
+    
+    private static final String PREFIX = "benchmark.persistence.";
+    
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl()
+            + (postgres.getJdbcUrl().contains("?") ? "&" : "?") + "reWriteBatchedInserts=true");
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+    
+    @MockBean
+    private VectorStore vectorStore;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private ChatbotRepository chatbotRepository;
+    
+    @Autowired
+    private WebsiteContentBatchRepository websiteContentBatchRepository;
+    
+    @Test
+    void persistence() {
+        int conversations = Integer.getInteger(PREFIX + "conversations", 1000);
+        int pages = Integer.getInteger(PREFIX + "pages", 2000);
+        int pageBatchSize = Integer.getInteger(PREFIX + "page-batch-size", 50);
+        
+        // Warm up the connection pool, Hibernate and the JIT before measuring
+        persistChats(conversations / 10, 2, 1);
+        persistChats(conversations / 10, 2, null);
+        
+        // One chat request: the session's conversation and a question and answer
+        report("Chat requests", "messages", conversations * 2,
+            persistChats(conversations, 2, 1), persistChats(conversations, 2, null));
+        // Many messages in one transaction, where batching has the most to group
+        report("Conversations of 50 messages", "messages", conversations * 50,
+            persistChats(conversations, 50, 1), persistChats(conversations, 50, null));
+        report("Crawled pages", "pages", pages,
+            persistPages(pages, 1), persistPages(pages, pageBatchSize));
+    }
+    
+    /**
+     * Persist conversations with their messages, one transaction per
+     * conversation, and return the elapsed nanoseconds
+     *
+     * @param batchSize JDBC batch size of the session, or null for the configured one
+     */
+    private long persistChats(int conversations, int messagesPerConversation, Integer batchSize) {
+        Chatbot chatbot = chatbotRepository.save(new Chatbot("Batching fixture", "https://fixture.test"));
+        long start = System.nanoTime();
+        for (int i = 0; i < conversations; i++) {
+            int conversation = i;
+            transactionTemplate.executeWithoutResult(status -> {
+                if (batchSize != null) {
+                    entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                }
+                Conversation current = new Conversation(chatbot, "session-" + conversation);
+                current.setUserLanguage("en");
+                entityManager.persist(current);
+                for (int m = 0; m < messagesPerConversation; m++) {
+                    boolean user = m % 2 == 0;
+                    Message message = new Message(current, Message.MessageType.TEXT,
+                        user ? "How long does shipping take?" : "Orders arrive in about a week.", user);
+                    entityManager.persist(message);
+                }
+            });
+        }
+        return System.nanoTime() - start;
+    }
+    
+    /**
+     * Insert new crawled pages in batches of the given size and return the
+     * elapsed nanoseconds
+     */
+    private long persistPages(int pages, int batchSize) {
+        Chatbot chatbot = chatbotRepository.save(new Chatbot("Batching fixture", "https://fixture.test"));
+        String text = "Orders ship within two days and arrive in about a week. ".repeat(100);
+        List<WebsiteContent> batch = new ArrayList<>(batchSize);
+        long start = System.nanoTime();
+        for (int i = 0; i < pages; i++) {
+            batch.add(new WebsiteContent(chatbot, "https://fixture.test/page-" + i, "Page " + i, text));
+            if (batch.size() == batchSize || i == pages - 1) {
+                List<WebsiteContent> write = new ArrayList<>(batch);
+                transactionTemplate.executeWithoutResult(status -> websiteContentBatchRepository.insertAll(write));
+                batch.clear();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private static void report(String workload, String unit, int rows, long beforeNanos, long afterNanos) {
+        double before = rows / (beforeNanos / 1e9);
+        double after = rows / (afterNanos / 1e9);
+        System.out.printf("%s: %.0f %s/s unbatched, %.0f %s/s batched (%.1fx)%n",
+            workload, before, unit, after, unit, after / before);
+    }
+}
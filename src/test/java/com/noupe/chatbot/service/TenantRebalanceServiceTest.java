@@ -0,0 +1,275 @@
+package com.noupe.chatbot.service;
+
+import com.noupe.chatbot.config.TenantShardRoutingDataSource;
+import com.noupe.chatbot.model.Chatbot;
+import com.noupe.chatbot.model.Conversation;
+import com.noupe.chatbot.model.Message;
+import com.noupe.chatbot.repository.ChatbotRepository;
+import com.noupe.chatbot.repository.ConversationRepository;
+import com.noupe.chatbot.repository.MessageRepository;
+import com.noupe.chatbot.repository.TenantShardRepository.State;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Moving a chatbot between two PostgreSQL databases, the primary and one
+ * shard, with the production profile and both migration sets, and the ids
+ * new rows take in each. The transfer SQL is PostgreSQL-specific, so this
+ * does not run on H2.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("prod")
+class TenantRebalanceServiceTest {
+    
+    private static final String SHARD = "shard-1";
+    private static final long SHARD_ID_BASE = 1_000_000_000_000L;
+    private static final int CONVERSATIONS = 25;
+    private static final int MESSAGES_PER_CONVERSATION = 6;
+    
+    @Container
+    private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:16-alpine");
+    
+    @Container
+    private static final PostgreSQLContainer<?> shard = new PostgreSQLContainer<>("postgres:16-alpine");
+    
+    @DynamicPropertySource
+    static void databases(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("app.sharding.enabled", () -> "true");
+        registry.add("app.sharding.shards." + SHARD + ".url", shard::getJdbcUrl);
+        registry.add("app.sharding.shards." + SHARD + ".username", shard::getUsername);
+        registry.add("app.sharding.shards." + SHARD + ".password", shard::getPassword);
+        registry.add("app.sharding.shards." + SHARD + ".id-base", () -> Long.toString(SHARD_ID_BASE));
+        // Small pages so that the copy runs over several of them; no waiting for other nodes
+        registry.add("app.sharding.copy-batch-size", () -> "10");
+        registry.add("app.sharding.refresh-ms", () -> "100");
+        registry.add("app.sharding.drain-ms", () -> "0");
+        registry.add("app.sharding.purge-delay-ms", () -> "0");
+        registry.add("app.recrawl.enabled", () -> "false");
+    }
+    
+    @MockBean
+    private VectorStore vectorStore;
+    
+    @Autowired
+    private TenantRebalanceService rebalanceService;
+    
+    @Autowired
+    private TenantShardService shardService;
+    
+    @Autowired
+    private ChatbotRepository chatbotRepository;
+    
+    @Autowired
+    private ConversationRepository conversationRepository;
+    
+    @Autowired
+    private MessageRepository messageRepository;
+    
+    @Autowired
+    private SessionLifecycleService sessionLifecycleService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Test
+    void movesConversationsToShardAndRemovesThemFromPrimary() {
+        Chatbot chatbot = chatbotRepository.save(new Chatbot("Sharding fixture", "https://fixture.test"));
+        Long chatbotId = chatbot.getId();
+        writeConversations(chatbot, "before-move");
+        
+        JdbcTemplate primaryDb = connect(primary);
+        JdbcTemplate shardDb = connect(shard);
+        List<Map<String, Object>> expectedConversations = conversations(primaryDb, chatbotId);
+        List<Map<String, Object>> expectedMessages = messages(primaryDb, chatbotId);
+        assertEquals(CONVERSATIONS, expectedConversations.size());
+        assertEquals(CONVERSATIONS * MESSAGES_PER_CONVERSATION, expectedMessages.size());
+        
+        assertEquals(TenantShardRoutingDataSource.PRIMARY_SHARD, rebalanceService.move(chatbotId, SHARD));
+        await("the move to finish", () -> SHARD.equals(shardService.getShard(chatbotId))
+            && shardService.getState(chatbotId) == State.STABLE);
+        
+        // The rows arrive with their ids and content unchanged
+        assertRowsEqual(expectedConversations, conversations(shardDb, chatbotId));
+        assertRowsEqual(expectedMessages, messages(shardDb, chatbotId));
+        
+        // The moved rows are purged from the primary once the delay has passed
+        await("the primary to be purged", () -> count(primaryDb, chatbotId) == 0);
+        
+        // Reads and new writes through the repositories now go to the shard
+        assertEquals((long) CONVERSATIONS, shardService.inTenant(chatbotId,
+            () -> conversationRepository.countByChatbot(chatbot)));
+        writeConversations(chatbot, "after-move");
+        assertEquals(CONVERSATIONS * 2, count(shardDb, chatbotId));
+        assertEquals(0, count(primaryDb, chatbotId));
+        Long newId = shardDb.queryForObject(
+            "SELECT MIN(id) FROM conversations WHERE chatbot_id = ? AND session_id LIKE 'after-move-%'",
+            Long.class, chatbotId);
+        assertTrue(newId >= SHARD_ID_BASE, "New conversations take ids from the shard's range");
+    }
+    
+    @Test
+    void writesToTwoDatabasesTakeIdsFromSeparateRanges() {
+        Chatbot onPrimary = chatbotRepository.save(new Chatbot("Primary fixture", "https://primary.test"));
+        Chatbot onShard = chatbotRepository.save(new Chatbot("Shard fixture", "https://shard.test"));
+        shardService.assign(onShard.getId(), SHARD, State.STABLE);
+        
+        // Alternate between the databases, so that a block of ids shared between them would be noticed
+        for (int round = 0; round < 3; round++) {
+            writeConversations(onPrimary, "round-" + round);
+            writeConversations(onShard, "round-" + round);
+        }
+        
+        JdbcTemplate primaryDb = connect(primary);
+        JdbcTemplate shardDb = connect(shard);
+        Set<Long> primaryIds = ids(conversations(primaryDb, onPrimary.getId()));
+        Set<Long> shardIds = ids(conversations(shardDb, onShard.getId()));
+        Set<Long> primaryMessageIds = ids(messages(primaryDb, onPrimary.getId()));
+        Set<Long> shardMessageIds = ids(messages(shardDb, onShard.getId()));
+        assertEquals(CONVERSATIONS * 3, primaryIds.size());
+        assertEquals(CONVERSATIONS * 3, shardIds.size());
+        
+        assertTrue(primaryIds.stream().allMatch(id -> id < SHARD_ID_BASE), "Primary conversation ids: " + primaryIds);
+        assertTrue(shardIds.stream().allMatch(id -> id >= SHARD_ID_BASE), "Shard conversation ids: " + shardIds);
+        assertTrue(primaryMessageIds.stream().allMatch(id -> id < SHARD_ID_BASE), "Primary message ids");
+        assertTrue(shardMessageIds.stream().allMatch(id -> id >= SHARD_ID_BASE), "Shard message ids");
+        assertTrue(Collections.disjoint(primaryIds, shardIds));
+        assertTrue(Collections.disjoint(primaryMessageIds, shardMessageIds));
+    }
+    
+    @Test
+    void conversationsReadOnShardReferToTheirChatbotInPrimary() {
+        Chatbot chatbot = chatbotRepository.save(new Chatbot("Routed fixture", "https://routed.test"));
+        Long chatbotId = chatbot.getId();
+        shardService.assign(chatbotId, SHARD, State.STABLE);
+        writeConversations(chatbot, "routed");
+        LocalDateTime now = LocalDateTime.now();
+        
+        // The shard has no chatbots table: reads routed to it must not load or join the chatbot
+        shardService.inTenant(chatbotId, () -> transactionTemplate.execute(status -> {
+            Conversation conversation = conversationRepository.findByChatbotAndSessionId(chatbot, "routed-0")
+                .orElseThrow();
+            assertEquals(chatbotId, conversation.getChatbotId());
+            Chatbot owner = shardService.inShard(TenantShardRoutingDataSource.PRIMARY_SHARD,
+                () -> chatbotRepository.findById(conversation.getChatbotId())).orElseThrow();
+            assertEquals("Routed fixture", owner.getName());
+            
+            assertEquals((long) CONVERSATIONS,
+                conversationRepository.countConversationsByChatbot(chatbot, now).getTotalConversations());
+            assertEquals((long) CONVERSATIONS * MESSAGES_PER_CONVERSATION,
+                messageRepository.countMessagesByChatbot(chatbot, now).getTotalMessages());
+            sessionLifecycleService.touch(conversation);
+            return null;
+        }));
+    }
+    
+    /**
+     * Conversations with alternating user and AI messages; every fifth stays
+     * active, the others are ended
+     */
+    private void writeConversations(Chatbot chatbot, String sessionPrefix) {
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            int conversationIndex = c;
+            shardService.inTenant(chatbot.getId(), () -> transactionTemplate.execute(status -> {
+                Conversation conversation = new Conversation(chatbot, sessionPrefix + "-" + conversationIndex);
+                conversation.setUserLanguage("en");
+                conversationRepository.save(conversation);
+                for (int m = 0; m < MESSAGES_PER_CONVERSATION; m++) {
+                    boolean user = m % 2 == 0;
+                    // Long answers are stored compressed
+                    Message message = new Message(conversation, Message.MessageType.TEXT, user
+                        ? "Question " + m
+                        : ("Answer " + m + " about shipping and returns. ").repeat(20), user);
+                    message.setResponseTimeMs(user ? 0 : 400 + m);
+                    messageRepository.save(message);
+                }
+                if (conversationIndex % 5 != 0) {
+                    conversation.setIsActive(false);
+                    conversation.setEndedAt(LocalDateTime.now());
+                }
+                return null;
+            }));
+        }
+    }
+    
+    private static List<Map<String, Object>> conversations(JdbcTemplate db, Long chatbotId) {
+        return db.queryForList("SELECT id, session_id, user_language, is_active, created_at, ended_at, resumed_at " +
+            "FROM conversations WHERE chatbot_id = ? ORDER BY id", chatbotId);
+    }
+    
+    private static List<Map<String, Object>> messages(JdbcTemplate db, Long chatbotId) {
+        return db.queryForList("SELECT m.id, m.conversation_id, m.type, m.stored_content, m.content, " +
+            "m.response_time_ms, m.is_user_message, m.created_at FROM messages m " +
+            "JOIN conversations c ON c.id = m.conversation_id WHERE c.chatbot_id = ? ORDER BY m.id", chatbotId);
+    }
+    
+    private static Set<Long> ids(List<Map<String, Object>> rows) {
+        return rows.stream().map(row -> ((Number) row.get("id")).longValue()).collect(Collectors.toSet());
+    }
+    
+    private static int count(JdbcTemplate db, Long chatbotId) {
+        return db.queryForObject("SELECT COUNT(*) FROM conversations WHERE chatbot_id = ?", Integer.class, chatbotId);
+    }
+    
+    private static void assertRowsEqual(List<Map<String, Object>> expected, List<Map<String, Object>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            for (Map.Entry<String, Object> column : expected.get(i).entrySet()) {
+                Object value = actual.get(i).get(column.getKey());
+                if (column.getValue() instanceof byte[] bytes) {
+                    assertArrayEquals(bytes, (byte[]) value, column.getKey());
+                } else {
+                    assertEquals(column.getValue(), value, column.getKey());
+                }
+            }
+        }
+    }
+    
+    private static JdbcTemplate connect(PostgreSQLContainer<?> database) {
+        return new JdbcTemplate(new DriverManagerDataSource(
+            database.getJdbcUrl(), database.getUsername(), database.getPassword()));
+    }
+    
+    private static void await(String what, BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted waiting for " + what);
+            }
+        }
+    }
+}
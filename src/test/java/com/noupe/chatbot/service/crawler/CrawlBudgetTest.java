@@ -0,0 +1,80 @@
+package com.noupe.chatbot.service.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent fetches against a byte budget far smaller than what each of
+ * them reserves, as when many workers fetch small pages near the end of a crawl.
+ */
+class CrawlBudgetTest {
+    
+    private static final int WORKERS = 8;
+    private static final long PAGE_LIMIT = 2_000;
+    private static final long PAGE_SIZE = 150;
+    private static final long MAX_BYTES = 10_000;
+    
+    @Test
+    void concurrentFetchesContinueUntilBytesAreUsedUp() throws Exception {
+        CrawlBudget budget = new CrawlBudget(Integer.MAX_VALUE, MAX_BYTES, Duration.ofMinutes(1));
+        AtomicInteger fetches = new AtomicInteger();
+        
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < WORKERS; i++) {
+                results.add(workers.submit(() -> {
+                    while (true) {
+                        assertTrue(budget.tryAcquirePage());
+                        long granted = budget.reserveBytes(PAGE_LIMIT, 10_000);
+                        if (granted == 0) {
+                            budget.releasePage();
+                            // Only a budget that has actually been read ends the crawl
+                            assertTrue(budget.isBytesExhausted(), "Stopped with bytes left");
+                            return null;
+                        }
+                        fetches.incrementAndGet();
+                        Thread.sleep(1);
+                        budget.settleBytes(granted, Math.min(PAGE_SIZE, granted));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        
+        assertEquals(MAX_BYTES, budget.getBytesFetched());
+        assertEquals(0, budget.getBytesInFlight());
+        assertEquals((MAX_BYTES + PAGE_SIZE - 1) / PAGE_SIZE, fetches.get());
+        // Pages taken by workers that found the budget used up are given back
+        assertEquals(fetches.get(), budget.getPagesFetched());
+    }
+    
+    @Test
+    void waitForReservationsEndsWhenTheyAreNotSettled() throws Exception {
+        CrawlBudget budget = new CrawlBudget(10, 1_000, Duration.ofMinutes(1));
+        assertEquals(1_000, budget.reserveBytes(PAGE_LIMIT, 0));
+        
+        // The first fetch holds the whole budget without having read any of it
+        assertEquals(0, budget.reserveBytes(PAGE_LIMIT, 50));
+        assertFalse(budget.isBytesExhausted());
+        
+        budget.settleBytes(1_000, 400);
+        assertEquals(600, budget.reserveBytes(PAGE_LIMIT, 0));
+    }
+}
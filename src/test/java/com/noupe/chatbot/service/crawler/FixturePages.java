@@ -0,0 +1,122 @@
+package com.noupe.chatbot.service.crawler;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates deterministic HTML pages shaped like typical marketing and
+ * documentation sites: a head full of meta, style and script tags, a header
+ * with navigation, a sidebar, an article with headings, paragraphs, lists and
+ * tables, and a footer.
+ *
+ * Used by the benchmarks in place of real customer sites, so that they run
+ * offline and measure the same input on every run.
+ */
+public final class FixturePages {
+    
+    private static final String[] WORDS = (
+        "the chatbot answers questions about products pricing shipping returns account settings and support " +
+        "our team builds tools for small businesses that want to grow online with better customer service " +
+        "customers can reach us by email phone or live chat during business hours every weekday " +
+        "orders ship within two days and arrive in about a week depending on the destination country " +
+        "subscriptions renew automatically unless cancelled from the billing page before the renewal date " +
+        "integration guides explain how to connect the widget to popular website builders and shops"
+    ).split(" ");
+    
+    private FixturePages() {
+    }
+    
+    /**
+     * A page of roughly the given size in bytes, linking to the given paths
+     *
+     * @param seed selects the text, so equal seeds give equal pages
+     */
+    public static String page(long seed, String title, int targetBytes, List<String> links) {
+        Random random = new Random(seed);
+        StringBuilder html = new StringBuilder(targetBytes + 4096);
+        
+        html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n")
+            .append("<meta charset=\"utf-8\">\n")
+            .append("<title>").append(title).append("</title>\n")
+            .append("<meta name=\"description\" content=\"").append(sentence(random, 20)).append("\">\n")
+            .append("<meta name=\"keywords\" content=\"chatbot, support, shipping, pricing\">\n")
+            .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n");
+        for (int i = 0; i < 6; i++) {
+            html.append("<link rel=\"stylesheet\" href=\"/assets/style-").append(i).append(".css\">\n");
+        }
+        html.append("<style>body{font-family:sans-serif}.menu li{display:inline-block;margin:0 8px}</style>\n");
+        html.append("<script>window.dataLayer=window.dataLayer||[];function gtag(){dataLayer.push(arguments);}")
+            .append("gtag('js',new Date());gtag('config','G-FIXTURE');</script>\n");
+        html.append("</head>\n<body>\n");
+        
+        html.append("<header class=\"site-header\"><div class=\"logo\">Fixture Inc.</div>\n<nav class=\"menu\"><ul>\n");
+        for (String link : links.subList(0, Math.min(8, links.size()))) {
+            html.append("<li><a href=\"").append(link).append("\">").append(word(random)).append("</a></li>\n");
+        }
+        html.append("</ul></nav></header>\n");
+        
+        html.append("<aside class=\"sidebar\"><h3>Related</h3><ul>\n");
+        for (int i = 0; i < 10; i++) {
+            html.append("<li><a href=\"#section-").append(i).append("\">").append(sentence(random, 4))
+                .append("</a></li>\n");
+        }
+        html.append("</ul><div class=\"ads\">").append(sentence(random, 12)).append("</div></aside>\n");
+        
+        html.append("<main><article>\n<h1>").append(title).append("</h1>\n");
+        int linkIndex = 0;
+        int section = 0;
+        int footerReserve = 600 + links.size() * 40;
+        while (html.length() < targetBytes - footerReserve) {
+            html.append("<h2 id=\"section-").append(section).append("\">").append(sentence(random, 6)).append("</h2>\n");
+            for (int p = 0; p < 4; p++) {
+                html.append("<p>").append(sentence(random, 40 + random.nextInt(60)));
+                if (linkIndex < links.size()) {
+                    html.append(" <a href=\"").append(links.get(linkIndex++)).append("\">")
+                        .append(sentence(random, 3)).append("</a>");
+                }
+                html.append(".</p>\n");
+            }
+            if (section % 3 == 0) {
+                html.append("<ul>\n");
+                for (int i = 0; i < 5; i++) {
+                    html.append("<li>").append(sentence(random, 8)).append("</li>\n");
+                }
+                html.append("</ul>\n");
+            }
+            if (section % 5 == 4) {
+                html.append("<table><tr><th>Plan</th><th>Price</th><th>Seats</th></tr>\n");
+                for (int i = 0; i < 4; i++) {
+                    html.append("<tr><td>").append(word(random)).append("</td><td>").append(random.nextInt(100))
+                        .append("</td><td>").append(1 + random.nextInt(50)).append("</td></tr>\n");
+                }
+                html.append("</table>\n");
+            }
+            section++;
+        }
+        html.append("</article></main>\n");
+        
+        html.append("<footer><div class=\"navigation\"><ul>\n");
+        while (linkIndex < links.size()) {
+            html.append("<li><a href=\"").append(links.get(linkIndex++)).append("\">").append(word(random))
+                .append("</a></li>\n");
+        }
+        html.append("</ul></div><p>&copy; Fixture Inc.</p></footer>\n");
+        html.append("<script src=\"/assets/app.js\"></script>\n</body>\n</html>\n");
+        return html.toString();
+    }
+    
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(word(random));
+        }
+        return sentence.toString();
+    }
+    
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
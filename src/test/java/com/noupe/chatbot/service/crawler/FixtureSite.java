@@ -0,0 +1,203 @@
+package com.noupe.chatbot.service.crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generated website served from an embedded HTTP server on the loopback
+ * interface, for crawling without network access.
+ *
+ * The root is page 0. Page {@code /page-i} links to the next {@code fanOut}
+ * pages, wrapping around past the root, plus one variant of a known page
+ * with tracking parameters and a fragment, so that a crawler that does not
+ * canonicalize URLs fetches pages twice. A deterministic share of the pages answers 500. robots.txt allows
+ * everything and points to a sitemap listing every page.
+ */
+public class FixtureSite implements AutoCloseable {
+    
+    private final int pages;
+    private final int fanOut;
+    private final int pageBytes;
+    private final long latencyMs;
+    private final double errorRate;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<Integer, LongAdder> pageRequests = new ConcurrentHashMap<>();
+    private final AtomicLong bytesServed = new AtomicLong();
+    
+    public FixtureSite(int pages, int fanOut, int pageBytes, long latencyMs, double errorRate) throws IOException {
+        this.pages = pages;
+        this.fanOut = fanOut;
+        this.pageBytes = pageBytes;
+        this.latencyMs = latencyMs;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(64);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+    
+    /**
+     * Root URL of the site, without a trailing slash
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+    
+    public int getPages() {
+        return pages;
+    }
+    
+    /**
+     * Pages that answer 500
+     */
+    public int getErrorPages() {
+        int errors = 0;
+        for (int i = 0; i < pages; i++) {
+            if (isError(i)) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+    
+    /**
+     * Requests for pages beyond the first request of each page
+     */
+    public long getDuplicateFetches() {
+        long duplicates = 0;
+        for (LongAdder requests : pageRequests.values()) {
+            duplicates += requests.sum() - 1;
+        }
+        return duplicates;
+    }
+    
+    /**
+     * Distinct pages requested at least once
+     */
+    public int getDistinctPagesFetched() {
+        return pageRequests.size();
+    }
+    
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/robots.txt")) {
+                respond(exchange, 200, "text/plain",
+                    "User-agent: *\nAllow: /\nSitemap: " + getBaseUrl() + "/sitemap.xml\n");
+                return;
+            }
+            if (path.equals("/sitemap.xml")) {
+                respond(exchange, 200, "application/xml", sitemap());
+                return;
+            }
+            
+            int page = pageIndex(path);
+            if (page < 0) {
+                respond(exchange, 404, "text/plain", "Not found");
+                return;
+            }
+            pageRequests.computeIfAbsent(page, p -> new LongAdder()).increment();
+            pause();
+            if (isError(page)) {
+                respond(exchange, 500, "text/plain", "Fixture error");
+                return;
+            }
+            respond(exchange, 200, "text/html; charset=utf-8", page(page));
+        }
+    }
+    
+    private String page(int page) {
+        List<String> links = new ArrayList<>(fanOut + 1);
+        for (int i = 1; i <= fanOut; i++) {
+            links.add("/page-" + next(page, i));
+        }
+        links.add("/page-" + next(page, 1) + "?utm_source=fixture&utm_medium=link#top");
+        return FixturePages.page(page, "Fixture page " + page, pageBytes, links);
+    }
+    
+    private String sitemap() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        xml.append("<url><loc>").append(getBaseUrl()).append("/</loc></url>\n");
+        for (int i = 1; i < pages; i++) {
+            xml.append("<url><loc>").append(getBaseUrl()).append("/page-").append(i).append("</loc></url>\n");
+        }
+        return xml.append("</urlset>\n").toString();
+    }
+    
+    /**
+     * The i-th page after a page, skipping the root
+     */
+    private int next(int page, int i) {
+        return pages > 1 ? 1 + (page + i - 1) % (pages - 1) : 0;
+    }
+    
+    /**
+     * Index of a page path, or -1 if there is no such page
+     */
+    private int pageIndex(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (!path.startsWith("/page-")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(path.substring("/page-".length()));
+            return page > 0 && page < pages ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private boolean isError(int page) {
+        // Spread evenly over the site, never the root
+        return page > 0 && errorRate > 0 && page % Math.max(1, Math.round(1 / errorRate)) == 0;
+    }
+    
+    private void pause() {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bytesServed.addAndGet(bytes.length);
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
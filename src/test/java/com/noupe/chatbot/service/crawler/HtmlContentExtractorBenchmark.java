@@ -0,0 +1,135 @@
+package com.noupe.chatbot.service.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parse and extract throughput of {@link HtmlContentExtractor} against the
+ * select-and-remove extraction it replaced.
+ *
+ * By default runs on generated pages of 20 KB, 200 KB and 2 MB (see
+ * {@link FixturePages}). No saved real-world pages are kept in the
+ * repository, since third-party pages cannot be redistributed with it; the
+ * generated pages reproduce their layout but not their markup quirks. Before
+ * relying on a result, run on saved pages by pointing {@code benchmark.pages}
+ * at a directory of {@code .html} files:
+ *
+ * <pre>
+ *   mvn test -Dtest=HtmlContentExtractorBenchmark -Dbenchmark.pages=/path/to/pages
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlContentExtractorBenchmark {
+    
+    private static final String PAGES_PROPERTY = "benchmark.pages";
+    private static final String GENERATED_PREFIX = "generated-";
+    private static final int MAX_TEXT_LENGTH = 100_000;
+    
+    private static final Set<String> LEGACY_SKIP_SELECTORS = Set.of(
+        "nav", "header", "footer", "aside", "script", "style",
+        ".navigation", ".menu", ".sidebar", ".ads", ".advertisement"
+    );
+    
+    @Param({"generated-20000", "generated-200000", "generated-2000000"})
+    public String page;
+    
+    private String html;
+    
+    @Setup
+    public void loadPage() throws IOException {
+        if (page.startsWith(GENERATED_PREFIX)) {
+            int size = Integer.parseInt(page.substring(GENERATED_PREFIX.length()));
+            List<String> links = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                links.add("/docs/page-" + i);
+            }
+            html = FixturePages.page(size, "Fixture page", size, links);
+        } else {
+            html = Files.readString(Paths.get(System.getProperty(PAGES_PROPERTY), page), StandardCharsets.UTF_8);
+        }
+    }
+    
+    @Benchmark
+    public ExtractedPage singlePass() {
+        return new HtmlContentExtractor(MAX_TEXT_LENGTH).extract(Jsoup.parse(html, "https://fixture.test/"));
+    }
+    
+    @Benchmark
+    public void selectAndRemove(Blackhole blackhole) {
+        Document document = Jsoup.parse(html, "https://fixture.test/");
+        for (String selector : LEGACY_SKIP_SELECTORS) {
+            document.select(selector).remove();
+        }
+        
+        String title = document.title();
+        if (title.trim().isEmpty()) {
+            Element h1 = document.select("h1").first();
+            title = h1 != null ? h1.text() : "Untitled Page";
+        }
+        
+        Element main = document.select("main").first();
+        if (main == null) {
+            main = document.select("article").first();
+        }
+        if (main == null) {
+            main = document.select(".content, .main-content, #content, #main").first();
+        }
+        if (main == null) {
+            main = document.body();
+        }
+        String content = main.text().replaceAll("\\s+", " ").trim();
+        
+        Element metaDescription = document.select("meta[name=description]").first();
+        Element metaKeywords = document.select("meta[name=keywords]").first();
+        Element root = document.select("html").first();
+        
+        blackhole.consume(title);
+        blackhole.consume(content);
+        blackhole.consume(content.split("\\s+").length);
+        blackhole.consume(metaDescription != null ? metaDescription.attr("content") : null);
+        blackhole.consume(metaKeywords != null ? metaKeywords.attr("content") : null);
+        blackhole.consume(root != null ? root.attr("lang") : null);
+    }
+    
+    @Test
+    void run() throws IOException, RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(HtmlContentExtractorBenchmark.class.getName() + "\\.");
+        
+        String pagesDir = System.getProperty(PAGES_PROPERTY);
+        if (pagesDir != null) {
+            try (Stream<Path> files = Files.list(Paths.get(pagesDir))) {
+                String[] pages = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".html"))
+                    .sorted()
+                    .toArray(String[]::new);
+                options.param("page", pages).jvmArgsAppend("-D" + PAGES_PROPERTY + "=" + pagesDir);
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}